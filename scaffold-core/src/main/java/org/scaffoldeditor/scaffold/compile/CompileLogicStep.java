@@ -3,8 +3,10 @@ package org.scaffoldeditor.scaffold.compile;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.logging.log4j.LogManager;
+import org.scaffoldeditor.scaffold.compile.CompileProfiler.Timer;
 import org.scaffoldeditor.scaffold.compile.Compiler.CompileProgressListener;
 import org.scaffoldeditor.scaffold.entity.Entity;
 import org.scaffoldeditor.scaffold.entity.attribute.Attribute;
@@ -15,6 +17,8 @@ import org.scaffoldeditor.scaffold.logic.datapack.Function;
 
 public class CompileLogicStep implements CompileStep {
 
+	private static OutputMode outputMode = OutputMode.INCREMENTAL;
+
 	@Override
 	public boolean execute(Level level, Path target, Map<String, Attribute<?>> args, CompileProgressListener listener) {
 		Path datapackFolder = target.resolve("datapacks");
@@ -34,15 +38,23 @@ public class CompileLogicStep implements CompileStep {
 		datapack.tickFunctions.add(tickFunction.getID());
 
 		// Compile entities
+		CompileProfiler profiler = level.getProfiler();
 		for (Entity ent : level.getLevelStack()) {
-			if (!ent.compileLogic(datapack) && listener != null) {
+			boolean success;
+			Timer timer = profiler != null ? profiler.time(CompileProfiler.COMPILE_LOGIC, ent.getName()) : null;
+			try {
+				success = ent.compileLogic(datapack);
+			} finally {
+				if (timer != null) timer.stop();
+			}
+			if (!success && listener != null) {
 				listener.onError("Failed to compile logic for entity: "+ent.getName());
 			};
 		}
 		
 		// Compile datapack
 		try {
-			datapack.compile(datapackFolder.resolve(level.getProject().getName()).toFile(), OutputMode.FOLDER);
+			datapack.compile(datapackFolder.resolve(level.getProject().getName()).toFile(), outputMode);
 			datapack.writeStorage(target.resolve("data"));
 		} catch (IOException e) {
 			LogManager.getLogger().error(e);
@@ -52,6 +64,17 @@ public class CompileLogicStep implements CompileStep {
 		return true;
 	}
 
+	@Override
+	public Set<String> getInputs() {
+		// Some entities' logic uses state that's only set up by compileWorld.
+		return Set.of(TARGET, BLOCK_WORLD);
+	}
+
+	@Override
+	public Set<String> getOutputs() {
+		return Set.of(DATAPACK);
+	}
+
 	@Override
 	public boolean isRequired() {
 		return false;
@@ -66,4 +89,15 @@ public class CompileLogicStep implements CompileStep {
 	public String getID() {
 		return "compile_logic";
 	}
+
+	public static OutputMode getOutputMode() {
+		return outputMode;
+	}
+
+	/**
+	 * Set the output mode the compiler will use when compiling datapacks.
+	 */
+	public static void setOutputMode(OutputMode outputMode) {
+		CompileLogicStep.outputMode = outputMode;
+	}
 }
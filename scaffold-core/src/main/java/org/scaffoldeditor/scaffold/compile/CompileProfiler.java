@@ -0,0 +1,194 @@
+package org.scaffoldeditor.scaffold.compile;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Records how long each part of a compile takes. Compile steps and the
+ * per-entity compile methods are timed, and the amount of blocks placed,
+ * chunks written and bytes written are counted.
+ * <br>
+ * Profiling is opt-in; see {@link Compiler#setProfiling(boolean)}. While a
+ * compile is running, its profiler is available from
+ * {@link org.scaffoldeditor.scaffold.level.Level#getProfiler()}. All the
+ * methods are thread-safe.
+ */
+public class CompileProfiler {
+
+	/** Samples of compile steps. */
+	public static final String STEP = "step";
+
+	/** Samples of entities' <code>compileWorld</code> methods. */
+	public static final String COMPILE_WORLD = "compileWorld";
+
+	/** Samples of entities' <code>compileGameEntities</code> methods. */
+	public static final String COMPILE_GAME_ENTITIES = "compileGameEntities";
+
+	/** Samples of entities' <code>compileLogic</code> methods. */
+	public static final String COMPILE_LOGIC = "compileLogic";
+
+	/**
+	 * The measurements of one timed section of code.
+	 */
+	public static class Sample {
+		public final String category;
+		public final String name;
+		public final long wallNanos;
+		/** CPU time of the thread the sample was taken on, or -1 if unsupported. */
+		public final long cpuNanos;
+		/** Bytes allocated by the thread the sample was taken on, or -1 if unsupported. */
+		public final long allocatedBytes;
+
+		public Sample(String category, String name, long wallNanos, long cpuNanos, long allocatedBytes) {
+			this.category = category;
+			this.name = name;
+			this.wallNanos = wallNanos;
+			this.cpuNanos = cpuNanos;
+			this.allocatedBytes = allocatedBytes;
+		}
+
+		public JSONObject toJson() {
+			JSONObject json = new JSONObject();
+			json.put("category", category);
+			json.put("name", name);
+			json.put("wallNanos", wallNanos);
+			json.put("cpuNanos", cpuNanos);
+			json.put("allocatedBytes", allocatedBytes);
+			return json;
+		}
+	}
+
+	/**
+	 * A sample in progress. Must be stopped on the thread that started it, as CPU
+	 * time and allocations are measured per-thread.
+	 */
+	public class Timer {
+		private final String category;
+		private final String name;
+		private final long startWall;
+		private final long startCpu;
+		private final long startAllocated;
+
+		private Timer(String category, String name) {
+			this.category = category;
+			this.name = name;
+			this.startCpu = cpuTime();
+			this.startAllocated = allocatedBytes();
+			this.startWall = System.nanoTime();
+		}
+
+		/**
+		 * Stop timing and record the sample.
+		 */
+		public void stop() {
+			long wall = System.nanoTime() - startWall;
+			long cpu = startCpu >= 0 ? cpuTime() - startCpu : -1;
+			long allocated = startAllocated >= 0 ? allocatedBytes() - startAllocated : -1;
+			samples.add(new Sample(category, name, wall, cpu, allocated));
+		}
+	}
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	private final ConcurrentLinkedQueue<Sample> samples = new ConcurrentLinkedQueue<>();
+	private final AtomicLong blocksPlaced = new AtomicLong();
+	private final AtomicLong chunksWritten = new AtomicLong();
+	private final AtomicLong bytesWritten = new AtomicLong();
+	private final long startTime = System.currentTimeMillis();
+
+	private static long cpuTime() {
+		return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+	}
+
+	private static long allocatedBytes() {
+		if (THREADS instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+			if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+				return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Start timing a section of code. The timer should be stopped in a
+	 * <code>finally</code> block.
+	 * @param category Sample category, such as {@link #STEP}.
+	 * @param name     Name of the thing being timed, such as a step ID or entity
+	 *                 name.
+	 * @return A timer that records the sample when it's stopped.
+	 */
+	public Timer time(String category, String name) {
+		return new Timer(category, name);
+	}
+
+	/**
+	 * Get the samples that have been recorded so far.
+	 * @return A copy of the samples, in the order they finished.
+	 */
+	public List<Sample> getSamples() {
+		return new ArrayList<>(samples);
+	}
+
+	public void addBlocksPlaced(long count) {
+		blocksPlaced.addAndGet(count);
+	}
+
+	public long getBlocksPlaced() {
+		return blocksPlaced.get();
+	}
+
+	public void addChunksWritten(long count) {
+		chunksWritten.addAndGet(count);
+	}
+
+	public long getChunksWritten() {
+		return chunksWritten.get();
+	}
+
+	public void addBytesWritten(long count) {
+		bytesWritten.addAndGet(count);
+	}
+
+	public long getBytesWritten() {
+		return bytesWritten.get();
+	}
+
+	public JSONObject toJson() {
+		JSONObject json = new JSONObject();
+		json.put("startTime", startTime);
+		json.put("blocksPlaced", getBlocksPlaced());
+		json.put("chunksWritten", getChunksWritten());
+		json.put("bytesWritten", getBytesWritten());
+
+		JSONArray sampleArray = new JSONArray();
+		for (Sample sample : samples) {
+			sampleArray.put(sample.toJson());
+		}
+		json.put("samples", sampleArray);
+		return json;
+	}
+
+	/**
+	 * Write this profile to a JSON file.
+	 * @param file File to write to.
+	 * @throws IOException If an IO exception occurs.
+	 */
+	public void writeJson(File file) throws IOException {
+		file.getParentFile().mkdirs();
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+			writer.write(toJson().toString(4));
+		}
+	}
+}
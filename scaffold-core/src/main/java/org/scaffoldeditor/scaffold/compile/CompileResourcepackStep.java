@@ -3,6 +3,7 @@ package org.scaffoldeditor.scaffold.compile;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.logging.log4j.LogManager;
 import org.scaffoldeditor.scaffold.compile.Compiler.CompileProgressListener;
@@ -28,6 +29,16 @@ public class CompileResourcepackStep implements CompileStep {
 		return true;
 	}
 
+	@Override
+	public Set<String> getInputs() {
+		return Set.of(TARGET);
+	}
+
+	@Override
+	public Set<String> getOutputs() {
+		return Set.of(RESOURCEPACK);
+	}
+
 	@Override
 	public boolean isRequired() {
 		return false;
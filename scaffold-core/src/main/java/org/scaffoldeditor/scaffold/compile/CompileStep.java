@@ -2,6 +2,7 @@ package org.scaffoldeditor.scaffold.compile;
 
 import java.nio.file.Path;
 import java.util.Map;
+import java.util.Set;
 
 import org.scaffoldeditor.scaffold.compile.Compiler.CompileProgressListener;
 import org.scaffoldeditor.scaffold.entity.attribute.Attribute;
@@ -13,7 +14,20 @@ import org.scaffoldeditor.scaffold.level.Level;
  */
 public interface CompileStep {
 	
+	/** The target world folder, after it's been created and cleared. */
+	public static final String TARGET = "target";
 
+	/** The level's compiled block world. */
+	public static final String BLOCK_WORLD = "block_world";
+
+	/** The region files in the target folder. */
+	public static final String WORLD_FILES = "world_files";
+
+	/** The compiled datapack and its storage. */
+	public static final String DATAPACK = "datapack";
+
+	/** The compiled resourcepack. */
+	public static final String RESOURCEPACK = "resourcepack";
 	
 	/**
 	 * Execute this compilation step.
@@ -40,4 +54,28 @@ public interface CompileStep {
 	 * The ID of this step. Used for locating it in the compile stack.
 	 */
 	public String getID();
+
+	/**
+	 * Get the names of everything this step reads, such as {@link #BLOCK_WORLD}.
+	 * A step waits for every earlier step that writes one of its inputs (or reads
+	 * one of its outputs) to finish before it starts. Steps that don't depend on
+	 * each other may run at the same time.
+	 * 
+	 * @return The step's inputs, or <code>null</code> if it may read anything,
+	 *         in which case it waits for every earlier step.
+	 */
+	public default Set<String> getInputs() {
+		return null;
+	}
+
+	/**
+	 * Get the names of everything this step writes.
+	 * 
+	 * @return The step's outputs, or <code>null</code> if it may write anything,
+	 *         in which case every later step waits for it.
+	 * @see #getInputs()
+	 */
+	public default Set<String> getOutputs() {
+		return null;
+	}
 }
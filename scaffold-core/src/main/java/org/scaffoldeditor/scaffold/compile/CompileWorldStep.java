@@ -2,18 +2,33 @@ package org.scaffoldeditor.scaffold.compile;
 
 import java.nio.file.Path;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.logging.log4j.LogManager;
 import org.scaffoldeditor.scaffold.compile.Compiler.CompileProgressListener;
 import org.scaffoldeditor.scaffold.entity.attribute.Attribute;
+import org.scaffoldeditor.scaffold.entity.attribute.IntAttribute;
 import org.scaffoldeditor.scaffold.level.Level;
+import org.scaffoldeditor.scaffold.util.ProgressListener;
 
 public class CompileWorldStep implements CompileStep {
 
+	/**
+	 * Name of the compile argument that sets how many threads entities are
+	 * compiled on. Defaults to the amount of available processors; 1 or less
+	 * compiles every entity on the compile thread.
+	 */
+	public static final String THREADS_ARG = "compileThreads";
+
 	@Override
 	public boolean execute(Level level, Path target, Map<String, Attribute<?>> args, CompileProgressListener listener) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		if (args.get(THREADS_ARG) instanceof IntAttribute) {
+			threads = ((IntAttribute) args.get(THREADS_ARG)).getValue();
+		}
+
 		try {
-			level.compileBlockWorld(true);
+			level.compileBlockWorld(true, threads, ProgressListener.DUMMY);
 			return true;
 		} catch (Throwable e) {
 			LogManager.getLogger().error("Unable to compile block world.", e);
@@ -21,6 +36,16 @@ public class CompileWorldStep implements CompileStep {
 		}
 	}
 
+	@Override
+	public Set<String> getInputs() {
+		return Set.of();
+	}
+
+	@Override
+	public Set<String> getOutputs() {
+		return Set.of(BLOCK_WORLD);
+	}
+
 	@Override
 	public boolean isRequired() {
 		return true;
@@ -1,11 +1,22 @@
 package org.scaffoldeditor.scaffold.compile;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.logging.log4j.LogManager;
+import org.scaffoldeditor.scaffold.compile.CompileProfiler.Timer;
 import org.scaffoldeditor.scaffold.core.Project;
 import org.scaffoldeditor.scaffold.entity.attribute.Attribute;
 import org.scaffoldeditor.scaffold.level.Level;
@@ -19,9 +30,19 @@ public class Compiler {
 		public final CompileEndStatus endStatus;
 		public final String errorMessage;
 		
+		/**
+		 * The compile's profile, or <code>null</code> if it wasn't profiled.
+		 */
+		public final CompileProfiler profile;
+		
 		public CompileResult(CompileEndStatus endStatus, String errorMessage) {
+			this(endStatus, errorMessage, null);
+		}
+		
+		public CompileResult(CompileEndStatus endStatus, String errorMessage, CompileProfiler profile) {
 			this.endStatus = endStatus;
 			this.errorMessage = errorMessage;
+			this.profile = profile;
 		}
 		
 		public static CompileResult successfulCompile() {
@@ -61,15 +82,28 @@ public class Compiler {
 	}
 	
 	/**
-	 * The compile steps this compiler will execute, in order.
+	 * The compile steps this compiler will execute, in order. Steps that don't
+	 * depend on each other (see {@link CompileStep#getInputs()}) may run at the
+	 * same time.
 	 */
 	public final List<CompileStep> steps = new ArrayList<>();
 	
-	private boolean shouldCancel = false;
-	private boolean isActive = false;
+	private volatile boolean shouldCancel = false;
+	private volatile boolean isActive = false;
+	private int maxConcurrentSteps = Runtime.getRuntime().availableProcessors();
+	private boolean profiling = false;
+	
+	/**
+	 * The folder in the project's cache folder that compile profiles are saved to.
+	 */
+	public static final String PROFILE_FOLDER = "profiles";
 	
 	/**
 	 * Compile a level.
+	 * <br>
+	 * Steps are run on a thread pool, so the listener may be called from multiple
+	 * threads. Step progress is always reported from the calling thread.
+	 * 
 	 * @param level Level to compile.
 	 * @param target Folder to compile into (the world folder itself).
 	 * @param arguements Compile arguements.
@@ -80,39 +114,183 @@ public class Compiler {
 		this.isActive = true;
 		this.shouldCancel = false;
 		LogManager.getLogger().info("Starting compile...");
-		int i = 0;
-		for (CompileStep step : steps) {
-			if (shouldCancel) {
-				this.isActive = false;
-				this.shouldCancel = false;
-				return CompileResult.canceled();
-			}
-			
-			if (listener != null) {
-				listener.onCompileProgress((float) i / steps.size(), step.getDescription());
-			}
+		
+		CompileProfiler profiler = profiling ? new CompileProfiler() : null;
+		level.setProfiler(profiler);
+		
+		List<CompileStep> steps = List.copyOf(this.steps);
+		List<Set<Integer>> dependencies = resolveDependencies(steps);
+		
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(maxConcurrentSteps, steps.size())));
+		CompletionService<Integer> completion = new ExecutorCompletionService<>(executor);
+		boolean[] started = new boolean[steps.size()];
+		boolean[] finished = new boolean[steps.size()];
+		boolean[] succeeded = new boolean[steps.size()];
+		int startedCount = 0;
+		int finishedCount = 0;
+		int running = 0;
+		CompileResult result = null;
+		
+		try {
+			while (finishedCount < steps.size()) {
+				if (result == null && shouldCancel) {
+					result = CompileResult.canceled();
+				}
 			
-			boolean success = false;
-			try {
-				success = step.execute(level, target, arguements, listener);
-			} catch (Exception e) {
-				LogManager.getLogger().error("Unable to complete step: "+step.getID(), e);
-			}
+				// Start every step whose dependencies have finished.
+				for (int i = 0; result == null && i < steps.size(); i++) {
+					if (started[i] || !finished(dependencies.get(i), finished)) continue;
+					
+					CompileStep step = steps.get(i);
+					if (listener != null) {
+						listener.onCompileProgress((float) startedCount / steps.size(), step.getDescription());
+					}
+					int index = i;
+					completion.submit(() -> {
+						Timer timer = profiler != null ? profiler.time(CompileProfiler.STEP, step.getID()) : null;
+						try {
+							succeeded[index] = step.execute(level, target, arguements, listener);
+						} catch (Exception e) {
+							LogManager.getLogger().error("Unable to complete step: "+step.getID(), e);
+						} finally {
+							if (timer != null) timer.stop();
+						}
+						return index;
+					});
+					started[i] = true;
+					startedCount++;
+					running++;
+				}
 			
-			if (!success) {
-				if (step.isRequired()) {
-					this.isActive = false;
-					return new CompileResult(CompileEndStatus.FAILED, "Unable to complete required step: "+step.getID()+". See console for details.");
-				} else {
-					listener.onError("Unable to complete step: "+step.getID()+". See console for details.");
+				// Once nothing new can start, let the running steps finish.
+				if (running == 0) break;
+				
+				int index;
+				try {
+					index = completion.take().get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					result = CompileResult.canceled();
+					break;
+				} catch (ExecutionException e) {
+					// Only errors make it out of the step.
+					throw new RuntimeException(e.getCause());
+				}
+				running--;
+				finished[index] = true;
+				finishedCount++;
+				
+				CompileStep step = steps.get(index);
+				if (!succeeded[index]) {
+					if (step.isRequired()) {
+						if (result == null) {
+							result = new CompileResult(CompileEndStatus.FAILED, "Unable to complete required step: "+step.getID()+". See console for details.");
+						}
+					} else {
+						listener.onError("Unable to complete step: "+step.getID()+". See console for details.");
+					}
 				}
 			}
-			
-			i++;
+		} finally {
+			executor.shutdown();
+			level.setProfiler(null);
+			this.isActive = false;
+			this.shouldCancel = false;
 		}
 		
-		this.isActive = false;
-		return CompileResult.successfulCompile();	
+		if (result == null) result = CompileResult.successfulCompile();
+		if (profiler != null) {
+			saveProfile(level, profiler);
+			result = new CompileResult(result.endStatus, result.errorMessage, profiler);
+		}
+		return result;
+	}
+	
+	/**
+	 * Save a compile profile into the project's cache folder.
+	 */
+	private static void saveProfile(Level level, CompileProfiler profiler) {
+		File file = level.getProject().getCacheFolder().resolve(PROFILE_FOLDER)
+				.resolve(level.getName() + "_" + System.currentTimeMillis() + ".json").toFile();
+		try {
+			profiler.writeJson(file);
+			LogManager.getLogger().info("Saved compile profile to " + file);
+		} catch (IOException e) {
+			LogManager.getLogger().error("Unable to save compile profile.", e);
+		}
+	}
+	
+	private static boolean finished(Set<Integer> dependencies, boolean[] finished) {
+		for (int dependency : dependencies) {
+			if (!finished[dependency]) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Find the earlier steps each step has to wait for.
+	 * @param steps Steps in order.
+	 * @return The indices of each step's dependencies.
+	 */
+	private static List<Set<Integer>> resolveDependencies(List<CompileStep> steps) {
+		List<Set<Integer>> dependencies = new ArrayList<>(steps.size());
+		for (int i = 0; i < steps.size(); i++) {
+			Set<Integer> stepDependencies = new HashSet<>();
+			for (int j = 0; j < i; j++) {
+				if (conflicts(steps.get(i), steps.get(j))) {
+					stepDependencies.add(j);
+				}
+			}
+			dependencies.add(stepDependencies);
+		}
+		return dependencies;
+	}
+	
+	/**
+	 * Check if two steps can't run at the same time: one of them writes
+	 * something the other reads or writes.
+	 */
+	private static boolean conflicts(CompileStep step1, CompileStep step2) {
+		return overlaps(step1.getInputs(), step2.getOutputs()) || overlaps(step1.getOutputs(), step2.getInputs())
+				|| overlaps(step1.getOutputs(), step2.getOutputs());
+	}
+	
+	private static boolean overlaps(Set<String> set1, Set<String> set2) {
+		if (set1 == null) return set2 == null || !set2.isEmpty();
+		if (set2 == null) return !set1.isEmpty();
+		return !Collections.disjoint(set1, set2);
+	}
+	
+	/**
+	 * Get whether compiles are profiled.
+	 */
+	public boolean isProfiling() {
+		return profiling;
+	}
+	
+	/**
+	 * Set whether compiles should be profiled. Profiled compiles return their
+	 * profile in {@link CompileResult#profile} and save it as JSON in the
+	 * project's cache folder.
+	 * @see CompileProfiler
+	 */
+	public void setProfiling(boolean profiling) {
+		this.profiling = profiling;
+	}
+	
+	/**
+	 * Get the maximum amount of steps that may run at once.
+	 */
+	public int getMaxConcurrentSteps() {
+		return maxConcurrentSteps;
+	}
+	
+	/**
+	 * Set the maximum amount of steps that may run at once. 1 runs every step in
+	 * order on a single thread.
+	 */
+	public void setMaxConcurrentSteps(int maxConcurrentSteps) {
+		this.maxConcurrentSteps = maxConcurrentSteps;
 	}
 	
 	/**
@@ -124,7 +302,8 @@ public class Compiler {
 	
 	/**
 	 * If the compiler active, cancel the compilation.
-	 * Doesn't cancel compilation steps; just the process as a whole.
+	 * Doesn't cancel compilation steps; just the process as a whole. Steps that
+	 * are already running are allowed to finish, but no more are started.
 	 */
 	public void cancel() {
 		this.shouldCancel = true;
@@ -1,16 +1,20 @@
 package org.scaffoldeditor.scaffold.compile;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.logging.log4j.LogManager;
 import org.scaffoldeditor.scaffold.compile.Compiler.CompileProgressListener;
+import org.scaffoldeditor.scaffold.compile.world.IncrementalWorldWriter;
 import org.scaffoldeditor.scaffold.entity.attribute.Attribute;
 import org.scaffoldeditor.scaffold.entity.attribute.BooleanAttribute;
 import org.scaffoldeditor.scaffold.level.Level;
 import org.scaffoldeditor.scaffold.level.LevelData.GameType;
+import org.scaffoldeditor.scaffold.logic.AbstractPack.OutputMode;
 
 public class SetupStep implements CompileStep {
 
@@ -19,7 +23,13 @@ public class SetupStep implements CompileStep {
 		LogManager.getLogger().info("Target path: "+target);
 		if (target.toFile().exists()) {
 			try {
-				FileUtils.deleteDirectory(target.toFile());
+				boolean keepWorld = WriteWorldStep.getWorldWriter().isIncremental();
+				boolean keepDatapack = CompileLogicStep.getOutputMode() == OutputMode.INCREMENTAL;
+				if (keepWorld || keepDatapack) {
+					clearTarget(target.toFile(), keepWorld, keepDatapack ? level.getProject().getName() : null);
+				} else {
+					FileUtils.deleteDirectory(target.toFile());
+				}
 			} catch (IOException e) {
 				e.printStackTrace();
 				return false;
@@ -51,6 +61,43 @@ public class SetupStep implements CompileStep {
 		return true;
 	}
 
+	/**
+	 * Delete everything in the target folder except the files incremental
+	 * outputs reuse.
+	 * @param keepWorld Keep the files an incremental world writer reuses.
+	 * @param datapack  Name of the datapack folder to keep, or <code>null</code>
+	 *                  to delete every datapack.
+	 */
+	private void clearTarget(File target, boolean keepWorld, String datapack) throws IOException {
+		File[] files = target.listFiles();
+		if (files == null) return;
+		for (File file : files) {
+			String name = file.getName();
+			if (keepWorld && (name.equals("region") || name.equals("entities") || name.equals(IncrementalWorldWriter.HASH_FILE))) {
+				continue;
+			}
+			if (datapack != null && name.equals("datapacks") && file.isDirectory()) {
+				File[] packs = file.listFiles();
+				if (packs == null) continue;
+				for (File pack : packs) {
+					if (!pack.getName().equals(datapack)) FileUtils.forceDelete(pack);
+				}
+				continue;
+			}
+			FileUtils.forceDelete(file);
+		}
+	}
+
+
+	@Override
+	public Set<String> getInputs() {
+		return Set.of();
+	}
+
+	@Override
+	public Set<String> getOutputs() {
+		return Set.of(TARGET);
+	}
 
 	@Override
 	public boolean isRequired() {
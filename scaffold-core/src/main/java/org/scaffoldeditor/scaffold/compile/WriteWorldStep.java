@@ -3,22 +3,23 @@ package org.scaffoldeditor.scaffold.compile;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Map;
+import java.util.Set;
 
 import org.scaffoldeditor.scaffold.compile.Compiler.CompileProgressListener;
-import org.scaffoldeditor.scaffold.compile.world.NativeWorldWriter;
+import org.scaffoldeditor.scaffold.compile.world.IncrementalWorldWriter;
 import org.scaffoldeditor.scaffold.compile.world.WorldWriter;
 import org.scaffoldeditor.scaffold.entity.attribute.Attribute;
 import org.scaffoldeditor.scaffold.level.Level;
 
 public class WriteWorldStep implements CompileStep {
 	
-	private static WorldWriter worldWriter = new NativeWorldWriter();
+	private static WorldWriter worldWriter = new IncrementalWorldWriter();
 
 	@Override
 	public boolean execute(Level level, Path target, Map<String, Attribute<?>> args, CompileProgressListener listener) {
 
 		try {
-			worldWriter.writeWorld(target, level.getBlockWorld());
+			worldWriter.writeWorld(target, level.getBlockWorld(), level.getProfiler());
 			return true;
 		} catch (IOException e) {
 			e.printStackTrace();
@@ -26,6 +27,16 @@ public class WriteWorldStep implements CompileStep {
 		}
 	}
 
+	@Override
+	public Set<String> getInputs() {
+		return Set.of(TARGET, BLOCK_WORLD);
+	}
+
+	@Override
+	public Set<String> getOutputs() {
+		return Set.of(WORLD_FILES);
+	}
+
 	@Override
 	public boolean isRequired() {
 		return true;
@@ -0,0 +1,280 @@
+package org.scaffoldeditor.scaffold.compile.world;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.scaffoldeditor.nbt.Constants;
+import org.scaffoldeditor.nbt.block.BlockWorld;
+import org.scaffoldeditor.nbt.block.Chunk;
+import org.scaffoldeditor.nbt.block.WorldMath.ChunkCoordinate;
+import org.scaffoldeditor.nbt.io.ChunkParser;
+import org.scaffoldeditor.nbt.io.NBTStreamWriter;
+import org.scaffoldeditor.nbt.io.RegionFile;
+import org.scaffoldeditor.nbt.io.RegionFileWriter;
+import org.scaffoldeditor.nbt.util.LongObjectMap;
+import org.scaffoldeditor.scaffold.compile.CompileProfiler;
+
+/**
+ * A world writer that only rewrites the parts of the world that changed since
+ * the last compile. A content hash of every chunk is saved alongside the
+ * world; on the next compile, only regions with changed chunks are rewritten,
+ * and the unchanged chunks in them are copied over without being re-encoded.
+ * <br>
+ * If the hash file is missing or was written for a different data version,
+ * the whole world is written.
+ */
+public class IncrementalWorldWriter implements WorldWriter {
+
+	/**
+	 * The name of the file in the world folder that chunk hashes are saved to.
+	 */
+	public static final String HASH_FILE = "scaffold_chunks.dat";
+
+	private static final int FORMAT_VERSION = 1;
+	private static final int REGION_CHUNKS = RegionFile.REGION_WIDTH * RegionFile.REGION_WIDTH;
+
+	private static final Logger LOGGER = LogManager.getLogger();
+
+	/**
+	 * Streams a chunk's NBT for {@link IncrementalWorldWriter#writeRegion}.
+	 */
+	private interface ChunkSerializer {
+		void serialize(Chunk chunk, int x, int z, NBTStreamWriter out) throws IOException;
+	}
+
+	@Override
+	public void writeWorld(Path worldFolder, BlockWorld world) throws IOException {
+		writeWorld(worldFolder, world, null);
+	}
+
+	@Override
+	public void writeWorld(Path worldFolder, BlockWorld world, CompileProfiler profiler) throws IOException {
+		File regionFolder = worldFolder.resolve("region").toFile();
+		File entitiesFolder = worldFolder.resolve("entities").toFile();
+		File hashFile = worldFolder.resolve(HASH_FILE).toFile();
+		int dataVersion = Constants.DEFAULT_DATA_VERSION;
+
+		regionFolder.mkdir();
+		entitiesFolder.mkdir();
+
+		LongObjectMap<long[]> previous = readHashes(hashFile, dataVersion);
+		// If we fail partway through, the next compile needs to start from scratch.
+		Files.deleteIfExists(hashFile.toPath());
+
+		LongObjectMap<long[]> current = hashWorld(world);
+
+		// Remove regions that no longer have any chunks.
+		deleteStaleRegions(regionFolder, current);
+		deleteStaleRegions(entitiesFolder, current);
+
+		ChunkParser parser = new ChunkParser(dataVersion);
+		int skipped = 0;
+		LongObjectMap<long[]>.Cursor cursor = current.cursor();
+		while (cursor.hasNext()) {
+			long[] hashes = cursor.next();
+			int regionX = ChunkCoordinate.unpackX(cursor.key());
+			int regionZ = ChunkCoordinate.unpackZ(cursor.key());
+			long[] prevHashes = previous != null ? previous.get(cursor.key()) : null;
+
+			String name = "r." + regionX + "." + regionZ + ".mca";
+			File regionFile = new File(regionFolder, name);
+			File entityFile = new File(entitiesFolder, name);
+
+			if (Arrays.equals(hashes, prevHashes) && regionFile.isFile() && entityFile.isFile()) {
+				skipped++;
+				continue;
+			}
+
+			int encoded = writeRegion(regionFile, world, regionX, regionZ, hashes, prevHashes, parser::writeNBT);
+			writeRegion(entityFile, world, regionX, regionZ, hashes, prevHashes, parser::writeEntities);
+			if (profiler != null) {
+				profiler.addChunksWritten(encoded);
+				profiler.addBytesWritten(regionFile.length() + entityFile.length());
+			}
+		}
+		LOGGER.info("Skipped " + skipped + " unchanged region(s).");
+
+		writeHashes(hashFile, dataVersion, current);
+	}
+
+	@Override
+	public boolean isIncremental() {
+		return true;
+	}
+
+	/**
+	 * Write a region file, re-encoding only the chunks that changed.
+	 *
+	 * @param file       File to write. Will replace if already exists.
+	 * @param world      World to write from.
+	 * @param regionX    X coordinate of the region.
+	 * @param regionZ    Z coordinate of the region.
+	 * @param hashes     Current hashes of every chunk in the region.
+	 * @param prevHashes Hashes of every chunk when the file was last written, or
+	 *                   <code>null</code> to re-encode every chunk.
+	 * @param serializer Function to convert a chunk to NBT.
+	 * @return The amount of chunks that were encoded.
+	 */
+	private int writeRegion(File file, BlockWorld world, int regionX, int regionZ, long[] hashes, long[] prevHashes,
+			ChunkSerializer serializer) throws IOException {
+		RegionFile old = null;
+		if (prevHashes != null && file.isFile()) {
+			try {
+				old = new RegionFile(file);
+			} catch (IOException e) {
+				LOGGER.warn("Unable to read existing region file " + file + ". It will be rewritten.", e);
+			}
+		}
+
+		File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+		int encoded = 0;
+		int reused = 0;
+		try (RegionFileWriter writer = new RegionFileWriter(temp)) {
+			for (int i = 0; i < REGION_CHUNKS; i++) {
+				if (hashes[i] == 0) continue;
+				int x = regionX * RegionFile.REGION_WIDTH + i % RegionFile.REGION_WIDTH;
+				int z = regionZ * RegionFile.REGION_WIDTH + i / RegionFile.REGION_WIDTH;
+
+				if (old != null && prevHashes[i] == hashes[i] && old.hasChunk(x, z)) {
+					writer.writeRaw(x, z, old.getRawChunk(x, z), old.getCompressionType(x, z));
+					reused++;
+				} else {
+					Chunk chunk = world.chunkAt(x, z);
+					writer.write(x, z, out -> serializer.serialize(chunk, x, z, out));
+					encoded++;
+				}
+			}
+		} finally {
+			// Reused chunks are read into heap buffers, so once the old region is
+			// closed nothing holds the file open and it can be replaced, even on Windows.
+			if (old != null) old.close();
+		}
+
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		LOGGER.info("Wrote " + file.getName() + " (" + encoded + " chunk(s) encoded, " + reused + " reused)");
+		return encoded;
+	}
+
+	/**
+	 * Calculate the content hash of every chunk in the world, grouped by region.
+	 * @return A map of packed region coordinates and the hashes of each chunk in
+	 *         the region, in header order. Chunks that don't exist have a hash of
+	 *         0.
+	 */
+	private static LongObjectMap<long[]> hashWorld(BlockWorld world) {
+		LongObjectMap<Chunk[]> regions = new LongObjectMap<>();
+		for (Map.Entry<ChunkCoordinate, Chunk> entry : world.getChunks().entrySet()) {
+			ChunkCoordinate coord = entry.getKey();
+			long key = ChunkCoordinate.pack(coord.x >> 5, coord.z >> 5);
+			Chunk[] chunks = regions.get(key);
+			if (chunks == null) {
+				chunks = new Chunk[REGION_CHUNKS];
+				regions.put(key, chunks);
+			}
+			chunks[(coord.x & 31) + (coord.z & 31) * RegionFile.REGION_WIDTH] = entry.getValue();
+		}
+
+		LongObjectMap<long[]> hashes = new LongObjectMap<>(regions.size());
+		List<Chunk[]> chunkLists = new ArrayList<>(regions.size());
+		List<long[]> hashLists = new ArrayList<>(regions.size());
+		regions.forEach((key, chunks) -> {
+			long[] regionHashes = new long[REGION_CHUNKS];
+			hashes.put(key, regionHashes);
+			chunkLists.add(chunks);
+			hashLists.add(regionHashes);
+		});
+
+		// Hashing reads every block, so spread it across regions.
+		IntStream.range(0, chunkLists.size()).parallel().forEach(r -> {
+			Chunk[] chunks = chunkLists.get(r);
+			long[] regionHashes = hashLists.get(r);
+			for (int i = 0; i < REGION_CHUNKS; i++) {
+				if (chunks[i] == null) continue;
+				long hash = chunks[i].contentHash();
+				regionHashes[i] = hash != 0 ? hash : 1;
+			}
+		});
+		return hashes;
+	}
+
+	/**
+	 * Delete every region file in a folder that isn't in a set of regions.
+	 */
+	private static void deleteStaleRegions(File folder, LongObjectMap<?> regions) throws IOException {
+		File[] files = folder.listFiles();
+		if (files == null) return;
+		for (File file : files) {
+			String[] parts = file.getName().split("\\.");
+			if (parts.length != 4 || !parts[0].equals("r") || !parts[3].equals("mca")) continue;
+			try {
+				long key = ChunkCoordinate.pack(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+				if (regions.containsKey(key)) continue;
+			} catch (NumberFormatException e) {
+				continue;
+			}
+			LOGGER.info("Deleting stale region file " + file);
+			Files.delete(file.toPath());
+		}
+	}
+
+	/**
+	 * Read the chunk hashes from a previous compile.
+	 * @return The hashes, or <code>null</code> if they're missing, unreadable or
+	 *         were written for a different data version.
+	 */
+	private static LongObjectMap<long[]> readHashes(File file, int dataVersion) {
+		if (!file.isFile()) return null;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != FORMAT_VERSION || in.readInt() != dataVersion) {
+				return null;
+			}
+			int regionCount = in.readInt();
+			LongObjectMap<long[]> hashes = new LongObjectMap<>(regionCount);
+			for (int r = 0; r < regionCount; r++) {
+				long key = ChunkCoordinate.pack(in.readInt(), in.readInt());
+				long[] regionHashes = new long[REGION_CHUNKS];
+				for (int i = 0; i < REGION_CHUNKS; i++) {
+					regionHashes[i] = in.readLong();
+				}
+				hashes.put(key, regionHashes);
+			}
+			return hashes;
+		} catch (IOException e) {
+			LOGGER.warn("Unable to read chunk hashes. The whole world will be rewritten.", e);
+			return null;
+		}
+	}
+
+	private static void writeHashes(File file, int dataVersion, LongObjectMap<long[]> hashes) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(dataVersion);
+			out.writeInt(hashes.size());
+			LongObjectMap<long[]>.Cursor cursor = hashes.cursor();
+			while (cursor.hasNext()) {
+				long[] regionHashes = cursor.next();
+				out.writeInt(ChunkCoordinate.unpackX(cursor.key()));
+				out.writeInt(ChunkCoordinate.unpackZ(cursor.key()));
+				for (long hash : regionHashes) {
+					out.writeLong(hash);
+				}
+			}
+		}
+	}
+}
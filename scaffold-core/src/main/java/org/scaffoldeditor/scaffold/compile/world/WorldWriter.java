@@ -1,9 +1,11 @@
 package org.scaffoldeditor.scaffold.compile.world;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 
 import org.scaffoldeditor.nbt.block.BlockWorld;
+import org.scaffoldeditor.scaffold.compile.CompileProfiler;
 
 /**
  * A class that can write Minecraft .mca files.
@@ -18,4 +20,35 @@ public interface WorldWriter {
 	 * @throws IOException If an IO exception occurs.
 	 */
 	void writeWorld(Path worldFolder, BlockWorld world) throws IOException;
+
+	/**
+	 * Write a world out to file, counting the chunks and bytes written in a
+	 * profiler. The default implementation counts every chunk in the world and
+	 * the size of every region file afterwards.
+	 * @param worldFolder Folder of the world.
+	 * @param world Block world to write.
+	 * @param profiler Profiler to count in. May be <code>null</code>.
+	 * @throws IOException If an IO exception occurs.
+	 */
+	default void writeWorld(Path worldFolder, BlockWorld world, CompileProfiler profiler) throws IOException {
+		writeWorld(worldFolder, world);
+		if (profiler == null) return;
+
+		profiler.addChunksWritten(world.getChunks().size());
+		for (String folder : new String[] { "region", "entities" }) {
+			File[] files = worldFolder.resolve(folder).toFile().listFiles();
+			if (files == null) continue;
+			for (File file : files) {
+				profiler.addBytesWritten(file.length());
+			}
+		}
+	}
+
+	/**
+	 * Whether this writer reuses the output of previous compiles. If so, the
+	 * world's region files are kept between compiles rather than deleted.
+	 */
+	default boolean isIncremental() {
+		return false;
+	}
 }
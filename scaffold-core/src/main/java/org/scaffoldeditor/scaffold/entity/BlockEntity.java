@@ -55,6 +55,35 @@ public interface BlockEntity {
 		return compileWorld(world, full, null);
 	}
 	
+	/**
+	 * Check whether this entity can be compiled into an empty world of its own,
+	 * which is then merged into the real world with
+	 * {@link BlockWorld#mergeFrom(BlockWorld)}. This lets entities compile in
+	 * parallel. It's only safe if <code>compileWorld</code> never reads the
+	 * world it compiles into, never removes blocks, and always overrides existing
+	 * blocks.
+	 * @return Whether the entity can be compiled in isolation.
+	 */
+	default boolean canCompileIsolated() {
+		return false;
+	}
+	
+	/**
+	 * Get a value that changes whenever this entity's compiled blocks might
+	 * change, such as when its attributes are updated or its assets are
+	 * reloaded. Partial recompiles cache the sections an entity compiled to
+	 * until its fingerprint changes, comparing fingerprints with
+	 * <code>equals</code>.
+	 * <br>
+	 * Cached sections are compiled in isolation, so only entities that
+	 * {@link #canCompileIsolated() can compile isolated} should have one.
+	 * @return The fingerprint, or <code>null</code> if the entity's compiled
+	 *         blocks shouldn't be cached.
+	 */
+	default Object getCompileFingerprint() {
+		return null;
+	}
+	
 	/**
 	 * Get the block this entity believes should be at a particular location. This function
 	 * is called often and must be efficient. If the entity doesn't care what block is in this location,
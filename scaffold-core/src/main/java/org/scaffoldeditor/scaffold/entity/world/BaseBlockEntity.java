@@ -1,11 +1,13 @@
 package org.scaffoldeditor.scaffold.entity.world;
 
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Set;
 
 import org.joml.Vector3d;
 import org.joml.Vector3dc;
 import org.scaffoldeditor.nbt.block.BlockCollection;
+import org.scaffoldeditor.nbt.block.WorldMath.SectionCoordinate;
 import org.scaffoldeditor.scaffold.entity.BlockEntity;
 import org.scaffoldeditor.scaffold.entity.Entity;
 import org.scaffoldeditor.scaffold.entity.attribute.Attribute;
@@ -28,6 +30,11 @@ public abstract class BaseBlockEntity extends Entity implements BlockEntity {
 	 */
 	protected Vector3dc positionCache;
 	
+	/**
+	 * Incremented every time the attributes are updated. Part of the compile fingerprint.
+	 */
+	private int compileRevision;
+
 	/**
 	 * <p>
 	 * Whether the most recent change to attributes requires the block collection to
@@ -45,7 +52,12 @@ public abstract class BaseBlockEntity extends Entity implements BlockEntity {
 	
 	@Override
 	protected void onSetAttributes(Map<String, Attribute<?>> updated) {
-		if (positionCache != null && updated.containsKey("position")) {
+		compileRevision++;
+		Set<SectionCoordinate> indexed = getLevel().getSectionIndex().sectionsOf(this);
+		if (indexed != null) {
+			// The index still has the sections from before the update.
+			getLevel().dirtySections.addAll(indexed);
+		} else if (positionCache != null && updated.containsKey("position")) {
 			// Temporarily set the position back so we can capture the bounds.
 			Vector3dc newPosition = getPosition();
 			setPositionNoUpdate(positionCache);
@@ -58,10 +70,36 @@ public abstract class BaseBlockEntity extends Entity implements BlockEntity {
 		getLevel().dirtySections.addAll(getOverlappingSections());
 		super.onSetAttributes(updated);
 		updateBlocks();
-		getLevel().dirtySections.addAll(getOverlappingSections());
+		updateSectionIndex();
 		positionCache = getPosition();
 	}
 
+	@Override
+	public Object getCompileFingerprint() {
+		if (!canCompileIsolated()) return null;
+		return Arrays.asList(compileRevision, getAssetFingerprint());
+	}
+
+	/**
+	 * Get the assets this entity compiles from, such as its loaded model. Used in
+	 * the compile fingerprint, so it should return a different object whenever
+	 * the assets are reloaded.
+	 * @return The assets, or <code>null</code> if the entity doesn't use any.
+	 */
+	protected Object getAssetFingerprint() {
+		return null;
+	}
+
+	/**
+	 * Update this entity's sections in the level's section index and mark them as
+	 * dirty. Should be called whenever the entity's bounds change outside of an
+	 * attribute update.
+	 */
+	protected void updateSectionIndex() {
+		Set<SectionCoordinate> sections = getLevel().getSectionIndex().update(this);
+		getLevel().dirtySections.addAll(sections != null ? sections : getOverlappingSections());
+	}
+
 	/**
 	 * Called when it's time to update variables that determine the placed blocks
 	 * during an attribute update, typically to reload models from disk, etc. Not to
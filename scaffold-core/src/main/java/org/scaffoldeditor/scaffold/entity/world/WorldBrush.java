@@ -15,6 +15,7 @@ import org.scaffoldeditor.nbt.block.WorldMath.SectionCoordinate;
 import org.scaffoldeditor.nbt.math.MathUtils;
 import org.scaffoldeditor.scaffold.annotation.Attrib;
 import org.scaffoldeditor.scaffold.block_textures.BlockTexture;
+import org.scaffoldeditor.scaffold.block_textures.NoiseBlockTexture;
 import org.scaffoldeditor.scaffold.block_textures.SingleBlockTexture;
 import org.scaffoldeditor.scaffold.entity.BrushEntity;
 import org.scaffoldeditor.scaffold.entity.Entity;
@@ -56,10 +57,36 @@ public class WorldBrush extends BaseBlockEntity implements BrushEntity {
 	}
 
 
+	@Override
+	public boolean canCompileIsolated() {
+		// The built-in textures only return null if they're a single empty block.
+		BlockTexture texture = getTexture();
+		if (texture instanceof SingleBlockTexture) {
+			return ((SingleBlockTexture) texture).getBlock() != null;
+		}
+		return texture instanceof NoiseBlockTexture;
+	}
+
+	@Override
+	protected Object getAssetFingerprint() {
+		// Reloading an external texture creates a new instance, which changes the fingerprint.
+		return getTexture();
+	}
+
 	@Override
 	public boolean compileWorld(BlockWorld world, boolean full, Set<SectionCoordinate> sections) {
 		reloadTexture();
 		Vector3ic endLocal = MathUtils.floorVector(getEndPoint());
+
+		// Single block textures don't vary, so the whole brush can be filled at once.
+		BlockTexture texture = getTexture();
+		if (texture instanceof SingleBlockTexture) {
+			Block block = ((SingleBlockTexture) texture).getBlock();
+			Vector3ic start = getBlockPosition();
+			world.fill(start, start.add(endLocal, new Vector3i()), block != null ? block.getState() : null, this);
+			return false;
+		}
+
 		for (int x = 0; x < endLocal.x(); x++) {
 			for (int y = 0; y < endLocal.y(); y++) {
 				for (int z = 0; z < endLocal.z(); z++) {
@@ -1,5 +1,6 @@
 package org.scaffoldeditor.scaffold.entity.world;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.HashSet;
@@ -15,6 +16,7 @@ import org.scaffoldeditor.nbt.block.Block;
 import org.scaffoldeditor.nbt.block.BlockCollection;
 import org.scaffoldeditor.nbt.block.BlockWorld;
 import org.scaffoldeditor.nbt.block.Chunk;
+import org.scaffoldeditor.nbt.block.LazyBlockWorld;
 import org.scaffoldeditor.nbt.block.WorldMath.SectionCoordinate;
 import org.scaffoldeditor.nbt.math.MathUtils;
 import org.scaffoldeditor.nbt.block.ChunkedBlockCollection;
@@ -73,12 +75,26 @@ public class WorldChunked extends BaseBlockEntity {
 		
 		String model = this.model.getValue();
 		LogManager.getLogger().info("Loading model " + model);
+		closeModel();
 		modelpath = model;
 		if (model.length() == 0) {
 			this.modelCache = null;
 			return;
 		}
 		
+		// Whole worlds are too big to load into memory, so read them lazily.
+		File regionFolder = new File(getProject().assetManager().getAbsoluteFile(model), "region");
+		if (regionFolder.isDirectory()) {
+			try {
+				this.modelCache = new LazyBlockWorld(regionFolder);
+				onLoadModel();
+			} catch (IOException e) {
+				LogManager.getLogger().error("Unable to load world " + model, e);
+				this.modelCache = null;
+			}
+			return;
+		}
+		
 		if (AssetLoaderRegistry.isTypeAssignableTo(FilenameUtils.getExtension(model), ChunkedBlockCollection.class)) {
 			try {
 //				this.model = Structure.fromCompoundMap((CompoundTag) NBTUtil.read(modelFile).getTag());
@@ -96,6 +112,16 @@ public class WorldChunked extends BaseBlockEntity {
 		}
 	}
 	
+	private void closeModel() {
+		if (modelCache instanceof LazyBlockWorld) {
+			try {
+				((LazyBlockWorld) modelCache).close();
+			} catch (IOException e) {
+				LogManager.getLogger().warn("Unable to close world " + modelpath, e);
+			}
+		}
+	}
+	
 	protected void onLoadModel() {
 		// Calculate the entity bounds
 		if (modelCache == null || modelCache.getSections().size() == 0) return;
@@ -127,6 +153,16 @@ public class WorldChunked extends BaseBlockEntity {
 		boundsCache[0] = new Vector3i(minX * width, minY * height, minZ * length);
 		boundsCache[1] = new Vector3i(maxX * width, maxY * height, maxZ * length);
 	}
+	
+	@Override
+	public boolean canCompileIsolated() {
+		return true;
+	}
+	
+	@Override
+	protected Object getAssetFingerprint() {
+		return modelCache;
+	}
 
 	@Override
 	public boolean compileWorld(BlockWorld world, boolean full, Set<SectionCoordinate> worldSections) {
@@ -142,6 +178,7 @@ public class WorldChunked extends BaseBlockEntity {
 			// Compile entire model
 			for (Vector3ic coord : modelCache.getSections()) {
 				SizedBlockCollection section = modelCache.sectionAt(coord.x(), coord.y(), coord.z());
+				if (section == null) continue;
 				world.addBlockCollection(section, coord.x() * width + position.x(), coord.y() * height + position.y(),
 						coord.z() * length + position.z(), true, shouldPlaceAir(), this);
 			}
@@ -172,6 +209,7 @@ public class WorldChunked extends BaseBlockEntity {
 			
 			for (Vector3i coord : updatingModelSections) {
 				SizedBlockCollection section = modelCache.sectionAt(coord.x, coord.y, coord.z);
+				if (section == null) continue;
 				world.addBlockCollection(section,
 						coord.x * width + position.x(),
 						coord.y * height + position.y(),
@@ -10,6 +10,7 @@ import java.util.UUID;
 import org.apache.logging.log4j.LogManager;
 import org.joml.Vector3d;
 import org.joml.Vector3f;
+import org.joml.Vector3i;
 import org.joml.Vector3ic;
 import org.scaffoldeditor.nbt.block.Block;
 import org.scaffoldeditor.nbt.block.BlockCollection;
@@ -112,10 +113,10 @@ public class WorldDynamic extends Entity implements EntityProvider, TargetSelect
 		
 		entities = new HashMap<>();
 		
-		for (Vector3ic coord : modelCache) {
-			if (modelCache.blockAt(coord).getName().equals("minecraft:air")) continue;
-			entities.put(coord, generateEntity(modelCache.blockAt(coord)));
-		}
+		modelCache.forEachBlock((x, y, z, state) -> {
+			if (state.isAir()) return;
+			entities.put(new Vector3i(x, y, z), generateEntity(state.toBlock()));
+		});
 	}
 
 	@Override
@@ -6,6 +6,7 @@ import java.util.List;
 import java.util.Set;
 
 import org.apache.logging.log4j.LogManager;
+import org.joml.Matrix4dc;
 import org.joml.Vector3i;
 import org.joml.Vector3ic;
 import org.scaffoldeditor.nbt.block.Block;
@@ -28,6 +29,7 @@ import org.scaffoldeditor.scaffold.entity.attribute.BooleanAttribute;
 import org.scaffoldeditor.scaffold.entity.attribute.EnumAttribute;
 import org.scaffoldeditor.scaffold.entity.attribute.EnumAttribute.DefaultEnums.Direction;
 import org.scaffoldeditor.scaffold.io.AssetLoaderRegistry;
+import org.scaffoldeditor.scaffold.io.BakedModel;
 import org.scaffoldeditor.scaffold.level.Level;
 import org.scaffoldeditor.scaffold.math.MathUtils;
 import org.scaffoldeditor.scaffold.sdoc.SDoc;
@@ -40,6 +42,7 @@ public class WorldStatic extends BaseBlockEntity implements Faceable {
 	
 	private SizedBlockCollection baseModel;
 	private SizedBlockCollection finalModel;
+	private Matrix4dc transform = MathUtils.NORTH;
 	
 	// Keep track of the model path, location, and directoin on our own for optimization.
 	private String modelpath;
@@ -79,7 +82,7 @@ public class WorldStatic extends BaseBlockEntity implements Faceable {
 		macros.add(new Macro("Reload", () -> {
 			getLevel().dirtySections.addAll(getOverlappingSections());
 			reload();
-			getLevel().dirtySections.addAll(getOverlappingSections());
+			updateSectionIndex();
 		}));
 		return macros;
 	}
@@ -123,21 +126,36 @@ public class WorldStatic extends BaseBlockEntity implements Faceable {
 		
 		switch (direction) {
 		case NORTH:
+			transform = MathUtils.NORTH;
 			finalModel = baseModel;
 			break;
 		case WEST:
+			transform = MathUtils.WEST;
 			finalModel = new TransformSizedBlockCollection(baseModel, MathUtils.WEST);
 			break;
 		case SOUTH:
+			transform = MathUtils.SOUTH;
 			finalModel = new TransformSizedBlockCollection(baseModel, MathUtils.SOUTH);
 			break;
 		case EAST:
+			transform = MathUtils.EAST;
 			finalModel = new TransformSizedBlockCollection(baseModel, MathUtils.EAST);
 		}
 
 		this.directionCache = direction;
 	}
 
+	@Override
+	public boolean canCompileIsolated() {
+		// Block textures may return null, which would remove blocks.
+		return !textureOverrideEnabled();
+	}
+
+	@Override
+	protected Object getAssetFingerprint() {
+		return baseModel;
+	}
+
 	@Override
 	public boolean compileWorld(BlockWorld world, boolean full, Set<SectionCoordinate> sections) {
 		if (full) {
@@ -162,7 +180,7 @@ public class WorldStatic extends BaseBlockEntity implements Faceable {
 					}
 				}
 			} else {
-				world.addBlockCollection(finalModel, gridPos.x() , gridPos.y(), gridPos.z(), true, shouldPlaceAir(), this);
+				copyModel(world, null);
 			}
 		} else {
 			for (SectionCoordinate coord : sections) {
@@ -180,24 +198,46 @@ public class WorldStatic extends BaseBlockEntity implements Faceable {
 	 */
 	public void compileSection(BlockWorld world, SectionCoordinate coord) {
 		Vector3ic gridPos = getBlockPosition();
-		boolean placeAir = shouldPlaceAir();
+		if (!textureOverrideEnabled()) {
+			copyModel(world, coord);
+			return;
+		}
+
 		for (int x = coord.getStartX(); x < coord.getEndX(); x++) {
 			for (int y = coord.getStartY(); y < coord.getEndY(); y++) {
 				for (int z = coord.getStartZ(); z < coord.getEndZ(); z++) {
 					 Block block = finalModel.blockAt(x - gridPos.x(), y - gridPos.y(), z - gridPos.z());
-					 if (textureOverrideEnabled()) {
 						 if (block != null && !block.getName().equals("minecraft:air")) {
 							 world.setBlock(x, y, z, getTexture().blockAt(x, y, z));
-						 }
-					 } else {
-						 if (block != null && (placeAir || !block.getName().equals("minecraft:air"))) {
-							 world.setBlock(x, y, z, block, this);
-						 } 
 					 }
 				}
 			}
 		}
 	}
+
+	/**
+	 * Copy the model into the world, using the project's shared baked copy of it
+	 * if possible.
+	 * @param world World to compile into.
+	 * @param coord Global section coordinates to copy into, or <code>null</code> to
+	 *              copy the whole model.
+	 */
+	private void copyModel(BlockWorld world, SectionCoordinate coord) {
+		Vector3ic gridPos = getBlockPosition();
+		SizedBlockCollection model = finalModel;
+
+		// Baked sections are copied whole when the entity is on a section boundary.
+		BakedModel baked = getProject().assetManager().bakedModels().getBakedModel(modelpath, baseModel, transform);
+		if (baked != null) {
+			model = baked;
+		}
+
+		if (coord == null) {
+			world.copyFrom(model, gridPos, true, shouldPlaceAir(), this);
+		} else {
+			world.copyFrom(model, gridPos, coord.getStartPos(), coord.getEntPosition(), true, shouldPlaceAir(), this);
+		}
+	}
 	
 	protected boolean shouldPlaceAir() {
 		return placeAir.getValue();
@@ -63,6 +63,12 @@ public class WorldTogglable extends WorldStatic {
 	
 	private GenericSchematic underlayerCache;
 	
+	@Override
+	public boolean canCompileIsolated() {
+		// The underlayer is read from the world.
+		return false;
+	}
+	
 	@Override
 	public boolean compileWorld(BlockWorld world, boolean full, Set<SectionCoordinate> sections) {
 		// Save the underlayer.
@@ -1,5 +1,7 @@
 package org.scaffoldeditor.scaffold.io;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -28,6 +30,19 @@ public abstract class AssetLoader<T> {
 	 */
 	public abstract T loadAsset(InputStream in) throws IOException;
 	
+	/**
+	 * Load an instance of the asset from a file on disk. Loaders that can make use
+	 * of random access, such as by memory-mapping the file, should override this.
+	 * Default implementation opens an input stream.
+	 * @param file File to load from.
+	 * @return The loaded asset.
+	 */
+	public T loadAsset(File file) throws IOException {
+		try (InputStream in = new FileInputStream(file)) {
+			return loadAsset(in);
+		}
+	}
+	
 	/**
 	 * Check if the class this loader will load is a subclass of the passed class.
 	 */
@@ -1,5 +1,6 @@
 package org.scaffoldeditor.scaffold.io;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
@@ -32,6 +33,20 @@ public class AssetLoaderRegistry {
 		return type.loadAsset(in);
 	}
 	
+	/**
+	 * Load an asset from a file.
+	 * @param file File to load.
+	 * @param extension Extension of the file (without the dot)
+	 * @return Loaded asset.
+	 */
+	public static Object loadAsset(File file, String extension) throws IOException {
+		AssetLoader<?> type = registry.get(extension);
+		if (type == null) {
+			throw new IOException("Unknown file extension: "+extension);
+		}
+		return type.loadAsset(file);
+	}
+	
 	/**
 	 * Get the asset loader that would be used to load a particular file.
 	 * 
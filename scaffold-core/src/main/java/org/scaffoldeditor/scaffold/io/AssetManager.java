@@ -34,6 +34,7 @@ public class AssetManager {
 	 */
 	public final List<Path> searchDirectories = new ArrayList<>();
 	private Map<String, Object> cache = new HashMap<>();
+	private final BakedModelCache bakedModels = new BakedModelCache();
 	
 	public Project getProject() {
 		return project;
@@ -145,20 +146,33 @@ public class AssetManager {
 	}
 	
 	/**
-	 * Locate an asset and load it using the asset type registry.
+	 * Locate an asset and load it using the asset type registry. Safe to call from
+	 * multiple threads; each asset is only loaded once.
 	 * @param in Pathname of the file to load relative to the project root.
 	 * @param force If true, we will ignore the cache and reload from file.
 	 * @return Loaded asset.
 	 * @throws IOException If an IO exception occurs.
 	 */
-	public Object loadAsset(String in, boolean force) throws IOException {
+	public synchronized Object loadAsset(String in, boolean force) throws IOException {
 		if (!force && cache.containsKey(in)) {
 			return cache.get(in);
 		}
-		InputStream is = getAssetAsStream(in);
+		URL url = getAsset(in);
+		if (url == null) {
+			throw new FileNotFoundException("Unable to find asset: "+in);
+		}
 		try {
-			Object asset = AssetLoaderRegistry.loadAsset(is, FilenameUtils.getExtension(in));
+			Object asset;
+			if (url.getProtocol().equals("file")) {
+				// Let loaders use random access on files.
+				asset = AssetLoaderRegistry.loadAsset(new File(url.toURI()), FilenameUtils.getExtension(in));
+			} else {
+				try (InputStream is = url.openStream()) {
+					asset = AssetLoaderRegistry.loadAsset(is, FilenameUtils.getExtension(in));
+				}
+			}
 			cache.put(in, asset);
+			bakedModels.invalidate(in);
 			return asset;
 		} catch (Exception e) {
 			throw new IOException("Unable to load asset: "+in, e);
@@ -188,8 +202,17 @@ public class AssetManager {
 		return getAbsoluteFile(in).toPath();
 	}
 	
-	public void clearCache() {
+	public synchronized void clearCache() {
 		cache.clear();
+		bakedModels.clear();
+	}
+	
+	/**
+	 * Get the cache of baked models, which is invalidated along with the asset
+	 * cache.
+	 */
+	public BakedModelCache bakedModels() {
+		return bakedModels;
 	}
 	
 	/**
@@ -201,7 +224,7 @@ public class AssetManager {
 	 * @param entry Supposed cache to asset.
 	 * @param value Asset value to cache.
 	 */
-	public void forceCache(String entry, Object value) {
+	public synchronized void forceCache(String entry, Object value) {
 		String ext = FilenameUtils.getExtension(entry);
 		if (!getLoader(entry).assetClass.isAssignableFrom(value.getClass())) {
 			throw new IllegalArgumentException(
@@ -209,6 +232,7 @@ public class AssetManager {
 							+ " is not compable with " + value.getClass().getCanonicalName());
 		}
 		cache.put(entry, value);
+		bakedModels.invalidate(entry);
 	}
 	
 	/**
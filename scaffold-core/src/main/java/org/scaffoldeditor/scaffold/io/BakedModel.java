@@ -0,0 +1,131 @@
+package org.scaffoldeditor.scaffold.io;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.joml.Matrix4dc;
+import org.joml.Vector3i;
+import org.joml.Vector3ic;
+import org.scaffoldeditor.nbt.block.Block;
+import org.scaffoldeditor.nbt.block.BlockVisitor;
+import org.scaffoldeditor.nbt.block.BlockWorld;
+import org.scaffoldeditor.nbt.block.Chunk;
+import org.scaffoldeditor.nbt.block.ChunkedBlockCollection;
+import org.scaffoldeditor.nbt.block.SizedBlockCollection;
+import org.scaffoldeditor.nbt.block.transform.TransformSizedBlockCollection;
+
+import net.querz.nbt.tag.CompoundTag;
+
+/**
+ * A model that's been transformed and copied into section storage, with its
+ * origin at the start of a section. It depends only on the model and the
+ * transform, so it can be shared by every entity that places them. When it's
+ * placed on a section boundary, its sections line up with the world's and
+ * {@link BlockWorld#copyFrom} copies them whole.
+ *
+ * @see BakedModelCache
+ */
+public class BakedModel implements SizedBlockCollection, ChunkedBlockCollection {
+
+	private final SizedBlockCollection source;
+	private final BlockWorld world = new BlockWorld();
+	private final Map<Vector3ic, CompoundTag> blockEntities = new HashMap<>();
+	private final Vector3ic min;
+	private final Vector3ic max;
+
+	private BakedModel(SizedBlockCollection source, Vector3ic min, Vector3ic max) {
+		this.source = source;
+		this.min = min;
+		this.max = max;
+	}
+
+	/**
+	 * Bake a model.
+	 * @param source    Model to bake.
+	 * @param transform Transform to apply to the model, as used by
+	 *                  {@link TransformSizedBlockCollection}.
+	 * @return The baked model, or <code>null</code> if the transformed model
+	 *         doesn't fit within the height of a world.
+	 */
+	public static BakedModel bake(SizedBlockCollection source, Matrix4dc transform) {
+		SizedBlockCollection model = (transform.properties() & Matrix4dc.PROPERTY_IDENTITY) != 0 ? source
+				: new TransformSizedBlockCollection(source, transform);
+
+		Vector3i min = new Vector3i(model.getMin());
+		Vector3i max = new Vector3i(model.getMax());
+		if (min.y < 0 || max.y > Chunk.HEIGHT) {
+			return null;
+		}
+
+		BakedModel baked = new BakedModel(source, min, max);
+		// Keep air so the placing entity can decide whether to place it.
+		baked.world.copyFrom(model, new Vector3i(), true, true, null);
+		for (Vector3ic ent : model.getBlockEntities()) {
+			baked.blockEntities.put(new Vector3i(ent), model.blockEntityAt(ent));
+		}
+		return baked;
+	}
+
+	/**
+	 * Get the model this was baked from.
+	 */
+	public SizedBlockCollection getSource() {
+		return source;
+	}
+
+	@Override
+	public Block blockAt(int x, int y, int z) {
+		return world.blockAt(x, y, z);
+	}
+
+	@Override
+	public void forEachBlock(BlockVisitor visitor) {
+		world.forEachBlock(visitor);
+	}
+
+	@Override
+	public Set<Vector3ic> getBlockEntities() {
+		return blockEntities.keySet();
+	}
+
+	@Override
+	public CompoundTag blockEntityAt(Vector3ic vec) {
+		return blockEntities.get(vec);
+	}
+
+	@Override
+	public Vector3ic getMin() {
+		return min;
+	}
+
+	@Override
+	public Vector3ic getMax() {
+		return max;
+	}
+
+	@Override
+	public int getSectionWidth() {
+		return world.getSectionWidth();
+	}
+
+	@Override
+	public int getSectionLength() {
+		return world.getSectionLength();
+	}
+
+	@Override
+	public int getSectionHeight() {
+		return world.getSectionHeight();
+	}
+
+	@Override
+	public SizedBlockCollection sectionAt(int x, int y, int z) {
+		return world.sectionAt(x, y, z);
+	}
+
+	@Override
+	public Set<Vector3ic> getSections() {
+		return world.getSections();
+	}
+}
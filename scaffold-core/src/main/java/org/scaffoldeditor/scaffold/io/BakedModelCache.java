@@ -0,0 +1,83 @@
+package org.scaffoldeditor.scaffold.io;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.joml.Matrix4d;
+import org.joml.Matrix4dc;
+import org.scaffoldeditor.nbt.block.SizedBlockCollection;
+
+/**
+ * Shares {@link BakedModel}s between every entity that places the same model
+ * with the same transform, and between compiles. Models are baked once per
+ * transform, with their origin at the start of a section. Entities placed on
+ * section boundaries copy the baked sections whole; others are copied block by
+ * block with the translation applied.
+ * <br>
+ * Cached models are rebaked when the asset they were baked from is reloaded.
+ */
+public class BakedModelCache {
+
+	private static final class Key {
+		final String asset;
+		final Matrix4dc transform;
+
+		Key(String asset, Matrix4dc transform) {
+			this.asset = asset;
+			this.transform = transform;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) return true;
+			if (!(obj instanceof Key)) return false;
+			Key other = (Key) obj;
+			return asset.equals(other.asset) && transform.equals(other.transform);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(asset, transform);
+		}
+	}
+
+	private final Map<Key, BakedModel> models = new ConcurrentHashMap<>();
+
+	/**
+	 * Get a model that's been baked with a certain transform, baking it if it
+	 * hasn't been already. The baked model's origin is at the start of a
+	 * section.
+	 *
+	 * @param asset     Asset path of the model.
+	 * @param model     The loaded model. If the cached model was baked from a
+	 *                  different instance, it's baked again.
+	 * @param transform Transform to apply to the model.
+	 * @return The baked model, or <code>null</code> if the model can't be baked.
+	 * @see BakedModel#bake(SizedBlockCollection, Matrix4dc)
+	 */
+	public BakedModel getBakedModel(String asset, SizedBlockCollection model, Matrix4dc transform) {
+		Key key = new Key(asset, new Matrix4d(transform));
+
+		// Entities sharing a model often compile at the same time, so bake under the map's lock.
+		return models.compute(key, (k, baked) -> {
+			if (baked != null && baked.getSource() == model) return baked;
+			return BakedModel.bake(model, k.transform);
+		});
+	}
+
+	/**
+	 * Remove all the baked versions of an asset.
+	 * @param asset Asset path.
+	 */
+	public void invalidate(String asset) {
+		models.keySet().removeIf(key -> key.asset.equals(asset));
+	}
+
+	/**
+	 * Remove all baked models.
+	 */
+	public void clear() {
+		models.clear();
+	}
+}
@@ -1,5 +1,6 @@
 package org.scaffoldeditor.scaffold.io;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -23,4 +24,9 @@ public class ConstructionAsset extends BlockCollectionAsset<ConstructionSegment>
 		return format.readBlockCollection(in);
 	}
 
+	@Override
+	public ConstructionSegment loadAsset(File file) throws IOException {
+		return format.readBlockCollection(file);
+	}
+
 }
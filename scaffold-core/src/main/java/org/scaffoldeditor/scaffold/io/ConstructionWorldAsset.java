@@ -1,5 +1,6 @@
 package org.scaffoldeditor.scaffold.io;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -23,4 +24,9 @@ public class ConstructionWorldAsset extends AssetLoader<Construction> {
 		return format.parse(in);
 	}
 	
+	@Override
+	public Construction loadAsset(File file) throws IOException {
+		return format.parse(file, true);
+	}
+
 }
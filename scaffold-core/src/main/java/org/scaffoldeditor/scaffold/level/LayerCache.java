@@ -0,0 +1,104 @@
+package org.scaffoldeditor.scaffold.level;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.scaffoldeditor.nbt.block.BlockWorld;
+import org.scaffoldeditor.nbt.block.Chunk;
+import org.scaffoldeditor.nbt.block.Section;
+import org.scaffoldeditor.nbt.block.WorldMath.SectionCoordinate;
+import org.scaffoldeditor.scaffold.entity.BlockEntity;
+
+/**
+ * Caches the sections each block entity compiled to during partial
+ * recompiles, so entities that haven't changed don't have to be compiled
+ * again when a section they overlap is rebuilt. Their cached sections are
+ * merged back in instead.
+ * <br>
+ * A cached layer is thrown out when the entity's
+ * {@link BlockEntity#getCompileFingerprint() compile fingerprint} changes.
+ * Entities without a fingerprint are always compiled directly.
+ */
+public class LayerCache {
+
+	private static class Layer {
+		final Object fingerprint;
+		final Map<SectionCoordinate, Section> sections = new HashMap<>();
+		final Set<SectionCoordinate> compiled = new HashSet<>();
+
+		Layer(Object fingerprint) {
+			this.fingerprint = fingerprint;
+		}
+	}
+
+	private final Map<BlockEntity, Layer> layers = new HashMap<>();
+
+	/**
+	 * Compile a block entity into a world, using its cached layer if it's still
+	 * valid. Only the entity's blocks in the given sections are placed.
+	 * @param entity   Entity to compile.
+	 * @param world    World to compile into.
+	 * @param sections Sections to compile.
+	 * @return Success.
+	 */
+	public boolean compile(BlockEntity entity, BlockWorld world, Set<SectionCoordinate> sections) {
+		Object fingerprint = entity.getCompileFingerprint();
+		if (fingerprint == null) {
+			layers.remove(entity);
+			return entity.compileWorld(world, false, sections);
+		}
+
+		Layer layer = layers.get(entity);
+		if (layer == null || !fingerprint.equals(layer.fingerprint)) {
+			layer = new Layer(fingerprint);
+			layers.put(entity, layer);
+		}
+
+		Set<SectionCoordinate> missing = new HashSet<>(sections);
+		missing.removeAll(layer.compiled);
+		boolean success = true;
+		if (!missing.isEmpty()) {
+			BlockWorld scratch = new BlockWorld();
+			success = entity.compileWorld(scratch, false, missing);
+			for (SectionCoordinate coord : missing) {
+				Chunk chunk = scratch.chunkAt(coord.x(), coord.z());
+				Section section = chunk != null ? chunk.sections[coord.y()] : null;
+				if (section != null && section != Section.EMPTY) {
+					layer.sections.put(coord, section);
+				}
+			}
+			layer.compiled.addAll(missing);
+		}
+
+		for (SectionCoordinate coord : sections) {
+			Section section = layer.sections.get(coord);
+			if (section == null) continue;
+
+			Chunk chunk = world.chunkAt(coord.x(), coord.z());
+			if (chunk == null) {
+				chunk = new Chunk();
+				world.putChunk(coord.x(), coord.z(), chunk);
+			}
+			// Merge instead of adopting the section so the cached copy isn't modified.
+			chunk.getOrCreateSection(coord.y()).mergeFrom(section);
+		}
+		return success;
+	}
+
+	/**
+	 * Remove an entity's cached layer.
+	 * @param entity Entity to remove.
+	 */
+	public void invalidate(BlockEntity entity) {
+		layers.remove(entity);
+	}
+
+	/**
+	 * Remove all cached layers.
+	 */
+	public void clear() {
+		layers.clear();
+	}
+}
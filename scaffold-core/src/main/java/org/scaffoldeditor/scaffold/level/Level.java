@@ -13,18 +13,19 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.joml.Vector3d;
 import org.joml.Vector3dc;
-import org.joml.Vector3i;
-import org.joml.Vector3ic;
 import org.scaffoldeditor.nbt.block.BlockWorld;
 import org.scaffoldeditor.nbt.block.Chunk;
+import org.scaffoldeditor.nbt.block.Section;
 import org.scaffoldeditor.nbt.block.WorldMath.SectionCoordinate;
-import org.scaffoldeditor.nbt.math.MathUtils;
+import org.scaffoldeditor.scaffold.compile.CompileProfiler;
+import org.scaffoldeditor.scaffold.compile.CompileProfiler.Timer;
 import org.scaffoldeditor.scaffold.compile.Compiler.CompileEndStatus;
 import org.scaffoldeditor.scaffold.compile.Compiler.CompileResult;
 import org.scaffoldeditor.scaffold.core.Project;
@@ -77,6 +78,7 @@ public class Level {
 	private Function initFunction;
 	private Function tickFunction;
 	private Datapack datapack;
+	private CompileProfiler profiler;
 	
 	private String name = "level";
 	
@@ -92,6 +94,12 @@ public class Level {
 	/** Sections that have uncompiled changes. */
 	public final Set<SectionCoordinate> dirtySections = new HashSet<>();
 	
+	/** The block entities in each section of the level. */
+	private final SectionIndex sectionIndex = new SectionIndex();
+	
+	/** The sections each block entity compiled to in partial recompiles. */
+	private final LayerCache layerCache = new LayerCache();
+	
 	/** Whether the level should automatically recompile the relevent chunks when a block entity is updated. */
 	@Deprecated
 	public boolean autoRecompile = true;
@@ -165,6 +173,68 @@ public class Level {
 	 */
 	public void setLevelStack(StackGroup newStack) {
 		this.levelStack = newStack;
+		reindexSections();
+	}
+	
+	/**
+	 * Get the index of which block entities overlap each section of the level.
+	 * Entities in the level are added and removed automatically, but entities that
+	 * change their bounds outside of an attribute update must call
+	 * {@link SectionIndex#update(BlockEntity)} themselves.
+	 */
+	public SectionIndex getSectionIndex() {
+		return sectionIndex;
+	}
+	
+	/**
+	 * Sync the section index with the level stack after it's been replaced.
+	 * Entities that were already indexed keep their sections.
+	 */
+	private void reindexSections() {
+		Set<BlockEntity> present = new HashSet<>();
+		for (Entity entity : levelStack) {
+			if (entity instanceof BlockEntity) {
+				BlockEntity blockEntity = (BlockEntity) entity;
+				present.add(blockEntity);
+				if (!sectionIndex.contains(blockEntity)) {
+					sectionIndex.add(blockEntity);
+				}
+			}
+		}
+		for (BlockEntity entity : sectionIndex.entities()) {
+			if (!present.contains(entity)) {
+				sectionIndex.remove(entity);
+				layerCache.invalidate(entity);
+			}
+		}
+	}
+	
+	/**
+	 * Get all the block entities that overlap a volume.
+	 * @param point1 Min point of the volume.
+	 * @param point2 Max point of the volume.
+	 * @return The overlapping entities in compile order.
+	 */
+	public List<BlockEntity> getBlockEntitiesInVolume(Vector3dc point1, Vector3dc point2) {
+		Set<BlockEntity> candidates = sectionIndex.entitiesNear(point1, point2);
+		candidates.removeIf(entity -> !entity.overlapsVolume(point1, point2));
+		return sortByStack(candidates);
+	}
+	
+	/**
+	 * Sort a set of entities into compile order.
+	 */
+	private List<BlockEntity> sortByStack(Set<BlockEntity> entities) {
+		List<BlockEntity> sorted = new ArrayList<>(entities.size());
+		if (entities.isEmpty()) return sorted;
+		
+		for (Entity entity : levelStack) {
+			if (entity instanceof BlockEntity && entities.contains(entity)) {
+				sorted.add((BlockEntity) entity);
+				if (sorted.size() == entities.size()) break;
+			}
+		}
+		return sorted;
 	}
 	
 	/**
@@ -312,6 +382,23 @@ public class Level {
 		this.tickFunction = tickFunction;
 	}
 	
+	/**
+	 * Get the profiler of the compile that's running, if it's being profiled.
+	 * ONLY EXISTS DURING COMPILATION!
+	 * @return The profiler, or <code>null</code> if the compile isn't being
+	 *         profiled.
+	 */
+	public CompileProfiler getProfiler() {
+		return profiler;
+	}
+	
+	/**
+	 * For use in the compiler only.
+	 */
+	public void setProfiler(CompileProfiler profiler) {
+		this.profiler = profiler;
+	}
+	
 	/**
 	 * For use in the compiler only.
 	 */
@@ -398,7 +485,7 @@ public class Level {
 		entity.onAdded();
 		
 		if (entity instanceof BlockEntity) {
-			dirtySections.addAll(((BlockEntity) entity).getOverlappingSections());
+			dirtySections.addAll(sectionIndex.add((BlockEntity) entity));
 		}
 	}
 	
@@ -420,7 +507,7 @@ public class Level {
 		for (Entity entity : group) {
 			entity.setName(validateName(entity.getName(), new String[] {}));
 			if (entity instanceof BlockEntity) {
-				dirtySections.addAll(((BlockEntity) entity).getOverlappingSections());
+				dirtySections.addAll(sectionIndex.add((BlockEntity) entity));
 			}
 			entity.onAdded();
 		}
@@ -444,7 +531,7 @@ public class Level {
 
 		for (Entity entity : group) {
 			if (entity instanceof BlockEntity) {
-				dirtySections.addAll(((BlockEntity) entity).getOverlappingSections());
+				removeFromIndex((BlockEntity) entity);
 			}
 			entity.onRemoved();
 		}
@@ -458,7 +545,7 @@ public class Level {
 	 */
 	public void removeEntity(Entity entity) {
 		if (entity instanceof BlockEntity) {
-			dirtySections.addAll(((BlockEntity) entity).getOverlappingSections());
+			removeFromIndex((BlockEntity) entity);
 		}
 		
 		levelStack.remove(entity);
@@ -466,6 +553,15 @@ public class Level {
 		entity.onRemoved();
 	}
 	
+	/**
+	 * Remove a block entity from the section index and mark its sections as dirty.
+	 */
+	private void removeFromIndex(BlockEntity entity) {
+		Set<SectionCoordinate> sections = sectionIndex.remove(entity);
+		layerCache.invalidate(entity);
+		dirtySections.addAll(sections != null ? sections : entity.getOverlappingSections());
+	}
+	
 	/**
 	 * Rename an entity in the level.
 	 * @param target Entity to rename.
@@ -567,7 +663,26 @@ public class Level {
 	 * @param listener Progress listener that will recieve updates about world
 	 *                 compilation.
 	 */
-	public void compileBlockWorld(boolean full, ProgressListener listener) {		
+	public void compileBlockWorld(boolean full, ProgressListener listener) {
+		compileBlockWorld(full, 1, listener);
+	}
+	
+	/**
+	 * Compile the entire blockworld (and game entities within the blockworld).
+	 * <br>
+	 * If <code>threads</code> is more than 1, entities that can be compiled in
+	 * isolation (see {@link BlockEntity#canCompileIsolated()}) are compiled into
+	 * worlds of their own on a thread pool. Those worlds are merged into the level's
+	 * world in level stack order, so the result is the same as compiling every
+	 * entity on one thread.
+	 * 
+	 * @param full     Should this be a full compile? If true, entities may run more
+	 *                 complex algorithems.
+	 * @param threads  Amount of threads to compile entities on.
+	 * @param listener Progress listener that will recieve updates about world
+	 *                 compilation.
+	 */
+	public void compileBlockWorld(boolean full, int threads, ProgressListener listener) {
 		blockWorld.clear(); // Clear the blockworld of previous compiles.
 		LogManager.getLogger().info("Compiling world...");
 
@@ -578,35 +693,108 @@ public class Level {
 			eligible.add(ent);
 		}
 
-		int i = 0;
-		for (Entity entity : eligible) {
-			i++;
-			listener.progress(((float) i) / levelStack.size(), "Compiling entity: "+entity.getName());
+		ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+		Map<Entity, ForkJoinTask<IsolatedCompile>> isolated = new HashMap<>();
+		if (pool != null) {
+			for (Entity entity : eligible) {
+				if (entity instanceof BlockEntity && ((BlockEntity) entity).canCompileIsolated()) {
+					isolated.put(entity, pool.submit(() -> new IsolatedCompile(entity, full, profiler)));
+				}
+			}
+		}
+		
+		try {
+			int i = 0;
+			for (Entity entity : eligible) {
+				i++;
+				listener.progress(((float) i) / levelStack.size(), "Compiling entity: "+entity.getName());
 
-			if (entity instanceof BlockEntity) {
-				BlockEntity blockEntity = (BlockEntity) entity;
-				try {
-					blockEntity.compileWorld(blockWorld, full);
-				} catch (Throwable e) {
-					LOGGER.error("Unable to compile world entity: "+name, e);
-					listener.error(e, "Error compiling world entity: "+name);
+				if (entity instanceof BlockEntity) {
+					BlockEntity blockEntity = (BlockEntity) entity;
+					try {
+						ForkJoinTask<IsolatedCompile> task = isolated.remove(entity);
+						if (task != null) {
+							IsolatedCompile result = task.join();
+							blockWorld.mergeFrom(result.world);
+							if (result.error != null) throw result.error;
+						} else {
+							Timer timer = time(CompileProfiler.COMPILE_WORLD, entity);
+							try {
+								blockEntity.compileWorld(blockWorld, full);
+							} finally {
+								if (timer != null) timer.stop();
+							}
+						}
+					} catch (Throwable e) {
+						LOGGER.error("Unable to compile world entity: "+name, e);
+						listener.error(e, "Error compiling world entity: "+name);
+					}
+				}
+				if (entity instanceof EntityProvider) {
+					EntityProvider adder = (EntityProvider) entity;
+					Timer timer = time(CompileProfiler.COMPILE_GAME_ENTITIES, entity);
+					try {
+						adder.compileGameEntities(blockWorld);
+					} catch (Throwable e) {
+						LOGGER.error("Unable to compile game entities for: "+name, e);
+						listener.error(e, "Error compiling game entities for: "+name);
+					} finally {
+						if (timer != null) timer.stop();
+					}
 				}
 			}
-			if (entity instanceof EntityProvider) {
-				EntityProvider adder = (EntityProvider) entity;
-				try {
-					adder.compileGameEntities(blockWorld);
-				} catch (Throwable e) {
-					LOGGER.error("Unable to compile game entities for: "+name, e);
-					listener.error(e, "Error compiling game entities for: "+name);
+		} finally {
+			if (pool != null) pool.shutdownNow();
+		}
+		if (full) {
+			// Full compiles may reload models, changing the entities' bounds.
+			for (Entity entity : eligible) {
+				if (entity instanceof BlockEntity) sectionIndex.update((BlockEntity) entity);
+			}
+		}
+		if (profiler != null) {
+			long blocks = 0;
+			for (Chunk chunk : blockWorld.chunks()) {
+				for (Section section : chunk.sections) {
+					if (section != null) blocks += section.getNonAirCount();
 				}
 			}
+			profiler.addBlocksPlaced(blocks);
 		}
 		fireWorldUpdateEvent(new HashSet<>());
 		dirtySections.clear();
 		LogManager.getLogger().info("Finished compiling world.");
 	}
 	
+	/**
+	 * Start timing part of an entity's compile if the compile is being profiled.
+	 * @return The timer, or <code>null</code> if the compile isn't being profiled.
+	 */
+	private Timer time(String category, Entity entity) {
+		return profiler != null ? profiler.time(category, entity.getName()) : null;
+	}
+	
+	/**
+	 * The result of compiling a block entity into a world of its own.
+	 */
+	private static class IsolatedCompile {
+		final BlockWorld world = new BlockWorld();
+		Throwable error;
+		
+		IsolatedCompile(Entity entity, boolean full, CompileProfiler profiler) {
+			// Timed here so the CPU time and allocations are from the pool thread.
+			Timer timer = profiler != null ? profiler.time(CompileProfiler.COMPILE_WORLD, entity.getName()) : null;
+			try {
+				((BlockEntity) entity).compileWorld(world, full);
+			} catch (Throwable e) {
+				// Rethrown once the partial world has been merged, as if it had compiled in place.
+				error = e;
+			} finally {
+				if (timer != null) timer.stop();
+			}
+		}
+	}
+	
 	/**
 	 * Compile all the game entities in the level.
 	 */
@@ -632,6 +820,10 @@ public class Level {
 	 * <code>compileBlockWorld()</code> and <code>compileChunks()</code> if
 	 * compiling the entire world or an entire set of chunks. DOES NOT COMPILE GAME
 	 * ENTITIES!
+	 * <br>
+	 * Entities that haven't changed since the last time they compiled into these
+	 * sections reuse their cached blocks instead of compiling again. See
+	 * {@link BlockEntity#getCompileFingerprint()}.
 	 * 
 	 * @param sections Sections to compile.
 	 */
@@ -643,25 +835,7 @@ public class Level {
 		// Compile into a temporary block world so other chunks don't get corrupted.
 		BlockWorld tempWorld = new BlockWorld();
 		
-		List<BlockEntity> updatingEntities = new ArrayList<>();
-		
-		for (Entity entity : levelStack) {
-			if (entity instanceof BlockEntity) {
-				BlockEntity blockEntity = (BlockEntity) entity;
-				Vector3ic[] bounds = blockEntity.getBounds();
-				Vector3i minSection = MathUtils.floorVector(new Vector3d(bounds[0]).div(16));
-				Vector3i maxSection = MathUtils.floorVector(new Vector3d(bounds[1]).div(16));
-				// See if entity is within chunkList.
-				for (SectionCoordinate section : sections) {
-					if (minSection.x() <= section.x() && section.x() <= maxSection.x()
-							&& minSection.y() <= section.y() && section.y() <= maxSection.y()
-							&& minSection.z() <= section.z() && section.z() <= maxSection.z()) {
-						updatingEntities.add(blockEntity);
-						break;
-					}
-				}
-			}
-		}
+		List<BlockEntity> updatingEntities = sortByStack(sectionIndex.entitiesIn(sections));
 		
 		if (updatingEntities.size() == 0) {
 			return;
@@ -669,7 +843,7 @@ public class Level {
 		
 		for (BlockEntity entity : updatingEntities) {
 			try {
-				entity.compileWorld(tempWorld, false, sections);
+				layerCache.compile(entity, tempWorld, sections);
 			} catch (Throwable e) {
 				LOGGER.error("Unable to compile world entity: "+entity, e);
 			}
@@ -679,7 +853,7 @@ public class Level {
 			Chunk chunk = blockWorld.chunkAt(coord.x(), coord.z());
 			if (chunk == null) {
 				chunk = new Chunk();
-				blockWorld.getChunks().put(coord.getChunk(), chunk);
+				blockWorld.putChunk(coord.x(), coord.z(), chunk);
 			}
 			Chunk tempChunk = tempWorld.chunkAt(coord.x(), coord.z());
 			if (tempChunk == null) {
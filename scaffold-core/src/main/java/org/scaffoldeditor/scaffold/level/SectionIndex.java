@@ -0,0 +1,182 @@
+package org.scaffoldeditor.scaffold.level;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.joml.Vector3dc;
+import org.scaffoldeditor.nbt.block.WorldMath.SectionCoordinate;
+import org.scaffoldeditor.scaffold.entity.BlockEntity;
+
+/**
+ * Keeps track of which block entities overlap each section of a level, so the
+ * entities in an area can be found without checking every entity in the level.
+ * <br>
+ * The index is updated incrementally: whenever an entity moves or changes
+ * size, {@link #update(BlockEntity)} should be called with it.
+ */
+public class SectionIndex {
+
+	private final Map<SectionCoordinate, Set<BlockEntity>> entities = new HashMap<>();
+	private final Map<BlockEntity, Set<SectionCoordinate>> sections = new HashMap<>();
+
+	/**
+	 * Add an entity to the index, or update its sections if it's already in it.
+	 * @param entity Entity to add.
+	 * @return The sections the entity now overlaps.
+	 */
+	public Set<SectionCoordinate> add(BlockEntity entity) {
+		Set<SectionCoordinate> newSections = Set.copyOf(entity.getOverlappingSections());
+		Set<SectionCoordinate> oldSections = sections.put(entity, newSections);
+
+		if (oldSections != null) {
+			for (SectionCoordinate section : oldSections) {
+				if (!newSections.contains(section)) {
+					removeFromSection(entity, section);
+				}
+			}
+		}
+		for (SectionCoordinate section : newSections) {
+			if (oldSections == null || !oldSections.contains(section)) {
+				entities.computeIfAbsent(section, key -> new HashSet<>()).add(entity);
+			}
+		}
+		return newSections;
+	}
+
+	/**
+	 * Update the sections of an entity that's in the index. Does nothing if the
+	 * entity isn't in the index.
+	 * @param entity Entity to update.
+	 * @return The sections the entity now overlaps, or <code>null</code> if it
+	 *         isn't in the index.
+	 */
+	public Set<SectionCoordinate> update(BlockEntity entity) {
+		if (!sections.containsKey(entity)) return null;
+		return add(entity);
+	}
+
+	/**
+	 * Remove an entity from the index.
+	 * @param entity Entity to remove.
+	 * @return The sections the entity overlapped when it was last indexed, or
+	 *         <code>null</code> if it wasn't in the index.
+	 */
+	public Set<SectionCoordinate> remove(BlockEntity entity) {
+		Set<SectionCoordinate> oldSections = sections.remove(entity);
+		if (oldSections != null) {
+			for (SectionCoordinate section : oldSections) {
+				removeFromSection(entity, section);
+			}
+		}
+		return oldSections;
+	}
+
+	private void removeFromSection(BlockEntity entity, SectionCoordinate section) {
+		Set<BlockEntity> set = entities.get(section);
+		if (set != null) {
+			set.remove(entity);
+			if (set.isEmpty()) entities.remove(section);
+		}
+	}
+
+	/**
+	 * Remove every entity from the index.
+	 */
+	public void clear() {
+		entities.clear();
+		sections.clear();
+	}
+
+	/**
+	 * Check if an entity is in the index.
+	 */
+	public boolean contains(BlockEntity entity) {
+		return sections.containsKey(entity);
+	}
+
+	/**
+	 * Get all the entities in the index.
+	 * @return A new set of entities.
+	 */
+	public Set<BlockEntity> entities() {
+		return new HashSet<>(sections.keySet());
+	}
+
+	/**
+	 * Get the sections an entity overlapped when it was last indexed.
+	 * @param entity Entity to check.
+	 * @return An unmodifiable set of sections, or <code>null</code> if the entity
+	 *         isn't in the index.
+	 */
+	public Set<SectionCoordinate> sectionsOf(BlockEntity entity) {
+		return sections.get(entity);
+	}
+
+	/**
+	 * Get all the entities that overlap a section.
+	 * @param section Section to check.
+	 * @return An unmodifiable set of entities.
+	 */
+	public Set<BlockEntity> entitiesIn(SectionCoordinate section) {
+		Set<BlockEntity> set = entities.get(section);
+		return set == null ? Collections.emptySet() : Collections.unmodifiableSet(set);
+	}
+
+	/**
+	 * Get all the entities that overlap any of a set of sections.
+	 * @param sections Sections to check.
+	 * @return A new set of entities.
+	 */
+	public Set<BlockEntity> entitiesIn(Set<SectionCoordinate> sections) {
+		Set<BlockEntity> found = new HashSet<>();
+		for (SectionCoordinate section : sections) {
+			Set<BlockEntity> set = entities.get(section);
+			if (set != null) found.addAll(set);
+		}
+		return found;
+	}
+
+	/**
+	 * Get all the entities that overlap the sections of a volume. Entities that
+	 * are returned overlap the volume's sections, but not necessarily the volume
+	 * itself.
+	 * @param point1 Min point of the volume.
+	 * @param point2 Max point of the volume.
+	 * @return A new set of entities.
+	 */
+	public Set<BlockEntity> entitiesNear(Vector3dc point1, Vector3dc point2) {
+		int minX = (int) Math.floor(Math.min(point1.x(), point2.x())) >> 4;
+		int minY = (int) Math.floor(Math.min(point1.y(), point2.y())) >> 4;
+		int minZ = (int) Math.floor(Math.min(point1.z(), point2.z())) >> 4;
+		int maxX = (int) Math.floor(Math.max(point1.x(), point2.x())) >> 4;
+		int maxY = (int) Math.floor(Math.max(point1.y(), point2.y())) >> 4;
+		int maxZ = (int) Math.floor(Math.max(point1.z(), point2.z())) >> 4;
+
+		Set<BlockEntity> found = new HashSet<>();
+		long volume = (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+		if (volume > entities.size()) {
+			// Large volumes have more sections to check than the index has entries.
+			for (Map.Entry<SectionCoordinate, Set<BlockEntity>> entry : entities.entrySet()) {
+				SectionCoordinate section = entry.getKey();
+				if (minX <= section.x() && section.x() <= maxX && minY <= section.y() && section.y() <= maxY
+						&& minZ <= section.z() && section.z() <= maxZ) {
+					found.addAll(entry.getValue());
+				}
+			}
+			return found;
+		}
+
+		for (int x = minX; x <= maxX; x++) {
+			for (int y = minY; y <= maxY; y++) {
+				for (int z = minZ; z <= maxZ; z++) {
+					Set<BlockEntity> set = entities.get(new SectionCoordinate(x, y, z));
+					if (set != null) found.addAll(set);
+				}
+			}
+		}
+		return found;
+	}
+}
@@ -3,7 +3,10 @@ package org.scaffoldeditor.scaffold.logic;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -16,9 +19,12 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -29,6 +35,7 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.logging.log4j.LogManager;
 import org.json.JSONObject;
+import org.scaffoldeditor.nbt.util.HashUtils;
 import org.scaffoldeditor.scaffold.core.Project;
 import org.scaffoldeditor.scaffold.util.GitignoreUtils;
 import org.scaffoldeditor.scaffold.util.GitignoreUtils.Gitignore;
@@ -45,9 +52,24 @@ public abstract class AbstractPack {
 	
 	/**
 	 * Represents types of outputs that packs can compile to.
+	 * <code>INCREMENTAL</code> outputs to a folder, but only writes the files
+	 * that changed since the last compile.
 	 * @author Igrium
 	 */
-	public enum OutputMode { FOLDER, ZIP }
+	public enum OutputMode { FOLDER, ZIP, INCREMENTAL }
+	
+	/**
+	 * The name of the file in incremental pack folders that the hashes of the
+	 * pack's files are saved to.
+	 */
+	public static final String MANIFEST_FILE = "scaffold_files.dat";
+	
+	private static final int MANIFEST_VERSION = 1;
+	
+	/**
+	 * The largest file, in bytes, that incremental outputs buffer in memory.
+	 */
+	private static final int MAX_BUFFERED_FILE = 1 << 20;
 	
 	protected static interface CloseFunction {
 		public void close() throws IOException;
@@ -68,6 +90,11 @@ public abstract class AbstractPack {
 			out.write(b);
 		}
 		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+		}
+		
 		@Override
 		public void close() throws IOException {
 			close.close();
@@ -118,6 +145,189 @@ public abstract class AbstractPack {
 		}
 	}
 	
+	/**
+	 * Writes to a folder, leaving files that haven't changed since the last
+	 * compile untouched. The hash of every file is saved in a manifest; files are
+	 * only written if their hash changed, and files that are no longer in the pack
+	 * are deleted when the writer is closed.
+	 * <br>
+	 * Each file is buffered in memory while it's hashed, so unchanged files never
+	 * touch the disk. Files larger than a megabyte are spilled to a
+	 * temp file next to their target instead.
+	 */
+	protected class IncrementalFolderWriter implements OutputWriter {
+		public final Path dest;
+		
+		private final Map<String, Long> previous;
+		private final Map<String, Long> current = new HashMap<>();
+		private final Set<String> written = new HashSet<>();
+		
+		public IncrementalFolderWriter(Path dest) throws IOException {
+			this.dest = dest;
+			File manifest = dest.resolve(MANIFEST_FILE).toFile();
+			previous = readManifest(manifest);
+			if (previous == null && dest.toFile().exists()) {
+				// Without a manifest, we don't know which files are stale.
+				FileUtils.deleteDirectory(dest.toFile());
+			}
+			// If we fail partway through, the next compile needs to start from scratch.
+			Files.deleteIfExists(manifest.toPath());
+		}
+		
+		@Override
+		public void write(InputStream stream, String filepath) throws IOException {
+			PackOutputStream out = openStream(filepath);
+			processFile(stream, out, filepath);
+			out.close();
+		}
+		
+		@Override
+		public PackOutputStream openStream(String filepath) throws IOException {
+			IncrementalFileStream out = new IncrementalFileStream(FilenameUtils.normalize(filepath, true));
+			return new PackOutputStream(out, out::close);
+		}
+		
+		/**
+		 * Record the hash of a file that's finished writing.
+		 * @return Whether the file changed and needs to be written.
+		 */
+		private boolean submit(String path, long hash, File file) {
+			// Files can be written more than once, so compare against whichever version is on disk.
+			Long oldHash = current.containsKey(path) ? current.get(path) : previous != null ? previous.get(path) : null;
+			current.put(path, hash);
+			
+			if (oldHash != null && oldHash == hash && file.isFile()) {
+				return false;
+			}
+			written.add(path);
+			return true;
+		}
+		
+		@Override
+		public void close() throws IOException {
+			int deleted = 0;
+			if (previous != null) {
+				for (String path : previous.keySet()) {
+					if (!current.containsKey(path)) {
+						File file = dest.resolve(path).toFile();
+						if (file.delete()) deleted++;
+						deleteEmptyParents(file.getParentFile());
+					}
+				}
+			}
+			
+			LogManager.getLogger().info("Wrote " + written.size() + " changed file(s) to " + dest + " ("
+					+ (current.size() - written.size()) + " unchanged, " + deleted + " deleted)");
+			writeManifest(dest.resolve(MANIFEST_FILE).toFile(), current);
+		}
+		
+		private void deleteEmptyParents(File folder) {
+			File root = dest.toFile();
+			while (folder != null && !folder.equals(root)) {
+				String[] children = folder.list();
+				if (children == null || children.length > 0 || !folder.delete()) return;
+				folder = folder.getParentFile();
+			}
+		}
+	
+		/**
+		 * Hashes a file as it's written, with the same hash as
+		 * {@link HashUtils#mix(long, byte[])}, and writes it to the folder when it's
+		 * closed if it changed.
+		 */
+		private class IncrementalFileStream extends OutputStream {
+			private final String path;
+			private final File file;
+			private final byte[] single = new byte[1];
+			
+			private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			private Path spillFile;
+			private OutputStream spill;
+			
+			private long hash = HashUtils.SEED;
+			private long length;
+			private boolean closed;
+		
+			IncrementalFileStream(String path) {
+				this.path = path;
+				this.file = dest.resolve(path).toFile();
+			}
+		
+			@Override
+			public void write(int b) throws IOException {
+				single[0] = (byte) b;
+				write(single, 0, 1);
+			}
+		
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				hash = HashUtils.mixBytes(hash, b, off, len);
+				length += len;
+				
+				if (spill == null && buffer.size() + len > MAX_BUFFERED_FILE) {
+					file.getParentFile().mkdirs();
+					spillFile = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+					spill = new BufferedOutputStream(new FileOutputStream(spillFile.toFile()));
+					buffer.writeTo(spill);
+					buffer = null;
+				}
+		
+				if (spill != null) {
+					spill.write(b, off, len);
+				} else {
+					buffer.write(b, off, len);
+				}
+			}
+			
+			@Override
+			public void close() throws IOException {
+				if (closed) return;
+				closed = true;
+				if (spill != null) spill.close();
+				
+				if (!submit(path, HashUtils.mix(hash, length), file)) {
+					if (spillFile != null) Files.delete(spillFile);
+				} else if (spillFile != null) {
+					Files.move(spillFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				} else {
+					file.getParentFile().mkdirs();
+					try (OutputStream out = new FileOutputStream(file)) {
+						buffer.writeTo(out);
+					}
+				}
+			}
+		}
+	}
+	
+	private static Map<String, Long> readManifest(File file) {
+		if (!file.isFile()) return null;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MANIFEST_VERSION) return null;
+			int size = in.readInt();
+			Map<String, Long> manifest = new HashMap<>(size * 2);
+			for (int i = 0; i < size; i++) {
+				String path = in.readUTF();
+				manifest.put(path, in.readLong());
+			}
+			return manifest;
+		} catch (IOException e) {
+			LogManager.getLogger().warn("Unable to read pack manifest. The whole pack will be rewritten.", e);
+			return null;
+		}
+	}
+	
+	private static void writeManifest(File file, Map<String, Long> manifest) throws IOException {
+		file.getParentFile().mkdirs();
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MANIFEST_VERSION);
+			out.writeInt(manifest.size());
+			for (Map.Entry<String, Long> entry : manifest.entrySet()) {
+				out.writeUTF(entry.getKey());
+				out.writeLong(entry.getValue());
+			}
+		}
+	}
+	
 	protected class ZipWriter implements OutputWriter {
 		public final File zipFile;
 		private ZipOutputStream zos;
@@ -238,7 +448,10 @@ public abstract class AbstractPack {
 	 * @throws IOException If an IO exception occurs.
 	 */
 	public void compile(File dest, OutputMode outputMode) throws IOException {
-		if (dest.isDirectory()) {
+		if (outputMode == OutputMode.INCREMENTAL) {
+			// The incremental writer decides what to delete.
+			if (dest.isFile()) dest.delete();
+		} else if (dest.isDirectory()) {
 			FileUtils.deleteDirectory(dest);
 		} else if (dest.isFile()) {
 			dest.delete();
@@ -249,6 +462,9 @@ public abstract class AbstractPack {
 		case FOLDER:
 			writer = new FolderWriter(dest.toPath());
 			break;
+		case INCREMENTAL:
+			writer = new IncrementalFolderWriter(dest.toPath());
+			break;
 		case ZIP:
 			writer = new ZipWriter(dest);
 			break;
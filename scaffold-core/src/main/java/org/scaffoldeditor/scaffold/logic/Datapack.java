@@ -164,7 +164,7 @@ public class Datapack extends AbstractPack {
 		for (AbstractFunction function : functions) {
 			PackOutputStream out = writer.openStream("data/" + FunctionNameUtils.identifierToPath(function.getID()).toString());
 			BufferedWriter bufWriter = new BufferedWriter(new OutputStreamWriter(out));
-			bufWriter.write(function.compile());
+			function.compileTo(bufWriter);
 			bufWriter.close();
 		}
 	}
@@ -1,7 +1,7 @@
 package org.scaffoldeditor.scaffold.logic.datapack;
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 import org.scaffoldeditor.nbt.util.Identifier;
@@ -76,14 +76,28 @@ public abstract class AbstractFunction {
 	 * @return <code>.mcfunction</code> file data.
 	 */
 	public String compile() {
-		StringWriter stringWriter = new StringWriter();
-		PrintWriter writer = new PrintWriter(stringWriter);
+		StringBuilder builder = new StringBuilder();
+		try {
+			compileTo(builder);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return builder.toString();
+	}
 		
+	/**
+	 * Compile this function straight into an output, such as the writer of a
+	 * pack file. Each command is written as it's compiled, so the whole function
+	 * never has to be held in memory as a string.
+	 * @param out Output to write <code>.mcfunction</code> file data to.
+	 * @throws IOException If an IO exception occurs.
+	 */
+	public void compileTo(Appendable out) throws IOException {
+		String lineSeparator = System.lineSeparator();
 		for (Command command : getCommands()) {
-			writer.println(command.compile());
+			command.compileTo(out);
+			out.append(lineSeparator);
 		}
-		
-		return stringWriter.toString();
 	}
 	
 	public Identifier getID() {
@@ -1,12 +1,13 @@
 package org.scaffoldeditor.scaffold.logic.datapack;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.joml.Vector3i;
-import org.joml.Vector3ic;
-import org.scaffoldeditor.nbt.block.Block;
 import org.scaffoldeditor.nbt.block.BlockCollection;
+import org.scaffoldeditor.nbt.block.BlockState;
 import org.scaffoldeditor.nbt.util.Identifier;
 import org.scaffoldeditor.scaffold.logic.datapack.arguements.BlockArguement;
 import org.scaffoldeditor.scaffold.logic.datapack.arguements.CommandVector.Mode;
@@ -50,16 +51,45 @@ public class StructureFunction extends AbstractFunction {
 	@Override
 	public List<Command> getCommands() {
 		List<Command> commands = new ArrayList<>();
-		for (Vector3ic pos : structure) {
-			Block block = structure.blockAt(pos);
-			if (block == null || (!placeAir && block.getName().equals("minecraft:air"))) {
-				continue;
-			}
-			CommandVector3i finalPos = new CommandVector3i(pos.add(offset, new Vector3i()), Mode.RELATIVE);
-			commands.add(new SetBlockCommand(finalPos, new BlockArguement(block, structure.blockEntityAt(pos)), SetBlockCommand.Mode.REPLACE));
-		}
+		structure.forEachBlock((x, y, z, state) -> {
+			SetBlockCommand command = createCommand(x, y, z, state);
+			if (command != null) commands.add(command);
+		});
 		
 		return commands;
 	}
 
+	@Override
+	public void compileTo(Appendable out) throws IOException {
+		// Structures can have a lot of blocks, so write each command as it's visited.
+		String lineSeparator = System.lineSeparator();
+		try {
+			structure.forEachBlock((x, y, z, state) -> {
+				SetBlockCommand command = createCommand(x, y, z, state);
+				if (command == null) return;
+				try {
+					command.compileTo(out);
+					out.append(lineSeparator);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Create the <code>setblock</code> command that places a block of the structure.
+	 * @return The command, or <code>null</code> if the block shouldn't be placed.
+	 */
+	private SetBlockCommand createCommand(int x, int y, int z, BlockState state) {
+		if (!placeAir && state.isAir()) {
+			return null;
+		}
+		Vector3i pos = new Vector3i(x, y, z);
+		CommandVector3i finalPos = new CommandVector3i(pos.add(offset, new Vector3i()), Mode.RELATIVE);
+		return new SetBlockCommand(finalPos, new BlockArguement(state.toBlock(), structure.blockEntityAt(pos)), SetBlockCommand.Mode.REPLACE);
+	}
+
 }
@@ -4,7 +4,8 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.Arrays;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,10 +28,21 @@ public class TemplateFunction extends AbstractFunction {
 	 */
 	public static final Pattern pattern = Pattern.compile("(\\$\\{[^\\$\\{\\}]*\\})");
 	
+	/**
+	 * Matches line breaks on any platform.
+	 */
+	private static final Pattern lineBreak = Pattern.compile("\\R");
+	
 	/**
 	 * The raw text of the function, before variables are applied.
 	 */
 	public final String rawText;
+	/**
+	 * The parsed lines of the function. Each line alternates between literal text
+	 * and variable names, starting and ending with literal text. Shared between
+	 * clones so templates loaded from assets are only parsed once.
+	 */
+	private final String[][] lines;
 	private final Map<String, String> variables = new HashMap<>();
 	
 	/**
@@ -39,8 +51,35 @@ public class TemplateFunction extends AbstractFunction {
 	 * @param rawText Raw text of the function. Excpects a multi-line string.
 	 */
 	public TemplateFunction(Identifier identifier, String rawText) {
+		this(identifier, rawText, parse(rawText));
+	}
+	
+	private TemplateFunction(Identifier identifier, String rawText, String[][] lines) {
 		super(identifier);
 		this.rawText = rawText;
+		this.lines = lines;
+	}
+	
+	private static String[][] parse(String rawText) {
+		String[] rawLines = lineBreak.split(rawText);
+		String[][] lines = new String[rawLines.length][];
+		List<String> segments = new ArrayList<>();
+		
+		for (int i = 0; i < rawLines.length; i++) {
+			String line = rawLines[i];
+			int index = 0;
+			segments.clear();
+			
+			Matcher matcher = pattern.matcher(line);
+			while (matcher.find()) {
+				segments.add(line.substring(index, matcher.start()));
+				segments.add(getVarName(line.substring(matcher.start(), matcher.end())));
+				index = matcher.end();
+			}
+			segments.add(line.substring(index));
+			lines[i] = segments.toArray(new String[0]);
+		}
+		return lines;
 	}
 	
 	public void setVariable(String name, String value) {
@@ -65,31 +104,45 @@ public class TemplateFunction extends AbstractFunction {
 	
 	@Override
 	public List<Command> getCommands() {
-		String[] lines = rawText.split(System.lineSeparator());
-		return Arrays.asList(lines).stream().map(line -> parseLine(line)).collect(Collectors.toList());
+		List<Command> commands = new ArrayList<>(lines.length);
+		for (String[] line : lines) {
+			if (line.length == 1) {
+				commands.add(Command.fromString(line[0]));
+				continue;
+			}
+			StringBuilder builder = new StringBuilder();
+			try {
+				appendLine(line, builder);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			commands.add(Command.fromString(builder.toString()));
+		}
+		return commands;
 	}
 	
-	private Command parseLine(String line) {
-		String newString = "";
-		int index = 0;
-		
-		Matcher matcher = pattern.matcher(line);
-		while (matcher.find()) {
-			newString += line.substring(index, matcher.start());
-			String varName = getVarName(line.substring(matcher.start(), matcher.end()));
-			String value = variables.get(varName);
+	@Override
+	public void compileTo(Appendable out) throws IOException {
+		String lineSeparator = System.lineSeparator();
+		for (String[] line : lines) {
+			appendLine(line, out);
+			out.append(lineSeparator);
+		}
+	}
+	
+	private void appendLine(String[] line, Appendable out) throws IOException {
+		out.append(line[0]);
+		for (int i = 1; i < line.length; i += 2) {
+			String value = variables.get(line[i]);
 			if (value == null) {
 				throw new IllegalStateException("Template function " + this
-						+ " expects a variable by the name '" + varName + "', but none was provided!");
+						+ " expects a variable by the name '" + line[i] + "', but none was provided!");
 			}
-			newString += value;
-			index = matcher.end();
+			out.append(value).append(line[i + 1]);
 		}
-		newString += line.substring(index);
-		return Command.fromString(newString);
 	}
 	
-	private String getVarName(String substring) {
+	private static String getVarName(String substring) {
 		return substring.substring(2, substring.length()-1);
 	}
 	
@@ -99,7 +152,7 @@ public class TemplateFunction extends AbstractFunction {
 	}
 	
 	public TemplateFunction cloneWithID(Identifier id) {
-		TemplateFunction cloned = new TemplateFunction(id, rawText);
+		TemplateFunction cloned = new TemplateFunction(id, rawText, lines);
 		cloned.variables.putAll(variables);
 		return cloned;
 	}
@@ -111,7 +164,9 @@ public class TemplateFunction extends AbstractFunction {
 	}
 	
 	/**
-	 * Load a template function from an asset.
+	 * Load a template function from an asset. The asset is parsed once and cached
+	 * by the asset manager; the returned function is a copy that shares the
+	 * parsed template.
 	 * @param manager Asset manager to use.
 	 * @param id Identifier to assign to loaded function.
 	 * @param assetPath Asset to load.
@@ -1,11 +1,9 @@
 package org.scaffoldeditor.scaffold.logic.datapack.arguements;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.StringJoiner;
-import java.util.stream.Collectors;
 
 import org.scaffoldeditor.nbt.block.Block;
 
@@ -65,30 +63,54 @@ public class BlockArguement {
 	}
 	
 	public String compile() {
-		String out = id;
+		StringBuilder out = new StringBuilder();
 		try {
-			if (blockstate != null) {
-				out = out + writeBlockstate();
-			}
-			if (data != null) {
-				out = out + SNBTUtil.toSNBT(data);
-			}
+			appendTo(out);
 		} catch (IOException e) {
 			throw new AssertionError("Unable to compile blockstate NBT!", e);
 		}
-		return out;
+		return out.toString();
+	}
+	
+	/**
+	 * Append this arguement to a command without building an intermediate string.
+	 * @param out Output to append to.
+	 * @throws IOException If an IO exception occurs.
+	 */
+	public void appendTo(Appendable out) throws IOException {
+		out.append(id);
+		if (blockstate != null) {
+			appendBlockstate(out);
+		}
+		if (data != null) {
+			out.append(SNBTUtil.toSNBT(data));
+		}
 	}
 	
 	public String writeBlockstate() {
-		List<String> compBlockstates = blockstate.keySet().stream().map(key -> {
-			return key+"="+blockstate.get(key);
-		}).collect(Collectors.toList());
-		
-		StringJoiner joiner = new StringJoiner(",", "[", "]");
-		for (String str : compBlockstates) {
-			joiner.add(str);
+		StringBuilder out = new StringBuilder();
+		try {
+			appendBlockstate(out);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return out.toString();
+	}
+	
+	/**
+	 * Append the blockstate in <code>[key=value,...]</code> format.
+	 * @param out Output to append to.
+	 * @throws IOException If an IO exception occurs.
+	 */
+	public void appendBlockstate(Appendable out) throws IOException {
+		out.append('[');
+		boolean first = true;
+		for (Map.Entry<String, String> entry : blockstate.entrySet()) {
+			if (!first) out.append(',');
+			out.append(entry.getKey()).append('=').append(entry.getValue());
+			first = false;
 		}
-		return joiner.toString();
+		out.append(']');
 	}
 	
 	@Override
@@ -1,5 +1,7 @@
 package org.scaffoldeditor.scaffold.logic.datapack.arguements;
 
+import java.io.IOException;
+
 /**
  * Represents a rotation as represented in a Minecraft command.
  * @author Igrium
@@ -36,6 +38,16 @@ public class CommandRotation {
 		return prefix+yaw+" "+prefix+pitch;
 	}
 	
+	/**
+	 * Append this rotation to a command without building an intermediate string.
+	 * @param out Output to append to.
+	 * @throws IOException If an IO exception occurs.
+	 */
+	public void appendTo(Appendable out) throws IOException {
+		String prefix = mode == Mode.RELATIVE ? "~" : "";
+		out.append(prefix).append(String.valueOf(yaw)).append(' ').append(prefix).append(String.valueOf(pitch));
+	}
+	
 	public static CommandRotation fromString(String in) {
 		Mode mode;
 		if (in.charAt(0) == '~') mode = Mode.RELATIVE;
@@ -1,5 +1,7 @@
 package org.scaffoldeditor.scaffold.logic.datapack.arguements;
 
+import java.io.IOException;
+
 import org.joml.Vector3dc;
 import org.joml.Vector3f;
 import org.joml.Vector3fc;
@@ -57,29 +59,39 @@ public class CommandVector3f extends Vector3f {
 		return new CommandVector3f(Float.parseFloat(split[0]), Float.parseFloat(split[1]), Float.parseFloat(split[2]), mode);
 	}
 	
-	/**
-	 * Get this vector as a string that can be inserted into a command.
-	 * @return Command string.
-	 */
-	public String getString() {
-		String prefix;
+	private String getPrefix() {
 		switch(mode) {
 			case GLOBAL:
-				prefix = ModeStrings.GLOBAL;
-				break;
+				return ModeStrings.GLOBAL;
 			case RELATIVE:
-				prefix = ModeStrings.RELATIVE;
-				break;
+				return ModeStrings.RELATIVE;
 			case LOCAL:
-				prefix = ModeStrings.LOCAL;
-				break;
+				return ModeStrings.LOCAL;
 			default:
-				prefix = "";
-				break;
+				return "";
 		}
-		
+	}
+	
+	/**
+	 * Get this vector as a string that can be inserted into a command.
+	 * @return Command string.
+	 */
+	public String getString() {
+		String prefix = getPrefix();
 		return prefix+x+" "+prefix+y+" "+prefix+z;
 	}
+		
+	/**
+	 * Append this vector to a command without building an intermediate string.
+	 * @param out Output to append to.
+	 * @throws IOException If an IO exception occurs.
+	 */
+	public void appendTo(Appendable out) throws IOException {
+		String prefix = getPrefix();
+		out.append(prefix).append(String.valueOf(x)).append(' ')
+				.append(prefix).append(String.valueOf(y)).append(' ')
+				.append(prefix).append(String.valueOf(z));
+	}
 	
 	@Override
 	public String toString() {
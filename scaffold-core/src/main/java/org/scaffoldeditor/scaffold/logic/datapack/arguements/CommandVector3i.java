@@ -1,5 +1,7 @@
 package org.scaffoldeditor.scaffold.logic.datapack.arguements;
 
+import java.io.IOException;
+
 import org.joml.Vector3i;
 import org.joml.Vector3ic;
 import org.scaffoldeditor.scaffold.logic.datapack.arguements.CommandVector.Mode;
@@ -50,29 +52,39 @@ public class CommandVector3i extends Vector3i {
 		return new CommandVector3i(Integer.parseInt(split[0]), Integer.parseInt(split[1]), Integer.parseInt(split[2]), mode);
 	}
 	
-	/**
-	 * Get this vector as a string that can be inserted into a command.
-	 * @return Command string.
-	 */
-	public String getString() {
-		String prefix;
+	private String getPrefix() {
 		switch(mode) {
 			case GLOBAL:
-				prefix = ModeStrings.GLOBAL;
-				break;
+				return ModeStrings.GLOBAL;
 			case RELATIVE:
-				prefix = ModeStrings.RELATIVE;
-				break;
+				return ModeStrings.RELATIVE;
 			case LOCAL:
-				prefix = ModeStrings.LOCAL;
-				break;
+				return ModeStrings.LOCAL;
 			default:
-				prefix = "";
-				break;
+				return "";
 		}
-		
+	}
+	
+	/**
+	 * Get this vector as a string that can be inserted into a command.
+	 * @return Command string.
+	 */
+	public String getString() {
+		String prefix = getPrefix();
 		return prefix+x+" "+prefix+y+" "+prefix+z;
 	}
+		
+	/**
+	 * Append this vector to a command without building an intermediate string.
+	 * @param out Output to append to.
+	 * @throws IOException If an IO exception occurs.
+	 */
+	public void appendTo(Appendable out) throws IOException {
+		String prefix = getPrefix();
+		out.append(prefix).append(String.valueOf(x)).append(' ')
+				.append(prefix).append(String.valueOf(y)).append(' ')
+				.append(prefix).append(String.valueOf(z));
+	}
 	
 	@Override
 	public String toString() {
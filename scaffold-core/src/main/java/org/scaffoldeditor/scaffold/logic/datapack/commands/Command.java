@@ -1,5 +1,8 @@
 package org.scaffoldeditor.scaffold.logic.datapack.commands;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 /**
  * Represents a single Minecraft command.
  * @author Igrium
@@ -12,6 +15,34 @@ public interface Command {
 	 */
 	public String compile();
 	
+	/**
+	 * Compile this command straight into an output, without building an
+	 * intermediate string. Commands that are compiled in large numbers should
+	 * override this and implement {@link #compile()} with
+	 * {@link #compileToString(Command)}.
+	 * @param out Output to write to.
+	 * @throws IOException If an IO exception occurs.
+	 */
+	public default void compileTo(Appendable out) throws IOException {
+		out.append(compile());
+	}
+	
+	/**
+	 * Compile a command into a string using its {@link #compileTo(Appendable)}
+	 * method.
+	 * @param command Command to compile.
+	 * @return Command string.
+	 */
+	public static String compileToString(Command command) {
+		StringBuilder builder = new StringBuilder();
+		try {
+			command.compileTo(builder);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return builder.toString();
+	}
+	
 	/**
 	 * Create a command object from a string.
 	 * @param in Command string (without the leading slash).
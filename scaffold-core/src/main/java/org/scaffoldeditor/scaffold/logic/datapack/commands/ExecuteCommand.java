@@ -1,7 +1,8 @@
 package org.scaffoldeditor.scaffold.logic.datapack.commands;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
-import java.util.StringJoiner;
 
 import org.scaffoldeditor.nbt.util.Identifier;
 import org.scaffoldeditor.scaffold.logic.datapack.TargetSelector;
@@ -12,12 +13,34 @@ import org.scaffoldeditor.scaffold.logic.datapack.arguements.CommandVector3i;
 
 public class ExecuteCommand implements Command {
 	
+	private static interface AppendFunction {
+		public void appendTo(Appendable out) throws IOException;
+	}
+	
+	private static String appendToString(AppendFunction function) {
+		StringBuilder builder = new StringBuilder();
+		try {
+			function.appendTo(builder);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return builder.toString();
+	}
+	
 	public static interface SubCommand {
 		public String get();
+		
+		public default void appendTo(Appendable out) throws IOException {
+			out.append(get());
+		}
 	}
 	
 	public static interface Conditional {
 		public String get();
+		
+		public default void appendTo(Appendable out) throws IOException {
+			out.append(get());
+		}
 	}
 	
 	public static class Align implements SubCommand {
@@ -26,8 +49,11 @@ public class ExecuteCommand implements Command {
 			this.value = value;
 		}
 		public String get() {
-			return "align "+value;
-		}	
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("align ").append(value);
+		}
 	}
 	
 	public static class Anchored implements SubCommand {
@@ -36,7 +62,10 @@ public class ExecuteCommand implements Command {
 			this.value = value;
 		}
 		public String get() {
-			return "anchored "+value;
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("anchored ").append(value);
 		}
 	}
 	
@@ -46,7 +75,10 @@ public class ExecuteCommand implements Command {
 			this.value = value;
 		}
 		public String get() {
-			 return "as "+value.compile();
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("as ").append(value.compile());
 		}
 	}
 	
@@ -56,7 +88,10 @@ public class ExecuteCommand implements Command {
 			this.value = value;
 		}
 		public String get() {
-			return "at "+value.compile();
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("at ").append(value.compile());
 		}
 	}
 	
@@ -66,7 +101,11 @@ public class ExecuteCommand implements Command {
 			this.value = value;
 		}
 		public String get() {
-			return "facing "+value.getString();
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("facing ");
+			value.appendTo(out);
 		}
 	}
 	
@@ -78,7 +117,10 @@ public class ExecuteCommand implements Command {
 			this.anchor = anchor;
 		}
 		public String get() {
-			return "facing entity "+target.compile()+" "+anchor;
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("facing entity ").append(target.compile()).append(' ').append(anchor);
 		}
 	}
 	
@@ -88,7 +130,10 @@ public class ExecuteCommand implements Command {
 			this.value = value;
 		}
 		public String get() {
-			return "in "+value;
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("in ").append(value);
 		}
 	}
 	
@@ -98,7 +143,11 @@ public class ExecuteCommand implements Command {
 			this.value = value;
 		}
 		public String get() {
-			return "positioned "+value.getString();
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("positioned ");
+			value.appendTo(out);
 		}
 	}
 	
@@ -108,7 +157,10 @@ public class ExecuteCommand implements Command {
 			this.value = value;
 		}
 		public String get() {
-			return "positioned as "+value.compile();
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("positioned as ").append(value.compile());
 		}
 	}
 	
@@ -118,7 +170,11 @@ public class ExecuteCommand implements Command {
 			this.value = value;
 		}
 		public String get() {
-			return "rotated "+value.getString();
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("rotated ");
+			value.appendTo(out);
 		}
 	}
 	
@@ -128,7 +184,10 @@ public class ExecuteCommand implements Command {
 			this.value = value;
 		}
 		public String get() {
-			return "rotated as "+value.compile();
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("rotated as ").append(value.compile());
 		}
 	}
 	
@@ -138,7 +197,11 @@ public class ExecuteCommand implements Command {
 			this.value = value;
 		}
 		public String get() {
-			return "if "+value.get();
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("if ");
+			value.appendTo(out);
 		}
 	}
 	
@@ -148,7 +211,11 @@ public class ExecuteCommand implements Command {
 			this.value = value;
 		}
 		public String get() {
-			return "unless "+value.get();
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("unless ");
+			value.appendTo(out);
 		}
 	}
 	
@@ -160,7 +227,13 @@ public class ExecuteCommand implements Command {
 			this.pos = pos;
 		}
 		public String get() {
-			return "block "+pos.getString()+" "+predicate.compile();
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("block ");
+			pos.appendTo(out);
+			out.append(' ');
+			predicate.appendTo(out);
 		}
 	}
 	
@@ -176,7 +249,16 @@ public class ExecuteCommand implements Command {
 			this.scanMode = scanMode;
 		}
 		public String get() {
-			return "blocks "+start+" "+end+" "+destination+" "+scanMode;
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("blocks ");
+			start.appendTo(out);
+			out.append(' ');
+			end.appendTo(out);
+			out.append(' ');
+			destination.appendTo(out);
+			out.append(' ').append(scanMode);
 		}
 	}
 	
@@ -188,7 +270,12 @@ public class ExecuteCommand implements Command {
 			this.path = path;
 		}
 		public String get() {
-			return "data block "+pos.getString()+" "+path;
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("data block ");
+			pos.appendTo(out);
+			out.append(' ').append(path);
 		}
 	}
 	
@@ -200,7 +287,10 @@ public class ExecuteCommand implements Command {
 			this.path = path;
 		}
 		public String get() {
-			return "data entity "+target.compile()+" "+path;
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("data entity ").append(target.compile()).append(' ').append(path);
 		}
 	}
 	
@@ -212,7 +302,10 @@ public class ExecuteCommand implements Command {
 			this.path = path;
 		}
 		public String get() {
-			return "data storage "+source.toString()+" "+path;
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("data storage ").append(source.toString()).append(' ').append(path);
 		}
 	}
 	
@@ -222,7 +315,10 @@ public class ExecuteCommand implements Command {
 			this.target = target;
 		}
 		public String get() {
-			return "entity "+target.compile();
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("entity ").append(target.compile());
 		}
 	}
 	
@@ -232,7 +328,10 @@ public class ExecuteCommand implements Command {
 			this.predicate = predicate;
 		}
 		public String get() {
-			return "predicate "+predicate;
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("predicate ").append(predicate);
 		}
 	}
 	
@@ -253,14 +352,11 @@ public class ExecuteCommand implements Command {
 		}
 		
 		public String get() {
-			StringJoiner joiner = new StringJoiner(" ");
-			joiner.add("score");
-			joiner.add(target.compile());
-			joiner.add(targetObjective);
-			joiner.add(operator);
-			joiner.add(source.compile());
-			joiner.add(sourceObjective);
-			return joiner.toString();
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("score ").append(target.compile()).append(' ').append(targetObjective)
+					.append(' ').append(operator).append(' ').append(source.compile()).append(' ').append(sourceObjective);
 		}
 	}
 	
@@ -274,7 +370,11 @@ public class ExecuteCommand implements Command {
 			this.range = range;
 		}
 		public String get() {
-			return "score "+target.compile()+" "+targetObjective+" matches "+range;
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("score ").append(target.compile()).append(' ').append(targetObjective)
+					.append(" matches ").append(range);
 		}
 	}
 	
@@ -292,7 +392,12 @@ public class ExecuteCommand implements Command {
 			this.scale = scale;
 		}
 		public String get() {
-			return "store "+storeType+" block "+targetPos.getString()+" "+path+" "+type+" "+scale;
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("store ").append(storeType).append(" block ");
+			targetPos.appendTo(out);
+			out.append(' ').append(path).append(' ').append(type).append(' ').append(String.valueOf(scale));
 		}
 	}
 	
@@ -306,7 +411,10 @@ public class ExecuteCommand implements Command {
 			this.overrideMode = overrideMode;
 		}
 		public String get() {
-			return "store "+storeType+" bossbar "+id+" "+overrideMode;
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("store ").append(storeType).append(" bossbar ").append(id).append(' ').append(overrideMode);
 		}
 	}
 	
@@ -324,7 +432,11 @@ public class ExecuteCommand implements Command {
 			this.scale = scale;
 		}
 		public String get() {
-			return "store "+storeType+" entity "+target.compile()+" "+path+" "+type+" "+scale;
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("store ").append(storeType).append(" entity ").append(target.compile())
+					.append(' ').append(path).append(' ').append(type).append(' ').append(String.valueOf(scale));
 		}
 	}
 	
@@ -338,7 +450,10 @@ public class ExecuteCommand implements Command {
 			this.objective = objective;
 		}
 		public String get() {
-			return "store "+storeType+" score "+targets.compile()+" "+objective;
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("store ").append(storeType).append(" score ").append(targets.compile()).append(' ').append(objective);
 		}
 	}
 	
@@ -356,7 +471,11 @@ public class ExecuteCommand implements Command {
 			this.scale = scale;
 		}
 		public String get() {
-			return "store "+storeType+" storage "+target+" "+path+" "+type+" "+scale;
+			return appendToString(this::appendTo);
+		}
+		public void appendTo(Appendable out) throws IOException {
+			out.append("store ").append(storeType).append(" storage ").append(target)
+					.append(' ').append(path).append(' ').append(type).append(' ').append(String.valueOf(scale));
 		}
 	}
 	
@@ -370,19 +489,22 @@ public class ExecuteCommand implements Command {
 	
 	@Override
 	public String compile() {
-		StringJoiner joiner = new StringJoiner(" ");
-		joiner.add("execute");
+		return Command.compileToString(this);
+	}
+	
+	@Override
+	public void compileTo(Appendable out) throws IOException {
+		out.append("execute");
 		
 		for (SubCommand command : subCommands) {
-			joiner.add(command.get());
+			out.append(' ');
+			command.appendTo(out);
 		}
 		
 		if (runCommand != null) {
-			joiner.add("run");
-			joiner.add(runCommand.compile());
+			out.append(" run ");
+			runCommand.compileTo(out);
 		}
-		
-		return joiner.toString();
 	}
 
 }
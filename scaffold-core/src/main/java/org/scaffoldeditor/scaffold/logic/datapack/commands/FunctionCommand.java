@@ -1,5 +1,7 @@
 package org.scaffoldeditor.scaffold.logic.datapack.commands;
 
+import java.io.IOException;
+
 import org.scaffoldeditor.nbt.util.Identifier;
 import org.scaffoldeditor.nbt.util.Pair;
 import org.scaffoldeditor.scaffold.logic.datapack.AbstractFunction;
@@ -51,6 +53,11 @@ public class FunctionCommand implements Command {
 
 	@Override
 	public String compile() {
-		return "function "+namespace+":"+path;
+		return Command.compileToString(this);
+	}
+
+	@Override
+	public void compileTo(Appendable out) throws IOException {
+		out.append("function ").append(namespace).append(':').append(path);
 	}
 }
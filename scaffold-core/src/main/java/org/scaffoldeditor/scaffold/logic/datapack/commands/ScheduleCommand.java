@@ -1,5 +1,7 @@
 package org.scaffoldeditor.scaffold.logic.datapack.commands;
 
+import java.io.IOException;
+
 import org.scaffoldeditor.nbt.util.Identifier;
 
 /**
@@ -59,7 +61,13 @@ public class ScheduleCommand implements Command {
 
 	@Override
 	public String compile() {
+		return Command.compileToString(this);
+	}
+
+	@Override
+	public void compileTo(Appendable out) throws IOException {
 		String mode = this.mode == Mode.APPEND ? "append" : "replace";
-		return "schedule function "+function.toString()+" "+delay+"t "+mode;
+		out.append("schedule function ").append(function.toString()).append(' ')
+				.append(Integer.toString(delay)).append("t ").append(mode);
 	}
 }
@@ -1,5 +1,7 @@
 package org.scaffoldeditor.scaffold.logic.datapack.commands;
 
+import java.io.IOException;
+
 import org.scaffoldeditor.scaffold.logic.datapack.arguements.BlockArguement;
 import org.scaffoldeditor.scaffold.logic.datapack.arguements.CommandVector3i;
 
@@ -18,12 +20,21 @@ public class SetBlockCommand implements Command {
 
 	@Override
 	public String compile() {
+		return Command.compileToString(this);
+	}
+
+	@Override
+	public void compileTo(Appendable out) throws IOException {
 		String modeString;
 		if (mode == Mode.DESTROY) modeString = "destroy";
 		else if (mode == Mode.KEEP ) modeString = "keep";
 		else modeString = "replace";
 		
-		return "setblock "+pos.getString()+" "+block.compile()+" "+modeString;
+		out.append("setblock ");
+		pos.appendTo(out);
+		out.append(' ');
+		block.appendTo(out);
+		out.append(' ').append(modeString);
 	}
 
 }
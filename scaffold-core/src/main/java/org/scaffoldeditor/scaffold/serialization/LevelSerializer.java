@@ -9,6 +9,7 @@ import org.scaffoldeditor.nbt.util.NBTMerger;
 import org.scaffoldeditor.nbt.util.NBTMerger.ListMergeMode;
 import org.scaffoldeditor.scaffold.core.Constants;
 import org.scaffoldeditor.scaffold.core.Project;
+import org.scaffoldeditor.scaffold.entity.BlockEntity;
 import org.scaffoldeditor.scaffold.entity.Entity;
 import org.scaffoldeditor.scaffold.level.Level;
 import org.scaffoldeditor.scaffold.level.stack.StackGroup;
@@ -89,6 +90,13 @@ public class LevelSerializer implements XMLSerializable {
 			ent.onAdded();
 		}
 		
+		// Entities can load the models that determine their bounds in onAdded.
+		for (Entity ent : level.getLevelStack()) {
+			if (ent instanceof BlockEntity) {
+				level.getSectionIndex().update((BlockEntity) ent);
+			}
+		}
+		
 		level.updateLevelStack();
 	}
 	
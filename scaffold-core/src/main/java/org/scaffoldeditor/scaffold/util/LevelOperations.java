@@ -89,7 +89,10 @@ public final class LevelOperations {
 		BlockEntity subject = bool ? ent2 : ent1;
 		Vector3ic[] subjectBounds = subject.getBounds();
 		
-		for (SectionCoordinate c : target.getOverlappingSections()) {
+		Set<SectionCoordinate> targetSections = level.getSectionIndex().sectionsOf(target);
+		if (targetSections == null) targetSections = target.getOverlappingSections();
+		
+		for (SectionCoordinate c : targetSections) {
 			Vector3d sectionStart = new Vector3d(c.getStartX(), c.getStartY(), c.getStartZ());
 			Vector3d sectionEnd = new Vector3d(c.getEndX() - 1, c.getEndY() - 1, c.getEndZ() - 1);
 			
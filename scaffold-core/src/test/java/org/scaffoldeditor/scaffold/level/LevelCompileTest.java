@@ -0,0 +1,208 @@
+package org.scaffoldeditor.scaffold.level;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.joml.Vector3d;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.scaffoldeditor.nbt.block.Block;
+import org.scaffoldeditor.nbt.block.BlockState;
+import org.scaffoldeditor.nbt.block.BlockWorld;
+import org.scaffoldeditor.nbt.block.Chunk;
+import org.scaffoldeditor.nbt.block.Section;
+import org.scaffoldeditor.nbt.block.WorldMath.ChunkCoordinate;
+import org.scaffoldeditor.nbt.io.NBTStreamWriter;
+import org.scaffoldeditor.scaffold.block_textures.NoiseBlockTexture;
+import org.scaffoldeditor.scaffold.block_textures.SingleBlockTexture;
+import org.scaffoldeditor.scaffold.core.Project;
+import org.scaffoldeditor.scaffold.entity.BlockEntity;
+import org.scaffoldeditor.scaffold.entity.Entity;
+import org.scaffoldeditor.scaffold.entity.attribute.AssetAttribute;
+import org.scaffoldeditor.scaffold.entity.attribute.BlockTextureAttribute;
+import org.scaffoldeditor.scaffold.entity.attribute.BooleanAttribute;
+import org.scaffoldeditor.scaffold.entity.attribute.EnumAttribute;
+import org.scaffoldeditor.scaffold.entity.attribute.EnumAttribute.DefaultEnums.Direction;
+import org.scaffoldeditor.scaffold.entity.attribute.VectorAttribute;
+import org.scaffoldeditor.scaffold.util.ProgressListener;
+
+import net.querz.nbt.tag.CompoundTag;
+import net.querz.nbt.tag.IntTag;
+import net.querz.nbt.tag.ListTag;
+
+/**
+ * Checks that compiling isolated block entities in parallel produces the same
+ * world as compiling everything on one thread.
+ */
+public class LevelCompileTest {
+	private static final String MODEL = "schematics/test.nbt";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Level level;
+
+	/**
+	 * Write a structure with a mix of blocks and air, so <code>place_air</code>
+	 * makes a difference.
+	 */
+	private static void writeModel(File file) throws IOException {
+		String[] palette = { "minecraft:stone", "minecraft:glass", "minecraft:air", "minecraft:oak_log" };
+		int sizeX = 12, sizeY = 6, sizeZ = 9;
+
+		ListTag<IntTag> size = new ListTag<>(IntTag.class);
+		size.add(new IntTag(sizeX));
+		size.add(new IntTag(sizeY));
+		size.add(new IntTag(sizeZ));
+
+		ListTag<CompoundTag> paletteTag = new ListTag<>(CompoundTag.class);
+		for (String name : palette) {
+			paletteTag.add(BlockState.of(name, null).toPaletteEntry());
+		}
+
+		ListTag<CompoundTag> blocks = new ListTag<>(CompoundTag.class);
+		for (int y = 0; y < sizeY; y++) {
+			for (int z = 0; z < sizeZ; z++) {
+				for (int x = 0; x < sizeX; x++) {
+					ListTag<IntTag> pos = new ListTag<>(IntTag.class);
+					pos.add(new IntTag(x));
+					pos.add(new IntTag(y));
+					pos.add(new IntTag(z));
+
+					CompoundTag block = new CompoundTag();
+					block.put("pos", pos);
+					block.putInt("state", (x * 7 + y * 3 + z) % palette.length);
+					blocks.add(block);
+				}
+			}
+		}
+
+		CompoundTag structure = new CompoundTag();
+		structure.put("size", size);
+		structure.put("palette", paletteTag);
+		structure.put("blocks", blocks);
+		structure.put("entities", new ListTag<>(CompoundTag.class));
+
+		file.getParentFile().mkdirs();
+		try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new FileOutputStream(file)))) {
+			new NBTStreamWriter(out).writeTag("", structure);
+		}
+	}
+
+	private Entity addStatic(String type, String name, double x, double y, double z) {
+		Entity entity = level.newEntity(type, name, new Vector3d(x, y, z));
+		entity.setAttribute("model", new AssetAttribute("schematic", MODEL));
+		return entity;
+	}
+
+	private Entity addBrush(String name, double x, double y, double z, Vector3d endPoint, BlockTextureAttribute texture) {
+		Entity entity = level.newEntity("world_brush", name, new Vector3d(x, y, z));
+		entity.setAttribute("end_point", new VectorAttribute(endPoint));
+		entity.setAttribute("texture", texture);
+		return entity;
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		Project project = new Project(folder.getRoot().toPath());
+		project.gameInfo().getLoadedPaths().add("_projectfolder_");
+		project.loadPlugins();
+		writeModel(project.assetManager().getAbsoluteFile(MODEL));
+		level = new Level(project, "test");
+
+		// Entities overlap each other and cross section and chunk boundaries, so
+		// the order they're merged in matters.
+		addStatic("world_static", "static", -6, -3, -4);
+
+		Entity rotated = addStatic("world_static", "rotated_air", 10, 12, 5);
+		rotated.setAttribute("direction", new EnumAttribute<>(Direction.EAST));
+		rotated.setAttribute("place_air", new BooleanAttribute(true));
+
+		addBrush("brush", 2, 0, 2, new Vector3d(20, 14, 3),
+				new BlockTextureAttribute(new SingleBlockTexture(new Block("minecraft:oak_planks"))));
+
+		// Reads the blocks underneath it, so it has to compile in place.
+		addStatic("world_togglable", "togglable", 0, 1, 0);
+
+		Entity override = addStatic("world_static", "override", 4, 8, -2);
+		override.setAttribute("texture_override", new BooleanAttribute(true));
+		override.setAttribute("texture",
+				new BlockTextureAttribute(new SingleBlockTexture(new Block("minecraft:bricks"))));
+
+		addBrush("noise", 14, 3, -8, new Vector3d(6, 12, 20), new BlockTextureAttribute(new NoiseBlockTexture(5,
+				Arrays.asList(new Block("minecraft:sand"), new Block("minecraft:gravel")))));
+
+		addStatic("world_static", "top", 8, 5, 1);
+	}
+
+	/**
+	 * Copy the block states and owners of every section in the level's world.
+	 */
+	private Map<String, Object[]> snapshot() {
+		BlockWorld world = level.getBlockWorld();
+		Map<String, Object[]> sections = new HashMap<>();
+		for (Map.Entry<ChunkCoordinate, Chunk> entry : world.getChunks().entrySet()) {
+			Chunk chunk = entry.getValue();
+			for (int y = 0; y < chunk.sections.length; y++) {
+				Section section = chunk.sections[y];
+				if (section == null) continue;
+
+				Object[] blocks = new Object[Section.VOLUME * 2];
+				for (int i = 0; i < Section.VOLUME; i++) {
+					int x = i & 15, by = i >> 8, z = i >> 4 & 15;
+					blocks[i * 2] = section.stateAt(x, by, z);
+					blocks[i * 2 + 1] = section.getOwner(x, by, z);
+				}
+				sections.put(entry.getKey().x() + " " + y + " " + entry.getKey().z(), blocks);
+			}
+		}
+		return sections;
+	}
+
+	@Test
+	public void testParallelMatchesSequential() {
+		for (Entity entity : level.getLevelStack()) {
+			if (entity.getName().equals("togglable") || entity.getName().equals("override")) {
+				assertFalse(entity.getName(), ((BlockEntity) entity).canCompileIsolated());
+			} else {
+				assertTrue(entity.getName(), ((BlockEntity) entity).canCompileIsolated());
+			}
+		}
+
+		level.compileBlockWorld(true, 1, ProgressListener.DUMMY);
+		Map<String, Object[]> sequential = snapshot();
+
+		// Sanity check that entities overwrote each other in stack order.
+		BlockWorld world = level.getBlockWorld();
+		assertSame(level.getEntity("brush"), world.getBlockOwner(21, 0, 3));
+		assertEquals("minecraft:oak_planks", world.blockAt(21, 0, 3).getName());
+		assertSame(level.getEntity("togglable"), world.getBlockOwner(6, 2, 2));
+		assertEquals("minecraft:oak_log", world.blockAt(6, 2, 2).getName());
+		assertSame(level.getEntity("top"), world.getBlockOwner(8, 5, 1));
+
+		level.compileBlockWorld(true, 4, ProgressListener.DUMMY);
+		Map<String, Object[]> parallel = snapshot();
+
+		assertEquals(sequential.keySet(), parallel.keySet());
+		for (String section : sequential.keySet()) {
+			Object[] expected = sequential.get(section);
+			Object[] actual = parallel.get(section);
+			for (int i = 0; i < expected.length; i++) {
+				assertSame("Section " + section + ", index " + i, expected[i], actual[i]);
+			}
+		}
+	}
+}
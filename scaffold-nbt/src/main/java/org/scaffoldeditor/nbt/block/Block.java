@@ -12,6 +12,17 @@ public class Block {
 	String name;
 	CompoundTag properties;
 	
+	/**
+	 * The interned block state of this block. Looked up lazily.
+	 */
+	volatile BlockState state;
+	
+	/**
+	 * Whether this is the block returned by {@link BlockState#toBlock()}, which is
+	 * shared by everything that uses the state.
+	 */
+	boolean canonical;
+	
 	/**
 	 * Create a Block object.
 	 * @param name Namespaced name.
@@ -35,8 +46,27 @@ public class Block {
 		return name;
 	}
 	
+	/**
+	 * Get this block's properties. The block returned by
+	 * {@link BlockState#toBlock()} is shared, so it returns a copy.
+	 * @return Block properties.
+	 */
 	public CompoundTag getProperties() {
-		return properties;
+		return canonical ? properties.clone() : properties;
+	}
+	
+	/**
+	 * Get the interned block state of this block. The state is cached after the
+	 * first call, so the block's properties should not be modified afterwards.
+	 * @return Block state.
+	 */
+	public BlockState getState() {
+		BlockState state = this.state;
+		if (state == null) {
+			state = BlockState.of(name, properties);
+			this.state = state;
+		}
+		return state;
 	}
 	
 	public String toString() {
@@ -62,8 +92,8 @@ public class Block {
 	 */
 	public CompoundTag toPaletteEntry() {
 		CompoundTag paletteEntry = new CompoundTag();
-		if (this.getProperties().size() > 0) {
-			paletteEntry.put("Properties", properties);
+		if (properties.size() > 0) {
+			paletteEntry.put("Properties", getProperties());
 		}
 		paletteEntry.putString("Name", this.name);
 		return paletteEntry;
@@ -71,18 +101,33 @@ public class Block {
 	
 	@Override
 	public boolean equals(Object obj) {
-		Block blockObj = (Block) obj;
-		if (blockObj == null) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof Block)) {
 			return false;
 		}
+		Block blockObj = (Block) obj;
 		
-		return (blockObj.name.matches(name)
-				&& blockObj.properties.equals(properties));
-
+		// If both blocks have been interned, we can compare by identity.
+		BlockState state = this.state;
+		BlockState otherState = blockObj.state;
+		if (state != null && otherState != null) {
+			return state == otherState;
+		}
+		
+		return (blockObj.name.equals(name)
+				&& Objects.equals(blockObj.properties, properties));
+				
 	}
-
+	
 	@Override
 	public int hashCode() {
+		// Once interned, hash the state so the hash agrees with the identity check in equals.
+		BlockState state = this.state;
+		if (state != null) {
+			return state.blockHash();
+		}
 		return Objects.hash(name, properties);
 	}
 	
@@ -90,5 +135,5 @@ public class Block {
 	protected Block clone() {
 		return new Block(name, properties.clone());
 	}
-
+	
 }
@@ -47,6 +47,23 @@ public interface BlockCollection extends Iterable<Vector3ic> {
 		return blockAt(vec.x(), vec.y(), vec.z());
 	}
 	
+	/**
+	 * Call a function on every block in the collection. Unlike iterating over the
+	 * collection, this doesn't allocate a vector for every block. Default
+	 * implementation uses the collection's iterator. Implementers are encouraged
+	 * to override this and make it more efficient.
+	 * 
+	 * @param visitor Function to call.
+	 */
+	default void forEachBlock(BlockVisitor visitor) {
+		for (Vector3ic pos : this) {
+			Block block = blockAt(pos);
+			if (block != null) {
+				visitor.visit(pos.x(), pos.y(), pos.z(), block.getState());
+			}
+		}
+	}
+	
 	/**
 	 * Get a set of all the locations within this block collection where a block
 	 * entity exists.
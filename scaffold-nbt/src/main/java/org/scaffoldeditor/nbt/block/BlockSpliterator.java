@@ -0,0 +1,129 @@
+package org.scaffoldeditor.nbt.block;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import org.joml.Vector3i;
+import org.joml.Vector3ic;
+
+/**
+ * Splits the blocks of a {@link SizedBlockCollection} by Y layer so they can be
+ * consumed in parallel. Each call to {@link #tryAdvance(Consumer)} scans
+ * forward from where the last one left off, so a full traversal only looks at
+ * every position once.
+ */
+public class BlockSpliterator implements Spliterator<Vector3ic> {
+
+	private final SizedBlockCollection collection;
+	private final int minX;
+	private final int minZ;
+	private final int maxX;
+	private final int maxZ;
+	private final int maxY;
+
+	// The next position to check.
+	private int x;
+	private int y;
+	private int z;
+
+	/**
+	 * Create a spliterator over all the blocks in a collection.
+	 * @param collection Collection to iterate.
+	 */
+	public BlockSpliterator(SizedBlockCollection collection) {
+		this(collection, collection.getMin(), collection.getMax());
+	}
+
+	private BlockSpliterator(SizedBlockCollection collection, Vector3ic min, Vector3ic max) {
+		this(collection, min.x(), min.y(), min.z(), max.x(), max.y(), max.z());
+	}
+
+	private BlockSpliterator(SizedBlockCollection collection, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+		this.collection = collection;
+		this.minX = minX;
+		this.minZ = minZ;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		this.maxZ = maxZ;
+
+		this.x = minX;
+		this.y = minY;
+		this.z = minZ;
+	}
+
+	/**
+	 * Move the cursor to the next position. Scans in an X -> Z -> Y order.
+	 */
+	private void step() {
+		if (++x < maxX) return;
+		x = minX;
+		if (++z < maxZ) return;
+		z = minZ;
+		y++;
+	}
+
+	private boolean isEmpty() {
+		return minX >= maxX || minZ >= maxZ || y >= maxY;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super Vector3ic> action) {
+		if (isEmpty()) return false;
+		while (y < maxY) {
+			int blockX = x;
+			int blockY = y;
+			int blockZ = z;
+			step();
+
+			if (collection.hasBlock(blockX, blockY, blockZ)) {
+				action.accept(new Vector3i(blockX, blockY, blockZ));
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void forEachRemaining(Consumer<? super Vector3ic> action) {
+		forEachRemaining((x, y, z, state) -> action.accept(new Vector3i(x, y, z)));
+	}
+
+	/**
+	 * Call a function on all the remaining blocks without allocating a vector
+	 * for each one.
+	 * @param visitor Function to call.
+	 */
+	public void forEachRemaining(BlockVisitor visitor) {
+		if (isEmpty()) return;
+		while (y < maxY) {
+			Block block = collection.blockAt(x, y, z);
+			if (block != null) {
+				visitor.visit(x, y, z, block.getState());
+			}
+			step();
+		}
+	}
+
+	@Override
+	public Spliterator<Vector3ic> trySplit() {
+		// Only split on whole layers.
+		if (x != minX || z != minZ) return null;
+		int mid = (y + maxY) >>> 1;
+		if (mid <= y) return null;
+
+		BlockSpliterator prefix = new BlockSpliterator(collection, minX, y, minZ, maxX, mid, maxZ);
+		y = mid;
+		return prefix;
+	}
+
+	@Override
+	public long estimateSize() {
+		if (isEmpty()) return 0;
+		return (long) (maxY - y) * (maxX - minX) * (maxZ - minZ);
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED | DISTINCT | NONNULL;
+	}
+}
@@ -0,0 +1,253 @@
+package org.scaffoldeditor.nbt.block;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.scaffoldeditor.nbt.util.HashUtils;
+
+import net.querz.nbt.tag.CompoundTag;
+import net.querz.nbt.tag.Tag;
+
+/**
+ * An interned, immutable block state. Every unique combination of block name
+ * and properties is registered once per process and given a stable integer ID,
+ * so block states can be compared by identity (or by ID) rather than by
+ * comparing names and property maps.
+ * <br>
+ * Obtain instances with {@link #of(Block)}, {@link #of(String, CompoundTag)} or
+ * {@link #byId(int)}.
+ */
+public final class BlockState {
+
+	/**
+	 * Identifies a block state by its contents.
+	 */
+	private static final class Key {
+		final String name;
+		final String[] keys;
+		final Tag<?>[] values;
+		final int hash;
+		final long contentHash;
+
+		Key(String name, CompoundTag properties) {
+			this.name = name;
+			int size = properties == null ? 0 : properties.size();
+			keys = new String[size];
+			values = new Tag<?>[size];
+			if (size > 0) {
+				properties.keySet().toArray(keys);
+				Arrays.sort(keys);
+				for (int i = 0; i < size; i++) {
+					values[i] = properties.get(keys[i]);
+				}
+			}
+			hash = 31 * (31 * name.hashCode() + Arrays.hashCode(keys)) + Arrays.hashCode(values);
+
+			long content = HashUtils.mix(HashUtils.SEED, name);
+			for (int i = 0; i < size; i++) {
+				content = HashUtils.mix(HashUtils.mix(content, keys[i]), values[i]);
+			}
+			contentHash = content;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) return true;
+			if (!(obj instanceof Key)) return false;
+			Key other = (Key) obj;
+			return hash == other.hash && name.equals(other.name) && Arrays.equals(keys, other.keys)
+					&& Arrays.equals(values, other.values);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	private static final Map<Key, BlockState> REGISTRY = new ConcurrentHashMap<>();
+	private static volatile BlockState[] byId = new BlockState[256];
+	private static int nextId = 0;
+
+	/**
+	 * The block state of <code>minecraft:air</code>. Always has ID 0.
+	 */
+	public static final BlockState AIR = of("minecraft:air", null);
+
+	private final int id;
+	private final Key key;
+	private final Block block;
+	private final int blockHash;
+
+	private BlockState(int id, Key key, CompoundTag properties) {
+		this.id = id;
+		this.key = key;
+		this.block = new Block(key.name, properties == null ? new CompoundTag() : properties.clone());
+		this.block.state = this;
+		this.block.canonical = true;
+		this.blockHash = Objects.hash(key.name, block.properties);
+	}
+
+	/**
+	 * Get the interned block state of a block.
+	 * @param block Block to look up.
+	 * @return The block state.
+	 */
+	public static BlockState of(Block block) {
+		return block.getState();
+	}
+
+	/**
+	 * Get the interned block state with a given name and set of properties,
+	 * registering it if it doesn't exist yet.
+	 *
+	 * @param name       Namespaced block name.
+	 * @param properties Block properties. May be <code>null</code> for no
+	 *                   properties. This tag is copied; later changes to it will
+	 *                   not affect the block state.
+	 * @return The block state.
+	 */
+	public static BlockState of(String name, CompoundTag properties) {
+		Key key = new Key(name, properties);
+		BlockState state = REGISTRY.get(key);
+		if (state != null) return state;
+
+		synchronized (REGISTRY) {
+			state = REGISTRY.get(key);
+			if (state != null) return state;
+
+			// The lookup key references the caller's tags, so the stored key needs its own copy.
+			key = new Key(name, properties == null ? null : properties.clone());
+			state = new BlockState(nextId, key, properties);
+			BlockState[] states = byId;
+			if (nextId >= states.length) {
+				states = Arrays.copyOf(states, states.length * 2);
+			}
+			states[nextId] = state;
+			byId = states;
+			nextId++;
+
+			REGISTRY.put(key, state);
+			return state;
+		}
+	}
+
+	/**
+	 * Get the interned block state of a palette entry (as defined in Minecraft
+	 * structure format) without creating a {@link Block}.
+	 *
+	 * @param paletteEntry Palette entry with a <code>Name</code> and optional
+	 *                     <code>Properties</code> tag.
+	 * @return The block state.
+	 */
+	public static BlockState fromPaletteEntry(CompoundTag paletteEntry) {
+		return of(paletteEntry.getString("Name"), paletteEntry.getCompoundTag("Properties"));
+	}
+
+	/**
+	 * Get a block state by its ID.
+	 * @param id Block state ID.
+	 * @return The block state.
+	 * @throws IndexOutOfBoundsException If no block state has this ID.
+	 */
+	public static BlockState byId(int id) {
+		BlockState[] states = byId;
+		BlockState state = id >= 0 && id < states.length ? states[id] : null;
+		if (state == null) {
+			throw new IndexOutOfBoundsException("No block state with ID " + id);
+		}
+		return state;
+	}
+
+	/**
+	 * Get the amount of block states that have been registered.
+	 */
+	public static int registeredCount() {
+		synchronized (REGISTRY) {
+			return nextId;
+		}
+	}
+
+	/**
+	 * Get this block state's ID. IDs are stable for the lifetime of the process,
+	 * but are not persisted; don't write them to disk.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Get the namespaced name of the block.
+	 */
+	public String getName() {
+		return key.name;
+	}
+
+	/**
+	 * Get the amount of properties this block state has.
+	 */
+	public int getPropertyCount() {
+		return key.keys.length;
+	}
+
+	/**
+	 * Get the value of one of this block state's properties.
+	 * @param name Property name.
+	 * @return The property value, or <code>null</code> if it isn't set.
+	 */
+	public Tag<?> getProperty(String name) {
+		int index = Arrays.binarySearch(key.keys, name);
+		return index < 0 ? null : key.values[index];
+	}
+
+	/**
+	 * Get a 64-bit hash of this block state's name and properties. Unlike the
+	 * ID, this is stable between runs.
+	 */
+	public long contentHash() {
+		return key.contentHash;
+	}
+
+	/**
+	 * Check whether this is <code>minecraft:air</code>.
+	 */
+	public boolean isAir() {
+		return this == AIR;
+	}
+
+	/**
+	 * Get the canonical {@link Block} for this state. The same instance is
+	 * returned every time, so its {@link Block#getProperties()} returns a copy.
+	 */
+	public Block toBlock() {
+		return block;
+	}
+
+	/**
+	 * Convert this block state into a palette entry (as defined in Minecraft
+	 * structure format).
+	 */
+	public CompoundTag toPaletteEntry() {
+		return block.toPaletteEntry();
+	}
+
+	/**
+	 * The hash code of a {@link Block} with this state's contents, so blocks hash
+	 * the same whether or not they've been interned.
+	 */
+	int blockHash() {
+		return blockHash;
+	}
+
+	@Override
+	public int hashCode() {
+		return key.hash;
+	}
+
+	@Override
+	public String toString() {
+		return "BlockState: " + key.name + " (" + id + ")";
+	}
+}
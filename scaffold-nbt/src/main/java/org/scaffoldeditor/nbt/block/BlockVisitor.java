@@ -0,0 +1,19 @@
+package org.scaffoldeditor.nbt.block;
+
+/**
+ * A function that gets called on every block in a {@link BlockCollection}.
+ * 
+ * @see BlockCollection#forEachBlock(BlockVisitor)
+ */
+@FunctionalInterface
+public interface BlockVisitor {
+
+	/**
+	 * Visit a block.
+	 * @param x X coordinate of the block.
+	 * @param y Y coordinate of the block.
+	 * @param z Z coordinate of the block.
+	 * @param state The block's state.
+	 */
+	void visit(int x, int y, int z, BlockState state);
+}
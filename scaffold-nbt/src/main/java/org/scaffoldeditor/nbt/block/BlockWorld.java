@@ -1,18 +1,26 @@
 package org.scaffoldeditor.nbt.block;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.logging.log4j.LogManager;
@@ -24,9 +32,11 @@ import org.joml.Vector3ic;
 import org.scaffoldeditor.nbt.block.WorldMath.ChunkCoordinate;
 import org.scaffoldeditor.nbt.block.WorldMath.SectionCoordinate;
 import org.scaffoldeditor.nbt.io.ChunkParser;
-import org.scaffoldeditor.nbt.io.WorldInputStream;
-import org.scaffoldeditor.nbt.io.WorldOutputStream;
+import org.scaffoldeditor.nbt.io.NBTStreamWriter;
+import org.scaffoldeditor.nbt.io.RegionFile;
+import org.scaffoldeditor.nbt.io.RegionFileWriter;
 import org.scaffoldeditor.nbt.math.MathUtils;
+import org.scaffoldeditor.nbt.util.LongObjectMap;
 
 import net.querz.nbt.tag.CompoundTag;
 import net.querz.nbt.tag.DoubleTag;
@@ -40,65 +50,79 @@ public class BlockWorld implements ChunkedBlockCollection {
 	
 	private static Logger LOGGER = LogManager.getLogger();
 
-	// Chunks are stored in a map with a 2 index long array of their coordinates
-	private Map<ChunkCoordinate, Chunk> chunks = new HashMap<ChunkCoordinate, Chunk>();
+	// Chunks are stored by their packed chunk coordinate. See ChunkCoordinate#pack.
+	private final LongObjectMap<Chunk> chunks = new LongObjectMap<>();
+	
+	// Block lookups tend to hit the same chunk many times in a row. The chunk
+	// carries the key it was cached under, so the pair can't be torn by another
+	// thread caching a different chunk, and updating it doesn't allocate.
+	private volatile Chunk lastChunk;
+	
+	/**
+	 * Get the chunk with a packed chunk coordinate.
+	 * @param key Packed chunk coordinate.
+	 * @return The chunk, or <code>null</code> if it doesn't exist.
+	 */
+	private Chunk getChunk(long key) {
+		Chunk cached = lastChunk;
+		if (cached != null && cached.cacheKey == key) {
+			return cached;
+		}
+		
+		Chunk chunk = chunks.get(key);
+		if (chunk != null) {
+			cache(key, chunk);
+		}
+		return chunk;
+	}
+	
+	/**
+	 * Get the chunk with a packed chunk coordinate, creating it if it doesn't
+	 * exist.
+	 * @param key Packed chunk coordinate.
+	 * @return The chunk.
+	 */
+	private Chunk getOrCreateChunk(long key) {
+		Chunk chunk = getChunk(key);
+		if (chunk == null) {
+			chunk = new Chunk();
+			chunks.put(key, chunk);
+			cache(key, chunk);
+		}
+		return chunk;
+	}
+	
+	private void cache(long key, Chunk chunk) {
+		chunk.cacheKey = key;
+		lastChunk = chunk;
+	}
 	
 	@Override
 	public Block blockAt(int x, int y, int z) {
-		if (y < 0 || y > Chunk.HEIGHT) {
+		if (y < 0 || y >= Chunk.HEIGHT) {
 			return null;
 		}
 		
-		// Find chunk block is in
-		ChunkCoordinate chunkKey = new ChunkCoordinate(
-				(int) Math.floor((double) x/Chunk.WIDTH),
-				(int) Math.floor((double) z/Chunk.WIDTH));
-		
-		Chunk chunk = null;
-		if (chunks.containsKey(chunkKey)) {
-			chunk = chunks.get(chunkKey);
-		} else {
+		// Chunks are 16 blocks wide, so shifting by 4 is a floor division.
+		Chunk chunk = getChunk(ChunkCoordinate.pack(x >> 4, z >> 4));
+		if (chunk == null) {
 			return null;
 		}
 		
-		// Convert into chunk coordinates.
-		int chunkX = x % Chunk.WIDTH;
-		int chunkZ = z % Chunk.LENGTH;
-		
-		if (chunkX < 0) {
-			chunkX = Chunk.WIDTH + chunkX;
-		}
-		if (chunkZ < 0) {
-			chunkZ = Chunk.LENGTH + chunkZ;
-		}
-		
-		return chunk.blockAt(chunkX, y, chunkZ);
+		return chunk.blockAt(x & (Chunk.WIDTH - 1), y, z & (Chunk.LENGTH - 1));
 	}
 	
 	public Object getBlockOwner(int x, int y, int z) {
-		// Find chunk block is in
-		ChunkCoordinate chunkKey = new ChunkCoordinate((int) Math.floor((double) x / Chunk.WIDTH),
-				(int) Math.floor((double) z / Chunk.WIDTH));
-
-		Chunk chunk = null;
-		if (chunks.containsKey(chunkKey)) {
-			chunk = chunks.get(chunkKey);
-		} else {
+		if (y < 0 || y >= Chunk.HEIGHT) {
 			return null;
 		}
 
-		// Convert into chunk coordinates.
-		int chunkX = x % Chunk.WIDTH;
-		int chunkZ = z % Chunk.LENGTH;
-
-		if (chunkX < 0) {
-			chunkX = Chunk.WIDTH + chunkX;
-		}
-		if (chunkZ < 0) {
-			chunkZ = Chunk.LENGTH + chunkZ;
+		Chunk chunk = getChunk(ChunkCoordinate.pack(x >> 4, z >> 4));
+		if (chunk == null) {
+			return null;
 		}
 		
-		return chunk.getOwner(chunkX, y, chunkZ);
+		return chunk.getOwner(x & (Chunk.WIDTH - 1), y, z & (Chunk.LENGTH - 1));
 	}
 	
 	/**
@@ -121,26 +145,12 @@ public class BlockWorld implements ChunkedBlockCollection {
 	 * @param block Block to set.
 	 */
 	public void setBlock(int x, int y, int z, Block block, Object owner) {
-		if (y < 0 || y > Chunk.HEIGHT) {
+		if (y < 0 || y >= Chunk.HEIGHT) {
 			return;
 		}
 		// Get chunk to place in
-		ChunkCoordinate chunkKey = new ChunkCoordinate(
-				(int) Math.floor(x / (double) Chunk.WIDTH),
-				(int) Math.floor(z / (double) Chunk.LENGTH));
-		
-		Chunk chunk = null;
-		if (chunks.containsKey(chunkKey)) {
-			chunk = chunks.get(chunkKey);
-		} else {
-			chunk = new Chunk();
-			chunks.put(chunkKey, chunk);
-		}
-		
-		int relativeX = x - chunkKey.x * Chunk.WIDTH;
-		int relativeZ = z - chunkKey.z * Chunk.LENGTH;
-				
-		chunk.setBlock(relativeX, y, relativeZ, block, owner);
+		Chunk chunk = getOrCreateChunk(ChunkCoordinate.pack(x >> 4, z >> 4));
+		chunk.setBlock(x & (Chunk.WIDTH - 1), y, z & (Chunk.LENGTH - 1), block, owner);
 	}
 	
 	/**
@@ -173,6 +183,11 @@ public class BlockWorld implements ChunkedBlockCollection {
 	 * @param owner      Owner to assign blocks to.
 	 */
 	public void addBlockCollection(BlockCollection collection, int x, int y, int z, boolean override, boolean placeAir, Object owner) {
+		if (collection instanceof SizedBlockCollection) {
+			copyFrom((SizedBlockCollection) collection, new Vector3i(x, y, z), override, placeAir, owner);
+			return;
+		}
+		
 		Vector3i targetCoord = new Vector3i(x, y, z);
 		LogManager.getLogger().debug("Adding block collection...");
 		for (Vector3ic coord : collection) {
@@ -220,7 +235,241 @@ public class BlockWorld implements ChunkedBlockCollection {
 	public void addBlockCollection(SizedBlockCollection collection, int x, int y, int z) {
 		addBlockCollection(collection, x, y, z, false, false, null);
 	}
+	
+	/**
+	 * Called on every section that intersects a box.
+	 */
+	private interface SectionVisitor {
+		/**
+		 * Visit a section. Bounds are relative to the section; max values are
+		 * non-inclusive.
+		 */
+		void visit(int chunkX, int sectionY, int chunkZ, int minX, int minY, int minZ, int maxX, int maxY, int maxZ);
+	}
+	
+	/**
+	 * Call a function on every section that intersects a box, along with the
+	 * portion of the section the box covers.
+	 * @param min Min point of the box (inclusive).
+	 * @param max Max point of the box (non-inclusive).
+	 * @param visitor Function to call.
+	 */
+	private static void forEachSection(Vector3ic min, Vector3ic max, SectionVisitor visitor) {
+		int minY = Math.max(min.y(), 0);
+		int maxY = Math.min(max.y(), Chunk.HEIGHT);
+		if (min.x() >= max.x() || minY >= maxY || min.z() >= max.z()) return;
 		
+		for (int chunkX = min.x() >> 4; chunkX <= (max.x() - 1) >> 4; chunkX++) {
+			int startX = chunkX << 4;
+			for (int chunkZ = min.z() >> 4; chunkZ <= (max.z() - 1) >> 4; chunkZ++) {
+				int startZ = chunkZ << 4;
+				for (int sectionY = minY >> 4; sectionY <= (maxY - 1) >> 4; sectionY++) {
+					int startY = sectionY << 4;
+					visitor.visit(chunkX, sectionY, chunkZ,
+							Math.max(min.x() - startX, 0), Math.max(minY - startY, 0), Math.max(min.z() - startZ, 0),
+							Math.min(max.x() - startX, Chunk.WIDTH), Math.min(maxY - startY, Section.HEIGHT), Math.min(max.z() - startZ, Chunk.LENGTH));
+				}
+			}
+		}
+	}
+	
+	private static boolean isWholeSection(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+		return minX == 0 && minY == 0 && minZ == 0
+				&& maxX == Chunk.WIDTH && maxY == Section.HEIGHT && maxZ == Chunk.LENGTH;
+	}
+	
+	/**
+	 * Fill a box with a single block state. Sections that are completely covered
+	 * by the box are filled in one operation.
+	 * 
+	 * @param min   Min point of the box (inclusive).
+	 * @param max   Max point of the box (non-inclusive).
+	 * @param state Block state to fill with. <code>null</code> removes the
+	 *              blocks.
+	 * @param owner Owner to assign blocks to. May be <code>null</code>.
+	 */
+	public void fill(Vector3ic min, Vector3ic max, BlockState state, Object owner) {
+		forEachSection(min, max, (chunkX, sectionY, chunkZ, minX, minY, minZ, maxX, maxY, maxZ) -> {
+			long key = ChunkCoordinate.pack(chunkX, chunkZ);
+			if (state == null) {
+				Chunk chunk = getChunk(key);
+				if (chunk == null || chunk.sections[sectionY] == null) return;
+			}
+			Section section = getOrCreateChunk(key).getOrCreateSection(sectionY);
+			
+			if (isWholeSection(minX, minY, minZ, maxX, maxY, maxZ)) {
+				section.fill(state, owner);
+				return;
+			}
+			
+			for (int y = minY; y < maxY; y++) {
+				for (int z = minZ; z < maxZ; z++) {
+					for (int x = minX; x < maxX; x++) {
+						section.setBlock(x, y, z, state, owner);
+					}
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Copy a block collection into the world. Blocks are copied one section at a
+	 * time, and sections of {@link Chunk}s, {@link Section}s and
+	 * {@link ChunkedBlockCollection}s with 16-block sections that line up with the
+	 * world's sections are copied directly without looking up individual blocks.
+	 * 
+	 * @param collection Collection to copy.
+	 * @param offset     Position in the world of the collection's origin.
+	 * @param override   Should override existing blocks?
+	 * @param placeAir   If this and <code>override</code> are true, air blocks in
+	 *                   the collection will override existing blocks.
+	 * @param owner      Owner to assign blocks to. May be <code>null</code>.
+	 * @see #addBlockCollection(BlockCollection, int, int, int, boolean, boolean, Object)
+	 */
+	public void copyFrom(SizedBlockCollection collection, Vector3ic offset, boolean override, boolean placeAir, Object owner) {
+		copyFrom(collection, offset, null, null, override, placeAir, owner);
+	}
+	
+	/**
+	 * Copy the part of a block collection that lands within a box into the world.
+	 * 
+	 * @param collection Collection to copy.
+	 * @param offset     Position in the world of the collection's origin.
+	 * @param clipMin    Min point of the box to copy into (inclusive). May be
+	 *                   <code>null</code>.
+	 * @param clipMax    Max point of the box to copy into (non-inclusive). May be
+	 *                   <code>null</code>.
+	 * @param override   Should override existing blocks?
+	 * @param placeAir   If this and <code>override</code> are true, air blocks in
+	 *                   the collection will override existing blocks.
+	 * @param owner      Owner to assign blocks to. May be <code>null</code>.
+	 * @see #copyFrom(SizedBlockCollection, Vector3ic, boolean, boolean, Object)
+	 */
+	public void copyFrom(SizedBlockCollection collection, Vector3ic offset, Vector3ic clipMin, Vector3ic clipMax,
+			boolean override, boolean placeAir, Object owner) {
+		Vector3i min = collection.getMin().add(offset, new Vector3i());
+		Vector3i max = collection.getMax().add(offset, new Vector3i());
+		if (clipMin != null) min.max(clipMin);
+		if (clipMax != null) max.min(clipMax);
+		
+		boolean aligned = (offset.x() & 15) == 0 && (offset.y() & 15) == 0 && (offset.z() & 15) == 0;
+		
+		forEachSection(min, max, (chunkX, sectionY, chunkZ, minX, minY, minZ, maxX, maxY, maxZ) -> {
+			int startX = chunkX << 4;
+			int startY = sectionY << 4;
+			int startZ = chunkZ << 4;
+			
+			if (aligned && isWholeSection(minX, minY, minZ, maxX, maxY, maxZ)) {
+				Section source = sourceSection(collection, startX - offset.x(), startY - offset.y(), startZ - offset.z());
+				if (source != null) {
+					copySection(source, chunkX, sectionY, chunkZ, override, placeAir, owner);
+					return;
+				}
+			}
+			
+			Section section = null;
+			for (int y = minY; y < maxY; y++) {
+				for (int z = minZ; z < maxZ; z++) {
+					for (int x = minX; x < maxX; x++) {
+						Block block = collection.blockAt(startX + x - offset.x(), startY + y - offset.y(), startZ + z - offset.z());
+						if (block == null) continue;
+						BlockState state = block.getState();
+						if (!placeAir && state.isAir()) continue;
+						
+						if (section == null) {
+							section = getOrCreateChunk(ChunkCoordinate.pack(chunkX, chunkZ)).getOrCreateSection(sectionY);
+						}
+						if (!override && section.blockExists(x, y, z)) continue;
+						section.setBlock(x, y, z, state, owner);
+					}
+				}
+			}
+		});
+		
+		// Block entities
+		Vector3i target = new Vector3i();
+		for (Vector3ic ent : collection.getBlockEntities()) {
+			offset.add(ent, target);
+			if (target.x >= min.x && target.y >= min.y && target.z >= min.z
+					&& target.x < max.x && target.y < max.y && target.z < max.z) {
+				addBlockEntity(new Vector3i(target), collection.blockEntityAt(ent));
+			}
+		}
+	}
+	
+	/**
+	 * Find a section in a collection that can be copied directly.
+	 * @return The section starting at the given local coordinates, or
+	 *         <code>null</code> if the collection doesn't store one there.
+	 */
+	private static Section sourceSection(SizedBlockCollection collection, int x, int y, int z) {
+		if (collection instanceof Section) {
+			return x == 0 && y == 0 && z == 0 ? (Section) collection : null;
+		} else if (collection instanceof Chunk) {
+			if (x != 0 || z != 0 || y < 0 || y >= Chunk.HEIGHT) return null;
+			return ((Chunk) collection).getSection(y >> 4);
+		} else if (collection instanceof ChunkedBlockCollection) {
+			ChunkedBlockCollection chunked = (ChunkedBlockCollection) collection;
+			if (chunked.getSectionWidth() != Chunk.WIDTH || chunked.getSectionHeight() != Section.HEIGHT
+					|| chunked.getSectionLength() != Chunk.LENGTH) {
+				return null;
+			}
+			SizedBlockCollection section = chunked.sectionAt(x >> 4, y >> 4, z >> 4);
+			if (section == null) return Section.EMPTY;
+			return section instanceof Section ? (Section) section : null;
+		}
+		return null;
+	}
+	
+	/**
+	 * Copy a section into the world.
+	 * 
+	 * @param source   Section to copy.
+	 * @param dest     Section coordinate to copy into.
+	 * @param override Should override existing blocks?
+	 * @param placeAir If this and <code>override</code> are true, air blocks in the
+	 *                 source will override existing blocks.
+	 * @param owner    Owner to assign blocks to. May be <code>null</code>.
+	 */
+	public void copySection(Section source, SectionCoordinate dest, boolean override, boolean placeAir, Object owner) {
+		if (dest.y() < 0 || dest.y() >= Chunk.HEIGHT / Section.HEIGHT) return;
+		copySection(source, dest.x(), dest.y(), dest.z(), override, placeAir, owner);
+	}
+	
+	private void copySection(Section source, int chunkX, int sectionY, int chunkZ, boolean override, boolean placeAir, Object owner) {
+		if (source == Section.EMPTY) return;
+		getOrCreateChunk(ChunkCoordinate.pack(chunkX, chunkZ)).getOrCreateSection(sectionY)
+				.copyFrom(source, override, placeAir, owner);
+	}
+		
+	
+	/**
+	 * Merge another world into this one, as if everything placed in it had been
+	 * placed in this world instead. Blocks (including air) replace the blocks
+	 * here one section at a time, and block entities and entities are added.
+	 * Nothing is removed from this world, so blocks that were removed from the
+	 * other world aren't removed here.
+	 * 
+	 * @param other World to merge. Should not be used afterwards.
+	 * @see Section#mergeFrom(Section)
+	 */
+	public void mergeFrom(BlockWorld other) {
+		other.chunks.forEach((key, source) -> {
+			Chunk chunk = getOrCreateChunk(key);
+			for (int i = 0; i < source.sections.length; i++) {
+				Section section = source.sections[i];
+				if (section == null || section == Section.EMPTY) continue;
+				if (chunk.sections[i] == null || chunk.sections[i] == Section.EMPTY) {
+					// Nothing to merge with, so take the section as is.
+					chunk.sections[i] = section;
+				} else {
+					chunk.getOrCreateSection(i).mergeFrom(section);
+				}
+			}
+			chunk.blockEntities.putAll(source.blockEntities);
+			chunk.entities.putAll(source.entities);
+		});
+	}
 	
 	/**
 	 * Get the chunk at a specific X and Z coordinate.
@@ -230,11 +479,26 @@ public class BlockWorld implements ChunkedBlockCollection {
 	 * @return Chunk at coordinates.
 	 */
 	public Chunk chunkAt(int x, int z) {
-		return chunks.get(new ChunkCoordinate(x,z));
+		return getChunk(ChunkCoordinate.pack(x, z));
+	}
+	
+	/**
+	 * Add a chunk to the world, replacing any chunk that's already there.
+	 * Coordinates are chunk coordinates (block coordinate / chunk size).
+	 * @param x X coordinate.
+	 * @param z Z coordinate.
+	 * @param chunk Chunk to add.
+	 */
+	public void putChunk(int x, int z, Chunk chunk) {
+		chunks.put(ChunkCoordinate.pack(x, z), chunk);
+		lastChunk = null;
 	}
 	
+	@Override
 	public Section sectionAt(int x, int y, int z) {
-		return chunks.get(new ChunkCoordinate(x,z)).sections[Math.floorDiv(y, Section.HEIGHT)];
+		if (y < 0 || y >= Chunk.HEIGHT / Section.HEIGHT) return null;
+		Chunk chunk = chunkAt(x, z);
+		return chunk != null ? chunk.sections[y] : null;
 	}
 	
 	/**
@@ -244,9 +508,7 @@ public class BlockWorld implements ChunkedBlockCollection {
 	 * @return
 	 */
 	public ChunkCoordinate chunkAtCoord(int x, int z) {
-		return new ChunkCoordinate(
-				(int) Math.floor(x / (double) Chunk.WIDTH),
-				(int) Math.floor(z / (double) Chunk.LENGTH));
+		return new ChunkCoordinate(x >> 4, z >> 4);
 	}
 	
 	/**
@@ -254,15 +516,99 @@ public class BlockWorld implements ChunkedBlockCollection {
 	 * @return Chunks.
 	 */
 	public Collection<Chunk> chunks() {
-		return chunks.values();
+		return new AbstractCollection<Chunk>() {
+			
+			@Override
+			public Iterator<Chunk> iterator() {
+				return chunks.cursor();
+			}
+			
+			@Override
+			public int size() {
+				return chunks.size();
+			}
+		};
 	}
 	
 	/**
-	 * Get all this worlds chunks.
-	 * @return A map with chunk coordinates as keys and their corresponding chunks as values.
+	 * Get all this worlds chunks. Prefer {@link #chunkAt(int, int)} and
+	 * {@link #putChunk(int, int, Chunk)} where possible; this view has to
+	 * allocate a key for every lookup.
+	 * 
+	 * @return A live map view with chunk coordinates as keys and their
+	 *         corresponding chunks as values.
 	 */
 	public Map<ChunkCoordinate, Chunk> getChunks() {
-		return this.chunks;
+		return new AbstractMap<ChunkCoordinate, Chunk>() {
+			
+			@Override
+			public Chunk get(Object key) {
+				return key instanceof ChunkCoordinate ? chunks.get(((ChunkCoordinate) key).toLong()) : null;
+			}
+			
+			@Override
+			public boolean containsKey(Object key) {
+				return get(key) != null;
+			}
+			
+			@Override
+			public Chunk put(ChunkCoordinate key, Chunk value) {
+				lastChunk = null;
+				return chunks.put(key.toLong(), value);
+			}
+			
+			@Override
+			public Chunk remove(Object key) {
+				if (!(key instanceof ChunkCoordinate)) return null;
+				lastChunk = null;
+				return chunks.remove(((ChunkCoordinate) key).toLong());
+			}
+			
+			@Override
+			public int size() {
+				return chunks.size();
+			}
+			
+			@Override
+			public void clear() {
+				BlockWorld.this.clear();
+			}
+			
+			@Override
+			public Set<Entry<ChunkCoordinate, Chunk>> entrySet() {
+				return new AbstractSet<Entry<ChunkCoordinate, Chunk>>() {
+					
+					@Override
+					public Iterator<Entry<ChunkCoordinate, Chunk>> iterator() {
+						LongObjectMap<Chunk>.Cursor cursor = chunks.cursor();
+						return new Iterator<Entry<ChunkCoordinate, Chunk>>() {
+							
+							@Override
+							public boolean hasNext() {
+								return cursor.hasNext();
+							}
+							
+							@Override
+							public Entry<ChunkCoordinate, Chunk> next() {
+								Chunk chunk = cursor.next();
+								return new SimpleImmutableEntry<>(ChunkCoordinate.fromLong(cursor.key()), chunk);
+							}
+							
+							@Override
+							public void remove() {
+								lastChunk = null;
+								cursor.remove();
+							}
+						};
+					}
+					
+					@Override
+					public int size() {
+						return chunks.size();
+					}
+				};
+			}
+		};
 	}
 	
 	/**
@@ -270,16 +616,13 @@ public class BlockWorld implements ChunkedBlockCollection {
 	 */
 	public void clear() {
 		chunks.clear();
+		lastChunk = null;
 	}
 
 	
 	public void addEntity(CompoundTag entity, Vector3dc pos) {
 		ChunkCoordinate chunkKey = chunkAtCoord((int) pos.x(), (int) pos.z());
-		Chunk chunk = chunks.get(chunkKey);
-		if (chunk == null) {
-			chunk = new Chunk();
-			chunks.put(chunkKey, chunk);
-		}
+		Chunk chunk = getOrCreateChunk(chunkKey.toLong());
 		chunk.entities.put(entity, new Vector3d(pos.x() - chunkKey.getStartX(), pos.y(), pos.z() - chunkKey.getStartZ()));
 	}
 	
@@ -287,7 +630,7 @@ public class BlockWorld implements ChunkedBlockCollection {
 		ListTag<DoubleTag> posList = entity.getListTag("Pos").asDoubleTagList();
 		Vector3i pos = MathUtils.floorVector(new Vector3d(posList.get(0).asDouble(), posList.get(1).asDouble(), posList.get(2).asDouble()));
 		
-		Chunk chunk = chunks.get(chunkAtCoord(pos.x, pos.z));
+		Chunk chunk = getChunk(ChunkCoordinate.pack(pos.x >> 4, pos.z >> 4));
 		CompoundTag remove = null;
 		if (chunk != null) {
 			for (CompoundTag nbt : chunk.entities.keySet()) {
@@ -309,11 +652,7 @@ public class BlockWorld implements ChunkedBlockCollection {
 	 */
 	public void addBlockEntity(Vector3ic pos, CompoundTag nbt) {
 		ChunkCoordinate chunkCoord = chunkAtCoord(pos.x(), pos.z());
-		Chunk chunk = chunks.get(chunkCoord);
-		if (chunk == null) {
-			chunk = new Chunk();
-			chunks.put(chunkCoord, chunk);
-		}
+		Chunk chunk = getOrCreateChunk(chunkCoord.toLong());
 		chunk.blockEntities.put(new Vector3i(pos.x() - chunkCoord.getStartX(), pos.y(), pos.z() - chunkCoord.getStartZ()),
 				nbt);
 	}
@@ -329,7 +668,7 @@ public class BlockWorld implements ChunkedBlockCollection {
 	 */
 	public CompoundTag blockEntityAt(int x, int y, int z) {
 		ChunkCoordinate chunkKey = chunkAtCoord(x, z);
-		Chunk chunk = chunks.get(chunkKey);
+		Chunk chunk = getChunk(chunkKey.toLong());
 		if (chunk == null) return null;
 		
 		Vector3i localCoords = chunkKey.relativize(new Vector3i(x, y, z));
@@ -344,21 +683,118 @@ public class BlockWorld implements ChunkedBlockCollection {
 	 * @throws FileNotFoundException If any of the files are not found.
 	 */
 	public static BlockWorld deserialize(File regionFolder) throws FileNotFoundException, IOException {
+		return deserialize(regionFolder, 1);
+	}
+	
+	/**
+	 * Read a BlockWorld from a Minecraft save file, reading region files and
+	 * parsing chunks in parallel. The resulting world is identical to the one
+	 * produced by reading sequentially.
+	 * 
+	 * @param regionFolder (Absolute) path to region folder within world folder.
+	 * @param parallelism  Maximum amount of threads to use. If this is 1, the
+	 *                     world is read on the calling thread.
+	 * @return Parsed BlockWorld.
+	 * @throws IOException           If an IOException occurs.
+	 * @throws FileNotFoundException If any of the files are not found.
+	 */
+	public static BlockWorld deserialize(File regionFolder, int parallelism) throws FileNotFoundException, IOException {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be at least 1!");
+		}
 		LOGGER.info("Reading world at "+regionFolder);
 		BlockWorld world = new BlockWorld();
 		
-		File[] regionFiles = regionFolder.listFiles();
-		for (File f : regionFiles) {
+		List<File> regionFiles = new ArrayList<>();
+		for (File f : regionFolder.listFiles()) {
 			if (FilenameUtils.getExtension(f.toString()).matches("mca")) {
+				regionFiles.add(f);
+			}
+		}
+		
+		if (parallelism == 1) {
+			for (File f : regionFiles) {
 				LOGGER.info("Parsing region file "+f.toString());
 				world.parseRegionFile(f);
 			}
+		} else {
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				List<Future<List<ParsedChunk>>> tasks = new ArrayList<>();
+				for (File f : regionFiles) {
+					tasks.add(pool.submit(() -> {
+						LOGGER.info("Parsing region file "+f.toString());
+						// Running the stream inside the pool makes it use the pool's threads.
+						return readRegionFile(f).parallelStream().map(BlockWorld::parseChunk).collect(Collectors.toList());
+					}));
+				}
+				
+				// Merge in the same order the sequential path would, so duplicate chunks resolve the same way.
+				for (Future<List<ParsedChunk>> task : tasks) {
+					for (ParsedChunk chunk : task.get()) {
+						world.putChunk(chunk.x, chunk.z, chunk.chunk);
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while reading world.", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				} else if (e.getCause() instanceof UncheckedIOException) {
+					throw ((UncheckedIOException) e.getCause()).getCause();
+				}
+				throw new IOException("Unable to read world.", e.getCause());
+			} finally {
+				pool.shutdownNow();
+			}
 		}
 		
 		LOGGER.info("World read successfully!");
 		return world;
 	}
 	
+	/**
+	 * A chunk that has been parsed but not added to a world yet.
+	 */
+	private static class ParsedChunk {
+		final int x;
+		final int z;
+		final Chunk chunk;
+		
+		ParsedChunk(int x, int z, Chunk chunk) {
+			this.x = x;
+			this.z = z;
+			this.chunk = chunk;
+		}
+	}
+	
+	private static ParsedChunk parseChunk(CompoundTag chunkMap) {
+		CompoundTag level = chunkMap.getCompoundTag("Level");
+		return new ParsedChunk(level.getInt("xPos"), level.getInt("zPos"), ChunkParser.parseNBT(level, chunkMap.getInt("DataVersion")));
+	}
+	
+	/**
+	 * Read the NBT of all the chunks in a region file.
+	 * @param regionFile File to read.
+	 * @return The NBT of each chunk, in the order they appear in the region's header.
+	 */
+	private static List<CompoundTag> readRegionFile(File regionFile) throws FileNotFoundException, IOException {
+		LOGGER.info("Reading "+regionFile);
+		List<CompoundTag> chunkMaps = new ArrayList<>();
+		try (RegionFile region = new RegionFile(regionFile)) {
+			// Read all chunks from file.
+			for (int z = 0; z < RegionFile.REGION_WIDTH; z++) {
+				for (int x = 0; x < RegionFile.REGION_WIDTH; x++) {
+					if (region.hasChunk(x, z)) {
+						chunkMaps.add(region.readChunk(x, z));
+					}
+				}
+			}
+		}
+		return chunkMaps;
+	}
+	
 	/**
 	 * Read all the chunks in a region file and add them to this world.
 	 * @param regionFile
@@ -366,27 +802,13 @@ public class BlockWorld implements ChunkedBlockCollection {
 	 * @throws FileNotFoundException If the file is not found.
 	 */
 	public void parseRegionFile(File regionFile) throws FileNotFoundException, IOException {
-		LOGGER.info("Reading "+regionFile);
-		List<CompoundTag> chunkMaps = new ArrayList<>();
-		WorldInputStream is = new WorldInputStream(new FileInputStream(regionFile));
-		
-		// Read all chunks from file.
-		while (is.hasNext()) {
-			chunkMaps.add(is.readChunkNBT().nbt);
-		}
-		is.close();
+		List<CompoundTag> chunkMaps = readRegionFile(regionFile);
 		
 		// Add chunks to world.
 		for (int i = 0; i < chunkMaps.size(); i++) {
 			LOGGER.info("Parsing chunk "+i+"/"+chunkMaps.size());
-			CompoundTag c = chunkMaps.get(i);
-			CompoundTag level = c.getCompoundTag("Level");
-			ChunkCoordinate coord = new ChunkCoordinate(
-					level.getInt("xPos"),
-					level.getInt("zPos"));
-			
-			chunks.put(coord, ChunkParser.parseNBT(level));
-			
+			ParsedChunk chunk = parseChunk(chunkMaps.get(i));
+			putChunk(chunk.x, chunk.z, chunk.chunk);
 		}
 	}
 	
@@ -400,16 +822,15 @@ public class BlockWorld implements ChunkedBlockCollection {
 	public void serialize(File regionFolder, File entitiesFolder, int dataVersion) throws IOException {
 		LOGGER.info("Writing world...");
 		
-		List<ChunkCoordinate> regions = new ArrayList<ChunkCoordinate>();
+		Set<ChunkCoordinate> regions = new LinkedHashSet<ChunkCoordinate>();
 		
 		// Figure out which regions need to be written.
-		for (ChunkCoordinate coord : chunks.keySet()) {
-			int regionX = (int) Math.floor(coord.x / 32.0);
-			int regionZ = (int) Math.floor(coord.z / 32.0);
+		chunks.forEach((key, chunk) -> {
+			int regionX = ChunkCoordinate.unpackX(key) >> 5;
+			int regionZ = ChunkCoordinate.unpackZ(key) >> 5;
 			
-			ChunkCoordinate region = new ChunkCoordinate(regionX, regionZ);
-			if (!regions.contains(region)) regions.add(region);
-		}
+			regions.add(new ChunkCoordinate(regionX, regionZ));
+		});
 		
 		for (ChunkCoordinate region : regions) {
 			File regionFile = new File(regionFolder, "r."+region.x+"."+region.z+".mca");
@@ -443,38 +864,7 @@ public class BlockWorld implements ChunkedBlockCollection {
 		LOGGER.info("Writing region file " + regionFile.getName());
 		
 		ChunkParser parser = new ChunkParser(dataVersion);
-		
-		// Keep track of all the chunks that belong in this file.
-		Map<ChunkCoordinate, CompoundTag> chunks = new HashMap<>();
-		for (ChunkCoordinate chunkCoord : this.chunks.keySet()) {
-			int relativeX = chunkCoord.x - xOffset*32;
-			int relativeZ = chunkCoord.z - zOffset*32;
-			
-			if (0 <= relativeX && relativeX < 32 && 0 <= relativeZ && relativeZ < 32) {
-				// Serialize chunk to NBT.
-				chunks.put(chunkCoord, parser.writeNBT(this.chunks.get(chunkCoord), chunkCoord.x, chunkCoord.z));
-			}
-		}
-		// Don't write file if there are no chunks.
-		if (chunks.size() < 1) {
-			return;
-		}
-		// Override old file.
-		if (regionFile.exists()) {
-			regionFile.delete();
-		}
-		
-		WorldOutputStream wos = new WorldOutputStream(new FileOutputStream(regionFile), new ChunkCoordinate(xOffset, zOffset));
-		
-		for (ChunkCoordinate coord : chunks.keySet()) {
-			// Convert the coordinates into region space.
-			int relativeX = coord.x - xOffset*32;
-			int relativeZ = coord.z - zOffset*32;
-			
-			wos.write(new ChunkCoordinate(relativeX, relativeZ), chunks.get(coord));
-		}
-		
-		wos.close();
+		writeChunks(regionFile, xOffset, zOffset, parser::writeNBT);
 	}
 
 	/**
@@ -490,42 +880,85 @@ public class BlockWorld implements ChunkedBlockCollection {
 	public void writeEntityFile(File entityFile, int xOffset, int zOffset, int dataVersion) throws IOException {
 		LOGGER.info("Writing entity file: " + entityFile.getName());
 		ChunkParser parser = new ChunkParser(dataVersion);
+		writeChunks(entityFile, xOffset, zOffset, parser::writeEntities);
+	}
 
-		// Keep track of all the chunks that belong in this file.
-		Map<ChunkCoordinate, CompoundTag> entityChunks = new HashMap<>();
-		for (ChunkCoordinate chunkCoord : this.chunks.keySet()) {
-			int relativeX = chunkCoord.x - xOffset * 32;
-			int relativeZ = chunkCoord.z - zOffset * 32;
+	/**
+	 * Streams a chunk's NBT for {@link BlockWorld#writeChunks}.
+	 */
+	private interface ChunkSerializer {
+		void serialize(Chunk chunk, int x, int z, NBTStreamWriter out) throws IOException;
+	}
 
-			if (0 <= relativeX && relativeX < 32 && 0 <= relativeZ && relativeZ < 32) {
-				// Serialize chunk to NBT.
-				entityChunks.put(chunkCoord, parser.writeEntities(this.chunks.get(chunkCoord), chunkCoord.x, chunkCoord.z));
+	/**
+	 * Write the chunks of a region into a region file. Chunks are serialized and
+	 * compressed in parallel, and are streamed to the file as they finish.
+	 * 
+	 * @param file       File to write to. Will replace if already exists. Nothing
+	 *                   is written if the region has no chunks.
+	 * @param xOffset    X coordinate of the region file.
+	 * @param zOffset    Z coordinate of the region file.
+	 * @param serializer Function to convert each chunk to NBT.
+	 */
+	private void writeChunks(File file, int xOffset, int zOffset, ChunkSerializer serializer) throws IOException {
+		// Find all the chunks that belong in this file.
+		Chunk[] regionChunks = new Chunk[RegionFile.REGION_WIDTH * RegionFile.REGION_WIDTH];
+		boolean hasChunks = false;
+		for (int relativeZ = 0; relativeZ < RegionFile.REGION_WIDTH; relativeZ++) {
+			for (int relativeX = 0; relativeX < RegionFile.REGION_WIDTH; relativeX++) {
+				Chunk chunk = getChunk(ChunkCoordinate.pack(xOffset * 32 + relativeX, zOffset * 32 + relativeZ));
+				regionChunks[relativeX + relativeZ * RegionFile.REGION_WIDTH] = chunk;
+				if (chunk != null) hasChunks = true;
 			}
 		}
 		// Don't write file if there are no chunks.
-		if (entityChunks.size() < 1) {
+		if (!hasChunks) {
 			return;
 		}
-		if (entityFile.exists()) {
-			entityFile.delete();
-		}
 		
-		WorldOutputStream wos = new WorldOutputStream(new FileOutputStream(entityFile), new ChunkCoordinate(xOffset, zOffset));
-		
-		for (ChunkCoordinate coord : entityChunks.keySet()) {
-			// Convert the coordinates into region space.
-			int relativeX = coord.x - xOffset*32;
-			int relativeZ = coord.z - zOffset*32;
-			
-			wos.write(new ChunkCoordinate(relativeX, relativeZ), entityChunks.get(coord));
+		try (RegionFileWriter writer = new RegionFileWriter(file)) {
+			for (int i = 0; i < regionChunks.length; i++) {
+				Chunk chunk = regionChunks[i];
+				if (chunk == null) continue;
+				int chunkX = xOffset * 32 + i % RegionFile.REGION_WIDTH;
+				int chunkZ = zOffset * 32 + i / RegionFile.REGION_WIDTH;
+				writer.write(chunkX, chunkZ, out -> serializer.serialize(chunk, chunkX, chunkZ, out));
+			}
 		}
-		
-		wos.close();
 	}
 
 	@Override
 	public Iterator<Vector3ic> iterator() {
-		throw new UnsupportedOperationException("Iterating over entire block world hasn't been implemented yet.");
+		LongObjectMap<Chunk>.Cursor cursor = chunks.cursor();
+		return new Iterator<Vector3ic>() {
+			Iterator<Vector3ic> chunkIterator = Collections.emptyIterator();
+			int startX;
+			int startZ;
+			
+			@Override
+			public boolean hasNext() {
+				while (!chunkIterator.hasNext() && cursor.hasNext()) {
+					chunkIterator = cursor.next().iterator();
+					startX = ChunkCoordinate.unpackX(cursor.key()) * Chunk.WIDTH;
+					startZ = ChunkCoordinate.unpackZ(cursor.key()) * Chunk.LENGTH;
+				}
+				return chunkIterator.hasNext();
+			}
+			
+			@Override
+			public Vector3ic next() {
+				if (!hasNext()) throw new NoSuchElementException();
+				Vector3ic local = chunkIterator.next();
+				return new Vector3i(local.x() + startX, local.y(), local.z() + startZ);
+			}
+		};
+	}
+	
+	@Override
+	public void forEachBlock(BlockVisitor visitor) {
+		chunks.forEach((key, chunk) -> {
+			chunk.forEachBlock(visitor, ChunkCoordinate.unpackX(key) * Chunk.WIDTH, ChunkCoordinate.unpackZ(key) * Chunk.LENGTH);
+		});
 	}
 
 	@Override
@@ -546,11 +979,13 @@ public class BlockWorld implements ChunkedBlockCollection {
 	@Override
 	public Set<Vector3ic> getSections() {
 		Set<Vector3ic> sections = new HashSet<>();
-		for (ChunkCoordinate c : chunks.keySet()) {
+		chunks.forEach((key, chunk) -> {
 			for (int i = 0; i < Chunk.HEIGHT / Section.HEIGHT; i++) {
-				sections.add(new SectionCoordinate(c, i));
+				// Sections are allocated lazily; only list the ones sectionAt will return.
+				if (chunk.sections[i] == null) continue;
+				sections.add(new SectionCoordinate(ChunkCoordinate.unpackX(key), i, ChunkCoordinate.unpackZ(key)));
 			}
-		}
+		});
 		
 		return sections;
 	}
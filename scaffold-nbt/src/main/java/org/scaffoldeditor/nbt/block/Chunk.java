@@ -7,6 +7,7 @@ import java.util.Set;
 import org.joml.Vector3dc;
 import org.joml.Vector3i;
 import org.joml.Vector3ic;
+import org.scaffoldeditor.nbt.util.HashUtils;
 
 import net.querz.nbt.tag.CompoundTag;
 
@@ -20,6 +21,12 @@ public class Chunk implements SizedBlockCollection {
 	public static final int LENGTH = 16;
 	public static final int HEIGHT = 256;
 	
+	/**
+	 * The packed coordinate this chunk was last found at by
+	 * {@link BlockWorld}'s chunk lookup cache.
+	 */
+	volatile long cacheKey;
+	
 
 	/**
 	 * All of the entities in the chunk in pairs where the first item is the entity
@@ -51,26 +58,45 @@ public class Chunk implements SizedBlockCollection {
 	}
 	
 	/**
-	 * All the sections in the chunk.
+	 * All the sections in the chunk. Sections are allocated the first time a
+	 * block is placed in them, so any of these may be <code>null</code>.
 	 */
 	public final Section[] sections = new Section[HEIGHT / Section.HEIGHT];
 	
-	public Chunk() {
-		for (int i = 0; i < sections.length; i++) {
-			sections[i] = new Section();
+	/**
+	 * Get one of the chunk's sections.
+	 * @param index Section index (block Y / section height).
+	 * @return The section, or {@link Section#EMPTY} if it hasn't been allocated.
+	 */
+	public Section getSection(int index) {
+		Section section = sections[index];
+		return section != null ? section : Section.EMPTY;
+	}
+	
+	/**
+	 * Get one of the chunk's sections, allocating it if it doesn't exist.
+	 * @param index Section index (block Y / section height).
+	 * @return The section.
+	 */
+	public Section getOrCreateSection(int index) {
+		Section section = sections[index];
+		if (section == null || section == Section.EMPTY) {
+			section = new Section();
+			sections[index] = section;
 		}
+		return section;
 	}
 	
 	@Override
 	public Block blockAt(int x, int y, int z) {
-		Section section = sections[Math.floorDiv(y, Section.HEIGHT)];
+		Section section = getSection(Math.floorDiv(y, Section.HEIGHT));
 		return section.blockAt(x, y % Section.HEIGHT, z);
 	}
 	
 	@Override
 	public boolean hasBlock(int x, int y, int z) {
-		Section section = sections[Math.floorDiv(y, Section.HEIGHT)];
-		return section.hasBlock(x, y & Section.HEIGHT, z);
+		Section section = getSection(Math.floorDiv(y, Section.HEIGHT));
+		return section.hasBlock(x, y % Section.HEIGHT, z);
 	}
 	
 	/**
@@ -78,12 +104,12 @@ public class Chunk implements SizedBlockCollection {
 	 * @return The owner, or null if there is no owner.
 	 */
 	public Object getOwner(int x, int y, int z) {
-		Section section = sections[Math.floorDiv(y, Section.HEIGHT)];
+		Section section = getSection(Math.floorDiv(y, Section.HEIGHT));
 		return section.getOwner(x, y % Section.HEIGHT, z);
 	}
 	
 	public void clearSection(int index) {
-		if (index < 0 || index > sections.length) {
+		if (index < 0 || index >= sections.length) {
 			throw new IllegalArgumentException("Section index not within range!");
 		}
 		int min = index * Section.HEIGHT;
@@ -104,7 +130,7 @@ public class Chunk implements SizedBlockCollection {
 	 * @return Is a block present?
 	 */
 	public boolean blockExists(int x, int y, int z) {
-		Section section = sections[Math.floorDiv(y, Section.HEIGHT)];
+		Section section = getSection(Math.floorDiv(y, Section.HEIGHT));
 		return section.blockExists(x, y % Section.HEIGHT, z);
 	}
 	
@@ -112,13 +138,67 @@ public class Chunk implements SizedBlockCollection {
 		setBlock(x, y, z, block, null);
 	}
 
+	/**
+	 * Calculate a 64-bit hash of everything in this chunk that gets written to
+	 * file: block states, block entities and entities. The hash is stable between
+	 * runs, so it can be persisted to detect chunks that changed.
+	 */
+	public long contentHash() {
+		long hash = HashUtils.SEED;
+		for (Section section : sections) {
+			hash = HashUtils.mix(hash, section != null && section.hasBlocks() ? section.contentHash() : 0);
+		}
+		
+		// Sum so the result doesn't depend on iteration order.
+		long blockEntityHash = 0;
+		for (Map.Entry<Vector3ic, CompoundTag> entry : blockEntities.entrySet()) {
+			Vector3ic pos = entry.getKey();
+			long entHash = HashUtils.mix(HashUtils.mix(HashUtils.mix(HashUtils.SEED, pos.x()), pos.y()), pos.z());
+			blockEntityHash += HashUtils.mix(entHash, entry.getValue());
+		}
+		hash = HashUtils.mix(hash, blockEntityHash);
+		
+		long entityHash = 0;
+		for (Map.Entry<CompoundTag, Vector3dc> entry : entities.entrySet()) {
+			Vector3dc pos = entry.getValue();
+			long entHash = HashUtils.mix(HashUtils.SEED, Double.doubleToLongBits(pos.x()));
+			entHash = HashUtils.mix(HashUtils.mix(entHash, Double.doubleToLongBits(pos.y())), Double.doubleToLongBits(pos.z()));
+			entityHash += HashUtils.mix(entHash, entry.getKey());
+		}
+		return HashUtils.mix(hash, entityHash);
+	}
+	
 	public void setBlock(int x, int y, int z, Block block, Object owner) {
-		Section section = sections[Math.floorDiv(y, Section.HEIGHT)];
+		int index = Math.floorDiv(y, Section.HEIGHT);
+		if (block == null && sections[index] == null) return;
+		
+		Section section = getOrCreateSection(index);
 		section.setBlock(x, y % Section.HEIGHT, z, block, owner);
 	}
 	
+	@Override
+	public void forEachBlock(BlockVisitor visitor) {
+		forEachBlock(visitor, 0, 0);
+	}
+	
+	/**
+	 * Call a function on every block in the chunk, offsetting the coordinates
+	 * passed to it. Sections that haven't been allocated are skipped.
+	 * @param visitor Function to call.
+	 * @param offsetX Amount to add to each X coordinate.
+	 * @param offsetZ Amount to add to each Z coordinate.
+	 */
+	public void forEachBlock(BlockVisitor visitor, int offsetX, int offsetZ) {
+		for (int i = 0; i < sections.length; i++) {
+			Section section = sections[i];
+			if (section != null) {
+				section.forEachBlock(visitor, offsetX, i * Section.HEIGHT, offsetZ);
+			}
+		}
+	}
+	
 	public void setOwner(int x, int y, int z, Object owner) {
-		Section section = sections[Math.floorDiv(y, Section.HEIGHT)];
+		Section section = getOrCreateSection(Math.floorDiv(y, Section.HEIGHT));
 		section.setOwner(x, y % Section.HEIGHT, z, owner);
 	}
 
@@ -0,0 +1,515 @@
+package org.scaffoldeditor.nbt.block;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.joml.Vector3i;
+import org.joml.Vector3ic;
+import org.scaffoldeditor.nbt.block.WorldMath.ChunkCoordinate;
+import org.scaffoldeditor.nbt.block.WorldMath.SectionCoordinate;
+import org.scaffoldeditor.nbt.io.ChunkParser;
+import org.scaffoldeditor.nbt.io.RegionFile;
+import org.scaffoldeditor.nbt.util.LongObjectMap;
+
+import net.querz.nbt.tag.CompoundTag;
+
+/**
+ * A read-only view of a Minecraft world that loads chunks from its region files
+ * the first time they're accessed, rather than all up front like
+ * {@link BlockWorld#deserialize(File)}. Only a bounded amount of decoded chunks
+ * are kept in memory; the least recently used ones are evicted first.
+ * <br>
+ * Sections and blocks are iterated chunk by chunk in file order, so consumers
+ * that walk the whole world only ever need one chunk loaded at a time.
+ * <br>
+ * This class is thread-safe. Chunks are decoded outside of the world's lock,
+ * so threads reading different chunks don't wait on each other.
+ */
+public class LazyBlockWorld implements ChunkedBlockCollection, Closeable {
+
+	/**
+	 * The default amount of decoded chunks to keep in memory.
+	 */
+	public static final int DEFAULT_MAX_LOADED_CHUNKS = 256;
+
+	/**
+	 * The amount of region files to keep open at once.
+	 */
+	private static final int MAX_OPEN_REGIONS = 16;
+
+	private static final int SECTIONS_PER_CHUNK = Chunk.HEIGHT / Section.HEIGHT;
+
+	private static final Logger LOGGER = LogManager.getLogger();
+
+	private final File regionFolder;
+
+	/**
+	 * Region files by their packed region coordinate.
+	 */
+	private final LongObjectMap<File> regionFiles = new LongObjectMap<>();
+
+	/**
+	 * The packed coordinate of every chunk in the world, grouped by region and in
+	 * header order.
+	 */
+	private final long[] chunkKeys;
+
+	/**
+	 * {@link #chunkKeys}, sorted for searching.
+	 */
+	private final long[] sortedChunkKeys;
+
+	private final Map<Long, RegionFile> openRegions = new LinkedHashMap<>(MAX_OPEN_REGIONS, .75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, RegionFile> eldest) {
+			if (size() <= MAX_OPEN_REGIONS) return false;
+			try {
+				eldest.getValue().close();
+			} catch (IOException e) {
+				LOGGER.warn("Unable to close region file " + eldest.getValue().getFile(), e);
+			}
+			return true;
+		}
+	};
+
+	/**
+	 * A chunk in the cache. Cached chunks form a linked list from most to least
+	 * recently used.
+	 */
+	private static final class LoadedChunk {
+		final long key;
+		/** Completed once the chunk has been decoded. */
+		final CompletableFuture<Chunk> chunk = new CompletableFuture<>();
+		LoadedChunk previous;
+		LoadedChunk next;
+
+		LoadedChunk(long key) {
+			this.key = key;
+		}
+	}
+
+	private final LongObjectMap<LoadedChunk> loadedChunks;
+	private final int maxLoadedChunks;
+	private LoadedChunk mostRecent;
+	private LoadedChunk leastRecent;
+
+	private boolean closed;
+
+	/**
+	 * Open a world with the default chunk limit.
+	 * @param regionFolder (Absolute) path to region folder within world folder.
+	 * @throws IOException           If any of the region headers can't be read.
+	 * @throws FileNotFoundException If the region folder doesn't exist.
+	 */
+	public LazyBlockWorld(File regionFolder) throws FileNotFoundException, IOException {
+		this(regionFolder, DEFAULT_MAX_LOADED_CHUNKS);
+	}
+
+	/**
+	 * Open a world. Only the headers of the region files are read until chunks
+	 * are accessed.
+	 *
+	 * @param regionFolder    (Absolute) path to region folder within world folder.
+	 * @param maxLoadedChunks Maximum amount of decoded chunks to keep in memory.
+	 * @throws IOException           If any of the region headers can't be read.
+	 * @throws FileNotFoundException If the region folder doesn't exist.
+	 */
+	public LazyBlockWorld(File regionFolder, int maxLoadedChunks) throws FileNotFoundException, IOException {
+		if (maxLoadedChunks < 1) {
+			throw new IllegalArgumentException("Must be able to load at least one chunk!");
+		}
+		File[] files = regionFolder.listFiles();
+		if (files == null) {
+			throw new FileNotFoundException("Region folder " + regionFolder + " does not exist!");
+		}
+		this.regionFolder = regionFolder;
+
+		this.loadedChunks = new LongObjectMap<>(maxLoadedChunks + 1);
+		this.maxLoadedChunks = maxLoadedChunks;
+
+		// Sort the regions so iteration order doesn't depend on the file system.
+		long[] regionKeys = new long[files.length];
+		int regionCount = 0;
+		for (File file : files) {
+			String[] parts = file.getName().split("\\.");
+			if (parts.length != 4 || !parts[0].equals("r") || !parts[3].equals("mca")) continue;
+			try {
+				long key = ChunkCoordinate.pack(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+				regionFiles.put(key, file);
+				regionKeys[regionCount++] = key;
+			} catch (NumberFormatException e) {
+				continue;
+			}
+		}
+		regionKeys = Arrays.copyOf(regionKeys, regionCount);
+		Arrays.sort(regionKeys);
+
+		long[] keys = new long[0];
+		int chunkCount = 0;
+		for (long regionKey : regionKeys) {
+			int regionX = ChunkCoordinate.unpackX(regionKey);
+			int regionZ = ChunkCoordinate.unpackZ(regionKey);
+			try (RegionFile region = new RegionFile(regionFiles.get(regionKey))) {
+				keys = Arrays.copyOf(keys, chunkCount + RegionFile.REGION_WIDTH * RegionFile.REGION_WIDTH);
+				for (int z = 0; z < RegionFile.REGION_WIDTH; z++) {
+					for (int x = 0; x < RegionFile.REGION_WIDTH; x++) {
+						if (region.hasChunk(x, z)) {
+							keys[chunkCount++] = ChunkCoordinate.pack(regionX * RegionFile.REGION_WIDTH + x,
+									regionZ * RegionFile.REGION_WIDTH + z);
+						}
+					}
+				}
+			}
+		}
+		this.chunkKeys = Arrays.copyOf(keys, chunkCount);
+		this.sortedChunkKeys = chunkKeys.clone();
+		Arrays.sort(sortedChunkKeys);
+		LOGGER.info("Opened world at " + regionFolder + " with " + chunkCount + " chunk(s).");
+	}
+
+	/**
+	 * Get the region folder this world reads from.
+	 */
+	public File getRegionFolder() {
+		return regionFolder;
+	}
+
+	/**
+	 * Get the amount of chunks in the world, whether or not they're loaded.
+	 */
+	public int getChunkCount() {
+		return chunkKeys.length;
+	}
+
+	/**
+	 * Get the amount of chunks that are currently decoded in memory.
+	 */
+	public synchronized int getLoadedChunkCount() {
+		return loadedChunks.size();
+	}
+
+	/**
+	 * Get the chunk at a specific X and Z coordinate, loading it if needed.
+	 * Coordinates are chunk coordinates (block coordinate / chunk size).
+	 * <br>
+	 * The returned chunk may be evicted from the cache at any time, so changes
+	 * made to it aren't guaranteed to persist.
+	 *
+	 * @param x X coordinate.
+	 * @param z Z coordinate.
+	 * @return Chunk at coordinates, or <code>null</code> if it doesn't exist.
+	 * @throws UncheckedIOException If the chunk can't be read.
+	 */
+	public Chunk chunkAt(int x, int z) {
+		return getChunk(ChunkCoordinate.pack(x, z));
+	}
+
+	private Chunk getChunk(long key) {
+		LoadedChunk loaded;
+		RegionFile region = null;
+		synchronized (this) {
+			if (closed) {
+				throw new IllegalStateException("World has been closed.");
+			}
+			loaded = loadedChunks.get(key);
+			if (loaded != null) {
+				unlink(loaded);
+				link(loaded);
+			} else {
+				int x = ChunkCoordinate.unpackX(key);
+				int z = ChunkCoordinate.unpackZ(key);
+				try {
+					region = getRegion(x >> 5, z >> 5);
+				} catch (IOException e) {
+					throw new UncheckedIOException("Unable to read chunk [" + x + ", " + z + "]", e);
+				}
+				if (region == null || !region.hasChunk(x, z)) {
+					return null;
+				}
+
+				loaded = new LoadedChunk(key);
+				loadedChunks.put(key, loaded);
+				link(loaded);
+				if (loadedChunks.size() > maxLoadedChunks) {
+					loadedChunks.remove(leastRecent.key);
+					unlink(leastRecent);
+				}
+			}
+		}
+
+		// Decode outside the lock. Other threads asking for this chunk wait on its future.
+		if (region != null) {
+			load(loaded, region);
+		}
+		try {
+			return loaded.chunk.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw e;
+		}
+	}
+
+	private void load(LoadedChunk loaded, RegionFile region) {
+		int x = ChunkCoordinate.unpackX(loaded.key);
+		int z = ChunkCoordinate.unpackZ(loaded.key);
+		Throwable exception;
+		try {
+			CompoundTag chunkMap = region.readChunk(x, z);
+			loaded.chunk.complete(ChunkParser.parseNBT(chunkMap.getCompoundTag("Level"), chunkMap.getInt("DataVersion")));
+			return;
+		} catch (IOException e) {
+			exception = new UncheckedIOException("Unable to read chunk [" + x + ", " + z + "]", e);
+		} catch (RuntimeException | Error e) {
+			exception = e;
+		}
+
+		// Don't cache the failure; the next access tries again.
+		synchronized (this) {
+			if (loadedChunks.get(loaded.key) == loaded) {
+				loadedChunks.remove(loaded.key);
+				unlink(loaded);
+			}
+		}
+		loaded.chunk.completeExceptionally(exception);
+	}
+
+	/**
+	 * Add a chunk to the front of the recently used list.
+	 */
+	private void link(LoadedChunk loaded) {
+		loaded.previous = null;
+		loaded.next = mostRecent;
+		if (mostRecent != null) mostRecent.previous = loaded;
+		mostRecent = loaded;
+		if (leastRecent == null) leastRecent = loaded;
+	}
+
+	/**
+	 * Remove a chunk from the recently used list.
+	 */
+	private void unlink(LoadedChunk loaded) {
+		if (loaded.previous != null) loaded.previous.next = loaded.next;
+		else mostRecent = loaded.next;
+		if (loaded.next != null) loaded.next.previous = loaded.previous;
+		else leastRecent = loaded.previous;
+		loaded.previous = null;
+		loaded.next = null;
+	}
+
+	private RegionFile getRegion(int regionX, int regionZ) throws IOException {
+		long key = ChunkCoordinate.pack(regionX, regionZ);
+		RegionFile region = openRegions.get(key);
+		if (region == null) {
+			File file = regionFiles.get(key);
+			if (file == null) return null;
+			region = new RegionFile(file);
+			openRegions.put(key, region);
+		}
+		return region;
+	}
+
+	@Override
+	public Block blockAt(int x, int y, int z) {
+		if (y < 0 || y >= Chunk.HEIGHT) {
+			return null;
+		}
+
+		Chunk chunk = getChunk(ChunkCoordinate.pack(x >> 4, z >> 4));
+		if (chunk == null) {
+			return null;
+		}
+
+		return chunk.blockAt(x & (Chunk.WIDTH - 1), y, z & (Chunk.LENGTH - 1));
+	}
+
+	@Override
+	public boolean hasBlock(int x, int y, int z) {
+		if (y < 0 || y >= Chunk.HEIGHT) {
+			return false;
+		}
+
+		Chunk chunk = getChunk(ChunkCoordinate.pack(x >> 4, z >> 4));
+		return chunk != null && chunk.hasBlock(x & (Chunk.WIDTH - 1), y, z & (Chunk.LENGTH - 1));
+	}
+
+	@Override
+	public CompoundTag blockEntityAt(Vector3ic vec) {
+		Chunk chunk = getChunk(ChunkCoordinate.pack(vec.x() >> 4, vec.z() >> 4));
+		if (chunk == null) return null;
+		return chunk.blockEntityAt(new Vector3i(vec.x() & (Chunk.WIDTH - 1), vec.y(), vec.z() & (Chunk.LENGTH - 1)));
+	}
+
+	/**
+	 * Get the locations of every block entity in the world. This has to load
+	 * every chunk, so it's very slow on large worlds.
+	 */
+	@Override
+	public Set<Vector3ic> getBlockEntities() {
+		Set<Vector3ic> blockEntities = new HashSet<>();
+		for (long key : chunkKeys) {
+			Chunk chunk = getChunk(key);
+			if (chunk == null) continue;
+			int startX = ChunkCoordinate.unpackX(key) * Chunk.WIDTH;
+			int startZ = ChunkCoordinate.unpackZ(key) * Chunk.LENGTH;
+			for (Vector3ic pos : chunk.getBlockEntities()) {
+				blockEntities.add(new Vector3i(pos.x() + startX, pos.y(), pos.z() + startZ));
+			}
+		}
+		return blockEntities;
+	}
+
+	@Override
+	public Section sectionAt(int x, int y, int z) {
+		if (y < 0 || y >= SECTIONS_PER_CHUNK) return null;
+		Chunk chunk = chunkAt(x, z);
+		// getSections lists every section of a stored chunk, including unallocated ones.
+		return chunk != null ? chunk.getSection(y) : null;
+	}
+
+	@Override
+	public int getSectionWidth() {
+		return Chunk.WIDTH;
+	}
+
+	@Override
+	public int getSectionLength() {
+		return Chunk.LENGTH;
+	}
+
+	@Override
+	public int getSectionHeight() {
+		return Section.HEIGHT;
+	}
+
+	/**
+	 * Get a set of all the world's sections. The set is backed by the region
+	 * headers and doesn't load any chunks. It iterates chunk by chunk, so
+	 * calling {@link #sectionAt} on each section in order loads each chunk once.
+	 */
+	@Override
+	public Set<Vector3ic> getSections() {
+		return new AbstractSet<Vector3ic>() {
+
+			@Override
+			public Iterator<Vector3ic> iterator() {
+				return new Iterator<Vector3ic>() {
+					int index = 0;
+
+					@Override
+					public boolean hasNext() {
+						return index < chunkKeys.length * SECTIONS_PER_CHUNK;
+					}
+
+					@Override
+					public Vector3ic next() {
+						if (!hasNext()) throw new NoSuchElementException();
+						long key = chunkKeys[index / SECTIONS_PER_CHUNK];
+						int y = index % SECTIONS_PER_CHUNK;
+						index++;
+						return new SectionCoordinate(ChunkCoordinate.unpackX(key), y, ChunkCoordinate.unpackZ(key));
+					}
+				};
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				if (!(o instanceof Vector3ic)) return false;
+				Vector3ic vec = (Vector3ic) o;
+				if (vec.y() < 0 || vec.y() >= SECTIONS_PER_CHUNK) return false;
+				return hasChunk(vec.x(), vec.z());
+			}
+
+			@Override
+			public int size() {
+				return chunkKeys.length * SECTIONS_PER_CHUNK;
+			}
+		};
+	}
+
+	/**
+	 * Check whether the world has a chunk without loading it.
+	 * @param x Chunk X.
+	 * @param z Chunk Z.
+	 */
+	public boolean hasChunk(int x, int z) {
+		return Arrays.binarySearch(sortedChunkKeys, ChunkCoordinate.pack(x, z)) >= 0;
+	}
+
+	@Override
+	public Iterator<Vector3ic> iterator() {
+		return new Iterator<Vector3ic>() {
+			Iterator<Vector3ic> chunkIterator = Collections.emptyIterator();
+			int chunkIndex = 0;
+			int startX;
+			int startZ;
+
+			@Override
+			public boolean hasNext() {
+				while (!chunkIterator.hasNext() && chunkIndex < chunkKeys.length) {
+					long key = chunkKeys[chunkIndex++];
+					Chunk chunk = getChunk(key);
+					if (chunk == null) continue;
+					chunkIterator = chunk.iterator();
+					startX = ChunkCoordinate.unpackX(key) * Chunk.WIDTH;
+					startZ = ChunkCoordinate.unpackZ(key) * Chunk.LENGTH;
+				}
+				return chunkIterator.hasNext();
+			}
+
+			@Override
+			public Vector3ic next() {
+				if (!hasNext()) throw new NoSuchElementException();
+				Vector3ic local = chunkIterator.next();
+				return new Vector3i(local.x() + startX, local.y(), local.z() + startZ);
+			}
+		};
+	}
+
+	@Override
+	public void forEachBlock(BlockVisitor visitor) {
+		for (long key : chunkKeys) {
+			Chunk chunk = getChunk(key);
+			if (chunk == null) continue;
+			chunk.forEachBlock(visitor, ChunkCoordinate.unpackX(key) * Chunk.WIDTH, ChunkCoordinate.unpackZ(key) * Chunk.LENGTH);
+		}
+	}
+
+	/**
+	 * Close all the region files and unload all chunks.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		closed = true;
+		loadedChunks.clear();
+		mostRecent = null;
+		leastRecent = null;
+		IOException exception = null;
+		for (RegionFile region : openRegions.values()) {
+			try {
+				region.close();
+			} catch (IOException e) {
+				if (exception == null) exception = e;
+			}
+		}
+		openRegions.clear();
+		if (exception != null) throw exception;
+	}
+}
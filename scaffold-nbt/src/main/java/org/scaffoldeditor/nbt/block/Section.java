@@ -1,10 +1,14 @@
 package org.scaffoldeditor.nbt.block;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.joml.Vector3i;
+import org.scaffoldeditor.nbt.util.HashUtils;
+import org.scaffoldeditor.nbt.util.PackedIntArray;
 
 /**
  * Represents a subchunk
@@ -15,58 +19,254 @@ public class Section implements SizedBlockCollection {
 	public static final int HEIGHT = 16;
 	
 	/**
-	 * A list of all the block types that are in the section.
+	 * The amount of blocks in a section.
 	 */
-	private List<Block> palette = new ArrayList<Block>();
+	public static final int VOLUME = Chunk.WIDTH * HEIGHT * Chunk.LENGTH;
+	
+	/**
+	 * The smallest amount of bits a block index will be packed into.
+	 */
+	private static final int MIN_BITS = 4;
+	
+	/**
+	 * A shared, immutable section without any blocks. Attempting to modify it
+	 * will throw an {@link UnsupportedOperationException}.
+	 */
+	public static final Section EMPTY = new Section(true);
+	
+	/**
+	 * The IDs of all the block states that are in the section.
+	 */
+	private int[] palette = new int[16];
+	private int paletteSize = 0;
 	
 	/**
 	 * A list of all of the block owners in the section.
 	 */
 	private List<Object> ownerPalette = new ArrayList<>();
 	
+	// Blocks tend to be placed in runs of the same state and owner, so remember the last lookups.
+	private int lastState = -1;
+	private int lastStateIndex;
+	private Object lastOwner;
+	private int lastOwnerIndex;
+	
+	/**
+	 * All blocks in the section in YZX order, stored as their palette index + 1.
+	 * 0 means there's no block. <code>null</code> while the section is uniform.
+	 */
+	private PackedIntArray blocks;
+	
 	/**
-	 * All blocks in the chunk, listed by their palette index.
+	 * If {@link #blocks} is <code>null</code>, the value of every block in the
+	 * section.
 	 */
-	private short[][][] blocks;
+	private int uniformValue = 0;
 	
 	/**
-	 * All the block owners, listed by their palette index.
+	 * The amount of non-air blocks in the section.
 	 */
-	private byte[][][] owners;
+	private int nonAirCount = 0;
 	
+	private final boolean immutable;
+	
+	/**
+	 * All the block owners in YZX order, stored as their palette index + 1. 0
+	 * means there's no owner. <code>null</code> until an owner is assigned.
+	 */
+	private PackedIntArray owners;
+	
+	/**
+	 * Create an empty section. Empty sections don't allocate any block storage
+	 * until a block is set.
+	 */
 	public Section() {
-		blocks = new short[Chunk.WIDTH][HEIGHT][Chunk.LENGTH];
-		owners = new byte[Chunk.WIDTH][HEIGHT][Chunk.LENGTH];
-		for (int y = 0; y < HEIGHT; y++) {
-			for (int z = 0; z < Chunk.LENGTH; z++) {
-				for (int x = 0; x < Chunk.WIDTH; x++) {
-					blocks[x][y][z] = -1;
-					owners[x][y][z] = -1;
-				}
+		this(false);
+	}
+	
+	private Section(boolean immutable) {
+		this.immutable = immutable;
+		paletteIndexOf(BlockState.AIR.getId()); // 0 in the palette is always air.
+	}
+	
+	/**
+	 * Create a section that's completely filled with one block state.
+	 * @param state Block state to fill with.
+	 * @param owner Owner to assign the blocks to. May be <code>null</code>.
+	 */
+	public Section(BlockState state, Object owner) {
+		this();
+		fill(state, owner);
+	}
+	
+	/**
+	 * Create a section from a palette and a list of indices in that palette.
+	 *
+	 * @param palette Palette to use. Doesn't need to start with air.
+	 * @param indices Palette index of every block in the section in YZX order.
+	 *                Negative values mean there's no block.
+	 */
+	public Section(List<Block> palette, int[] indices) {
+		this(palette.stream().mapToInt(block -> block.getState().getId()).toArray(), indices);
+	}
+	
+	/**
+	 * Create a section from a palette of block state IDs and a list of indices in
+	 * that palette.
+	 * 
+	 * @param statePalette IDs of the block states in the palette. Doesn't need to
+	 *                     start with air.
+	 * @param indices      Palette index of every block in the section in YZX
+	 *                     order. Negative values mean there's no block.
+	 * @see BlockState#getId()
+	 */
+	public Section(int[] statePalette, int[] indices) {
+		this();
+		if (indices.length != VOLUME) {
+			throw new IllegalArgumentException("Sections must have exactly " + VOLUME + " blocks!");
+		}
+		
+		// Map the palette onto our own, which always starts with air.
+		int[] remap = new int[statePalette.length];
+		for (int i = 0; i < remap.length; i++) {
+			remap[i] = paletteIndexOf(statePalette[i]);
+		}
+		
+		boolean uniform = true;
+		for (int i = 1; i < VOLUME && uniform; i++) {
+			uniform = indices[i] == indices[0] || (indices[i] < 0 && indices[0] < 0);
+		}
+		if (uniform) {
+			uniformValue = indices[0] >= 0 ? remap[indices[0]] + 1 : 0;
+			nonAirCount = uniformValue > 1 ? VOLUME : 0;
+			return;
+		}
+		
+		blocks = new PackedIntArray(VOLUME, Math.max(MIN_BITS, PackedIntArray.bitsFor(paletteSize)));
+		for (int i = 0; i < VOLUME; i++) {
+			int index = indices[i];
+			if (index >= 0) {
+				blocks.set(i, remap[index] + 1);
+				if (remap[index] > 0) nonAirCount++;
 			}
 		}
-		palette.add(new Block("minecraft:air")); // 0 in the palette is always air.
 	}
-
+	
+	/**
+	 * Create a section from a palette of block state IDs and a packed array of
+	 * indices in that palette. The indices are remapped in place, and the
+	 * section takes ownership of the array; it must not be used afterwards.
+	 * 
+	 * @param statePalette IDs of the block states in the palette. Doesn't need to
+	 *                     start with air.
+	 * @param indices      Palette index of every block in the section in YZX
+	 *                     order.
+	 * @throws IllegalArgumentException If the array is the wrong size or an index
+	 *                                  is outside of the palette.
+	 * @see BlockState#getId()
+	 */
+	public Section(int[] statePalette, PackedIntArray indices) {
+		this();
+		if (indices.size() != VOLUME) {
+			throw new IllegalArgumentException("Sections must have exactly " + VOLUME + " blocks!");
+		}
+		
+		int[] remap = new int[statePalette.length];
+		for (int i = 0; i < remap.length; i++) {
+			remap[i] = paletteIndexOf(statePalette[i]);
+		}
+		
+		int first = indices.get(0);
+		boolean uniform = true;
+		for (int i = 0; i < VOLUME; i++) {
+			int index = indices.get(i);
+			if (index >= remap.length) {
+				throw new IllegalArgumentException("Palette index " + index + " out of bounds for length " + remap.length);
+			}
+			if (index != first) uniform = false;
+			if (remap[index] > 0) nonAirCount++;
+			indices.set(i, remap[index] + 1);
+		}
+		
+		if (uniform) {
+			uniformValue = remap[first] + 1;
+		} else {
+			blocks = indices;
+		}
+	}
+	
+	/**
+	 * Get the index of a block in the section's block array.
+	 * @param x X coordinate.
+	 * @param y Y coordinate.
+	 * @param z Z coordinate.
+	 * @return Index in YZX order.
+	 */
+	public static int index(int x, int y, int z) {
+		return y << 8 | z << 4 | x;
+	}
+	
+	private static boolean inBounds(int x, int y, int z) {
+		return (x >= 0 && x < Chunk.WIDTH && y >= 0 && y < HEIGHT && z >= 0 && z < Chunk.LENGTH);
+	}
+	
+	private int valueAt(int index) {
+		return blocks == null ? uniformValue : blocks.get(index);
+	}
+	
+	private void setValue(int index, int value) {
+		int old;
+		if (blocks == null) {
+			if (value == uniformValue) return;
+			// Switch out of uniform mode.
+			blocks = new PackedIntArray(VOLUME, Math.max(MIN_BITS, PackedIntArray.bitsFor(Math.max(value, uniformValue))));
+			if (uniformValue != 0) blocks.fill(uniformValue);
+			old = uniformValue;
+		} else {
+			old = blocks.get(index);
+		}
+		blocks.set(index, value);
+		
+		if (old > 1) nonAirCount--;
+		if (value > 1) nonAirCount++;
+	}
+	
+	private void checkMutable() {
+		if (immutable) {
+			throw new UnsupportedOperationException("This section is immutable!");
+		}
+	}
+	
 	@Override
 	public Block blockAt(int x, int y, int z) {
-		try {
-			short paletteIndex = blocks[x][y][z];
-			if (paletteIndex == -1) {
-				return null;
-			} else {
-				return palette.get(paletteIndex);
-			}
-			
-		} catch (IndexOutOfBoundsException e) {
+		if (!inBounds(x, y, z)) {
 			LogManager.getLogger().error("Block "+x+" "+y+" "+z+" is out of range!");
 			return null;
 		}
+		
+		int paletteIndex = valueAt(index(x, y, z)) - 1;
+		if (paletteIndex == -1) {
+			return null;
+		} else {
+			return BlockState.byId(palette[paletteIndex]).toBlock();
+		}
+	}
+	
+	/**
+	 * Get the block state at a particular location.
+	 * @param x X coordinate.
+	 * @param y Y coordinate.
+	 * @param z Z coordinate.
+	 * @return The block state, or <code>null</code> if there's no block.
+	 */
+	public BlockState stateAt(int x, int y, int z) {
+		int paletteIndex = valueAt(index(x, y, z)) - 1;
+		return paletteIndex == -1 ? null : BlockState.byId(palette[paletteIndex]);
 	}
 	
 	@Override
 	public boolean hasBlock(int x, int y, int z) {
-		return blocks[x][y][z] >= 0;
+		return inBounds(x, y, z) && valueAt(index(x, y, z)) > 0;
 	}
 	
 	/**
@@ -74,18 +274,18 @@ public class Section implements SizedBlockCollection {
 	 * @return The owner, or null if there is no owner.
 	 */
 	public Object getOwner(int x, int y, int z) {
-		try {
-			byte paletteIndex = owners[x][y][z];
-			if (paletteIndex == -1) {
-				return null;
-			} else {
-				return ownerPalette.get(paletteIndex);
-			}
-			
-		} catch (IndexOutOfBoundsException e) {
+		if (!inBounds(x, y, z)) {
 			LogManager.getLogger().error("Block "+x+" "+y+" "+z+" is out of range!");
 			return null;
 		}
+		if (owners == null) return null;
+		
+		int paletteIndex = owners.get(index(x, y, z)) - 1;
+		if (paletteIndex == -1) {
+			return null;
+		} else {
+			return ownerPalette.get(paletteIndex);
+		}
 	}
 	
 	/**
@@ -96,7 +296,7 @@ public class Section implements SizedBlockCollection {
 	 * @return Is a block present?
 	 */
 	public boolean blockExists(int x, int y, int z) {
-		return (blocks[x][y][z] > 0);
+		return (valueAt(index(x, y, z)) > 1);
 	}
 	
 	public void setBlock(int x, int y, int z, Block block) {
@@ -104,41 +304,290 @@ public class Section implements SizedBlockCollection {
 	}
 	
 	public void setBlock(int x, int y, int z, Block block, Object owner) {
-		if (!palette.contains(block)) {
-			palette.add(block); // Make sure block is in palette
+		setBlock(x, y, z, block != null ? block.getState() : null, owner);
+	}
+	
+	/**
+	 * Set the block state at a particular location.
+	 * @param x X coordinate.
+	 * @param y Y coordinate.
+	 * @param z Z coordinate.
+	 * @param state Block state to set. <code>null</code> removes the block.
+	 * @param owner Owner to assign the block to. May be <code>null</code>.
+	 */
+	public void setBlock(int x, int y, int z, BlockState state, Object owner) {
+		checkMutable();
+		setValue(index(x, y, z), state != null ? paletteIndexOf(state.getId()) + 1 : 0);
+		
+		if (owner != null) {
+			setOwner(x, y, z, owner);
+		}
+	}
+	
+	public void setOwner(int x, int y, int z, Object owner) {
+		checkMutable();
+		setOwnerAt(index(x, y, z), owner);
+	}
+	
+	private void setOwnerAt(int index, Object owner) {
+		int paletteIndex;
+		if (owner == lastOwner) {
+			paletteIndex = lastOwnerIndex;
+		} else {
+			paletteIndex = ownerPalette.indexOf(owner);
+			if (paletteIndex < 0) {
+				paletteIndex = ownerPalette.size();
+				ownerPalette.add(owner); // Make sure owner is in palette
+			}
+			lastOwner = owner;
+			lastOwnerIndex = paletteIndex;
 		}
 		
-		// Find block in palette
-		short paletteIndex = 0;
-		for (short i = 0; i < palette.size(); i++) {
-			if (palette.get(i).equals(block)) {
-				paletteIndex = i;
-				break;
+		if (owners == null) {
+			owners = new PackedIntArray(VOLUME, PackedIntArray.bitsFor(paletteIndex + 1));
+		}
+		owners.set(index, paletteIndex + 1);
+	}
+	
+	/**
+	 * Copy the blocks from another section into this one. The source palette is
+	 * mapped onto this section's palette once, rather than looking up every
+	 * block individually.
+	 * 
+	 * @param source   Section to copy from.
+	 * @param override Should override existing blocks?
+	 * @param placeAir If this and <code>override</code> are true, air blocks in
+	 *                 the source will override existing blocks.
+	 * @param owner    Owner to assign copied blocks to. May be <code>null</code>.
+	 */
+	public void copyFrom(Section source, boolean override, boolean placeAir, Object owner) {
+		checkMutable();
+		// Air is always palette index 0, so its stored value is 1.
+		int minValue = placeAir ? 1 : 2;
+		
+		// A uniform source that replaces everything can be copied without touching individual blocks.
+		if (source.blocks == null && override && source.uniformValue >= minValue && (owner != null || owners == null)) {
+			fill(BlockState.byId(source.palette[source.uniformValue - 1]), owner);
+			return;
+		}
+		
+		int[] remap = new int[source.paletteSize];
+		for (int i = 0; i < VOLUME; i++) {
+			int value = source.valueAt(i);
+			if (value < minValue) continue;
+			if (!override && valueAt(i) > 1) continue;
+			
+			int mapped = remap[value - 1];
+			if (mapped == 0) {
+				mapped = paletteIndexOf(source.palette[value - 1]) + 1;
+				remap[value - 1] = mapped;
 			}
+			setValue(i, mapped);
+			if (owner != null) {
+				setOwnerAt(i, owner);
+			}
+		}
+	}
+	
+	/**
+	 * Place every block from another section into this one, as if they had been
+	 * set here directly. Air in the source replaces existing blocks, and blocks
+	 * with an owner in the source take that owner; the rest keep their current
+	 * owner.
+	 * 
+	 * @param source Section to merge.
+	 */
+	public void mergeFrom(Section source) {
+		checkMutable();
+		if (source.blocks == null && source.uniformValue > 0 && source.owners == null && owners == null) {
+			fill(BlockState.byId(source.palette[source.uniformValue - 1]), null);
+			return;
 		}
 		
-		blocks[x][y][z] = paletteIndex;
+		int[] remap = new int[source.paletteSize];
+		for (int i = 0; i < VOLUME; i++) {
+			int value = source.valueAt(i);
+			if (value == 0) continue;
+			
+			int mapped = remap[value - 1];
+			if (mapped == 0) {
+				mapped = paletteIndexOf(source.palette[value - 1]) + 1;
+				remap[value - 1] = mapped;
+			}
+			setValue(i, mapped);
+			if (source.owners != null) {
+				int owner = source.owners.get(i);
+				if (owner > 0) {
+					setOwnerAt(i, source.ownerPalette.get(owner - 1));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Replace every block in the section with a single block state. The section
+	 * will be stored in uniform mode, which doesn't need any per-block storage.
+	 * 
+	 * @param state Block state to fill with. <code>null</code> removes all the
+	 *              blocks.
+	 * @param owner Owner to assign the blocks to. May be <code>null</code>.
+	 */
+	public void fill(BlockState state, Object owner) {
+		checkMutable();
+		paletteSize = 0;
+		lastState = -1;
+		paletteIndexOf(BlockState.AIR.getId());
 		
+		blocks = null;
+		uniformValue = state != null ? paletteIndexOf(state.getId()) + 1 : 0;
+		nonAirCount = uniformValue > 1 ? VOLUME : 0;
+		
+		ownerPalette.clear();
+		lastOwner = null;
+		owners = null;
 		if (owner != null) {
-			setOwner(x, y, z, owner);
+			ownerPalette.add(owner);
+			owners = new PackedIntArray(VOLUME, 1);
+			owners.fill(1);
 		}
 	}
 	
-	public void setOwner(int x, int y, int z, Object owner) {
-		if (!ownerPalette.contains(owner)) {
-			ownerPalette.add(owner); // Make sure block is in palette
+	/**
+	 * Check whether every block in the section is stored as the same value
+	 * without any per-block storage.
+	 */
+	public boolean isUniform() {
+		return blocks == null;
+	}
+	
+	/**
+	 * Check if the section contains any non-air blocks.
+	 */
+	public boolean hasBlocks() {
+		return nonAirCount > 0;
+	}
+	
+	/**
+	 * Get the amount of non-air blocks in the section. This is tracked as blocks
+	 * are set, so it doesn't need to scan the section.
+	 */
+	public int getNonAirCount() {
+		return nonAirCount;
+	}
+	
+	/**
+	 * Calculate a 64-bit hash of the block states in the section. The hash is
+	 * stable between runs and doesn't depend on how the section is stored.
+	 * Missing blocks hash the same as air, and owners aren't included.
+	 */
+	public long contentHash() {
+		long[] stateHashes = new long[paletteSize + 1];
+		stateHashes[0] = BlockState.AIR.contentHash();
+		for (int i = 0; i < paletteSize; i++) {
+			stateHashes[i + 1] = BlockState.byId(palette[i]).contentHash();
 		}
 		
-		// Find block in palette
-		byte paletteIndex = 0;
-		for (byte i = 0; i < ownerPalette.size(); i++) {
-			if (ownerPalette.get(i).equals(owner)) {
-				paletteIndex = i;
+		long hash = HashUtils.SEED;
+		for (int i = 0; i < VOLUME; i++) {
+			hash = HashUtils.mix(hash, stateHashes[valueAt(i)]);
+		}
+		return hash;
+	}
+	
+	/**
+	 * Find a block state in the palette, adding it if it isn't there.
+	 * @param stateId ID of the block state to find.
+	 * @return Palette index.
+	 */
+	private int paletteIndexOf(int stateId) {
+		if (stateId == lastState) {
+			return lastStateIndex;
+		}
+		
+		int index = -1;
+		for (int i = 0; i < paletteSize; i++) {
+			if (palette[i] == stateId) {
+				index = i;
 				break;
 			}
 		}
+		if (index < 0) {
+			// Make sure block is in palette
+			if (paletteSize == palette.length) {
+				palette = Arrays.copyOf(palette, paletteSize * 2);
+			}
+			index = paletteSize;
+			palette[paletteSize++] = stateId;
+		}
+		
+		lastState = stateId;
+		lastStateIndex = index;
+		return index;
+	}
+	
+	@Override
+	public void forEachBlock(BlockVisitor visitor) {
+		forEachBlock(visitor, 0, 0, 0);
+	}
+	
+	/**
+	 * Call a function on every block in the section, offsetting the coordinates
+	 * passed to it.
+	 * @param visitor Function to call.
+	 * @param offsetX Amount to add to each X coordinate.
+	 * @param offsetY Amount to add to each Y coordinate.
+	 * @param offsetZ Amount to add to each Z coordinate.
+	 */
+	public void forEachBlock(BlockVisitor visitor, int offsetX, int offsetY, int offsetZ) {
+		if (blocks == null) {
+			if (uniformValue == 0) return;
+			BlockState state = BlockState.byId(palette[uniformValue - 1]);
+			for (int i = 0; i < VOLUME; i++) {
+				visitor.visit(offsetX + (i & 15), offsetY + (i >> 8), offsetZ + (i >> 4 & 15), state);
+			}
+			return;
+		}
 		
-		owners[x][y][z] = paletteIndex;
+		BlockState[] states = new BlockState[paletteSize];
+		for (int i = 0; i < VOLUME; i++) {
+			int value = blocks.get(i);
+			if (value == 0) continue;
+			
+			BlockState state = states[value - 1];
+			if (state == null) {
+				state = BlockState.byId(palette[value - 1]);
+				states[value - 1] = state;
+			}
+			visitor.visit(offsetX + (i & 15), offsetY + (i >> 8), offsetZ + (i >> 4 & 15), state);
+		}
+	}
+	
+	/**
+	 * Get the palette index of a block using its index in the block array.
+	 * @param index Index in YZX order. See {@link #index(int, int, int)}.
+	 * @return Index in {@link #palette()}, or <code>-1</code> if there's no
+	 *         block.
+	 */
+	public int paletteIndexAt(int index) {
+		return valueAt(index) - 1;
+	}
+	
+	/**
+	 * Copy the palette index of every block in the section into an array.
+	 * @param dest Array to copy into. Must be at least {@link #VOLUME} long.
+	 * @return <code>dest</code>, in YZX order. <code>-1</code> means there's no
+	 *         block.
+	 */
+	public int[] getPaletteIndices(int[] dest) {
+		if (blocks == null) {
+			Arrays.fill(dest, 0, VOLUME, uniformValue - 1);
+			return dest;
+		}
+		blocks.toArray(dest);
+		for (int i = 0; i < VOLUME; i++) {
+			dest[i]--;
+		}
+		return dest;
 	}
 	
 	public Block[][][] getBlocks() {
@@ -147,7 +596,8 @@ public class Section implements SizedBlockCollection {
 		for (int x = 0; x < Chunk.WIDTH; x++) {
 			for (int y = 0; y < HEIGHT; y++) {
 				for (int z = 0; z < Chunk.LENGTH	; z++) {
-					blockArray[x][y][z] = palette.get(blocks[x][y][z]);
+					int paletteIndex = valueAt(index(x, y, z)) - 1;
+					blockArray[x][y][z] = paletteIndex < 0 ? null : BlockState.byId(palette[paletteIndex]).toBlock();
 				}
 			}
 		}
@@ -157,17 +607,47 @@ public class Section implements SizedBlockCollection {
 	
 	/**
 	 * Get a list of all the blocks the section has.
-	 * @return Palette.
+	 * @return An unmodifiable view of the palette.
 	 */
 	public List<Block> palette() {
-		return palette;
+		return new AbstractList<Block>() {
+			
+			@Override
+			public Block get(int index) {
+				return getPaletteState(index).toBlock();
+			}
+			
+			@Override
+			public int size() {
+				return paletteSize;
+			}
+		};
 	}
-
+	
+	/**
+	 * Get the amount of block states in the section's palette.
+	 */
+	public int getPaletteSize() {
+		return paletteSize;
+	}
+	
+	/**
+	 * Get a block state from the section's palette.
+	 * @param index Palette index.
+	 * @return The block state.
+	 */
+	public BlockState getPaletteState(int index) {
+		if (index < 0 || index >= paletteSize) {
+			throw new IndexOutOfBoundsException("Palette index " + index + " out of bounds for length " + paletteSize);
+		}
+		return BlockState.byId(palette[index]);
+	}
+	
 	@Override
 	public Vector3i getMin() {
 		return new Vector3i(0,0,0);
 	}
-
+	
 	@Override
 	public Vector3i getMax() {
 		return new Vector3i(Chunk.WIDTH, Section.HEIGHT, Chunk.LENGTH);
@@ -1,6 +1,8 @@
 package org.scaffoldeditor.nbt.block;
 
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
 
 import org.joml.Vector3i;
 import org.joml.Vector3ic;
@@ -47,62 +49,21 @@ public interface SizedBlockCollection extends BlockCollection {
 	
 	@Override
 	default Iterator<Vector3ic> iterator() {
-		return new Iterator<Vector3ic>() {
-			Vector3ic min = getMin();
-			Vector3ic max = getMax();
-
-			private Vector3i head = new Vector3i(min);
-		
-
-			@Override
-			public boolean hasNext() {
-				// Copy the head for forward iteration
-				Vector3i oldHead = head;
-				head = new Vector3i(oldHead);
-
-				// Search for additional values
-				boolean success = false;
-				while (head.x() < max.x() && head.y() < max.y() && head.z() < max.z()) {
-					if (hasBlock(head)) {
-						success = true;
-						break;
-					} 
-					iterate();
-				}
-				head = oldHead;
-
-				return success;
-			}
-
-			@Override
-			public Vector3i next() {
-				boolean hasBlock = false;
-				// Iterate until we find a non-void block
-				while (!hasBlock && hasNext()) {
-					hasBlock = hasBlock(head);
-					iterate();
-				}
-				
-				return head;
-			}
-			
-			/**
-			 * Move the heads to the next available slot.
-			 * Scans in an X -> Z -> Y order
-			 */
-			private void iterate() {
-				if (head.x+1 < max.x()) {
-					head.x++;
-				} else if (head.z+1 < max.z()) {
-					head.x = min.x();
-					head.z++;
-				} else if (head.y < max.y()) {
-					head.x = min.x();
-					head.z = min.z();
-					head.y++;
-				}
-			}
-		};
+		return Spliterators.iterator(spliterator());
+	}
+	
+	@Override
+	default Spliterator<Vector3ic> spliterator() {
+		return new BlockSpliterator(this);
+	}
+	
+	/**
+	 * Call a function on every block in the collection. Default implementation
+	 * checks every position within the collection's bounds.
+	 */
+	@Override
+	default void forEachBlock(BlockVisitor visitor) {
+		new BlockSpliterator(this).forEachRemaining(visitor);
 	}
 	
 	/**
@@ -80,6 +80,42 @@ public final class WorldMath {
         public Vector2i toVector() {
             return toVector(new Vector2i());
         }
+
+		/**
+		 * Pack this coordinate into a single long.
+		 * @see #pack(int, int)
+		 */
+		public long toLong() {
+			return pack(x, z);
+		}
+		
+		/**
+		 * Pack a pair of chunk coordinates into a single long, with X in the low
+		 * 32 bits and Z in the high 32 bits.
+		 * @param x Chunk X.
+		 * @param z Chunk Z.
+		 * @return Packed coordinate.
+		 */
+		public static long pack(int x, int z) {
+			return (long) z << 32 | (x & 0xFFFFFFFFL);
+		}
+		
+		/**
+		 * Unpack a coordinate that was packed with {@link #pack(int, int)}.
+		 * @param packed Packed coordinate.
+		 * @return Chunk coordinate.
+		 */
+		public static ChunkCoordinate fromLong(long packed) {
+			return new ChunkCoordinate(unpackX(packed), unpackZ(packed));
+		}
+		
+		public static int unpackX(long packed) {
+			return (int) packed;
+		}
+		
+		public static int unpackZ(long packed) {
+			return (int) (packed >> 32);
+		}
 		
 		@Override
 		public boolean equals(Object obj) {
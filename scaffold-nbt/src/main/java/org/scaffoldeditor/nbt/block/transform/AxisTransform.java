@@ -0,0 +1,222 @@
+package org.scaffoldeditor.nbt.block.transform;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.joml.Matrix4dc;
+import org.scaffoldeditor.nbt.block.BlockState;
+
+import net.querz.nbt.tag.CompoundTag;
+import net.querz.nbt.tag.StringTag;
+import net.querz.nbt.tag.Tag;
+
+/**
+ * The integer form of a transform matrix that only rotates by multiples of 90
+ * degrees, mirrors, and translates by whole blocks. Positions are transformed
+ * by swapping and negating their components, so nothing is allocated.
+ * <br>
+ * Also rotates the direction-dependent properties of block states
+ * (<code>facing</code>, <code>axis</code> and <code>rotation</code>) to match.
+ */
+public final class AxisTransform {
+
+	private static final double EPSILON = 1e-6;
+
+	private static final String[] FACINGS = { "down", "up", "north", "south", "west", "east" };
+	private static final int[][] FACING_VECTORS = { { 0, -1, 0 }, { 0, 1, 0 }, { 0, 0, -1 }, { 0, 0, 1 },
+			{ -1, 0, 0 }, { 1, 0, 0 } };
+	private static final String[] AXES = { "x", "y", "z" };
+
+	/**
+	 * The horizontal directions of the four quarter turns of the
+	 * <code>rotation</code> property, starting at south and turning clockwise.
+	 */
+	private static final int[][] QUARTER_VECTORS = { { 0, 0, 1 }, { -1, 0, 0 }, { 0, 0, -1 }, { 1, 0, 0 } };
+
+	/*
+	 * Output component i is sign[i] * (input component axis[i]) + offset[i].
+	 * Input component j is the output component inverseAxis[j].
+	 */
+	private final int[] axis = new int[3];
+	private final int[] sign = new int[3];
+	private final int[] offset = new int[3];
+	private final int[] inverseAxis = new int[3];
+
+	private final boolean rotates;
+	private final Map<BlockState, BlockState> stateCache = new ConcurrentHashMap<>();
+
+	private AxisTransform(Matrix4dc matrix) {
+		for (int i = 0; i < 3; i++) {
+			for (int j = 0; j < 3; j++) {
+				double value = matrix.get(j, i);
+				if (Math.abs(value) > EPSILON) {
+					axis[i] = j;
+					sign[i] = value > 0 ? 1 : -1;
+				}
+			}
+			offset[i] = (int) Math.round(matrix.get(3, i));
+			inverseAxis[axis[i]] = i;
+		}
+		rotates = axis[0] != 0 || axis[1] != 1 || sign[0] < 0 || sign[1] < 0 || sign[2] < 0;
+	}
+
+	/**
+	 * Convert a transform matrix into an axis transform if it can be represented as
+	 * one.
+	 * @param matrix Matrix to convert.
+	 * @return The axis transform, or <code>null</code> if the matrix has other
+	 *         rotations, scaling, shearing, or a translation that isn't a whole
+	 *         number of blocks.
+	 */
+	public static AxisTransform of(Matrix4dc matrix) {
+		boolean[] used = new boolean[3];
+		for (int i = 0; i < 3; i++) {
+			int found = -1;
+			for (int j = 0; j < 3; j++) {
+				double value = matrix.get(j, i);
+				if (Math.abs(Math.abs(value) - 1) < EPSILON) {
+					if (found >= 0) return null;
+					found = j;
+				} else if (Math.abs(value) > EPSILON) {
+					return null;
+				}
+			}
+			if (found < 0 || used[found]) return null;
+			used[found] = true;
+
+			double translation = matrix.get(3, i);
+			if (Math.abs(translation - Math.round(translation)) > EPSILON) return null;
+			if (Math.abs(matrix.get(i, 3)) > EPSILON) return null;
+		}
+		if (Math.abs(matrix.get(3, 3) - 1) > EPSILON) return null;
+
+		return new AxisTransform(matrix);
+	}
+
+	private static int select(int axis, int x, int y, int z) {
+		return axis == 0 ? x : axis == 1 ? y : z;
+	}
+
+	public int transformX(int x, int y, int z) {
+		return sign[0] * select(axis[0], x, y, z) + offset[0];
+	}
+
+	public int transformY(int x, int y, int z) {
+		return sign[1] * select(axis[1], x, y, z) + offset[1];
+	}
+
+	public int transformZ(int x, int y, int z) {
+		return sign[2] * select(axis[2], x, y, z) + offset[2];
+	}
+
+	private int inverse(int component, int x, int y, int z) {
+		int i = inverseAxis[component];
+		return sign[i] * (select(i, x, y, z) - offset[i]);
+	}
+
+	public int inverseX(int x, int y, int z) {
+		return inverse(0, x, y, z);
+	}
+
+	public int inverseY(int x, int y, int z) {
+		return inverse(1, x, y, z);
+	}
+
+	public int inverseZ(int x, int y, int z) {
+		return inverse(2, x, y, z);
+	}
+
+	/**
+	 * Whether this transform rotates or mirrors anything, as opposed to only
+	 * translating.
+	 */
+	public boolean rotates() {
+		return rotates;
+	}
+
+	/**
+	 * Rotate a direction vector the same way {@link #inverseX(int, int, int)} and
+	 * friends rotate positions, ignoring the translation.
+	 */
+	private int[] inverseDirection(int[] vector) {
+		int[] out = new int[3];
+		for (int i = 0; i < 3; i++) {
+			out[axis[i]] = sign[i] * vector[i];
+		}
+		return out;
+	}
+
+	private static int indexOf(int[][] vectors, int[] vector) {
+		for (int i = 0; i < vectors.length; i++) {
+			if (vectors[i][0] == vector[0] && vectors[i][1] == vector[1] && vectors[i][2] == vector[2]) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int indexOf(String[] values, Tag<?> tag) {
+		if (!(tag instanceof StringTag)) return -1;
+		String value = ((StringTag) tag).getValue();
+		for (int i = 0; i < values.length; i++) {
+			if (values[i].equals(value)) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Rotate a block state from the inverse transform's source space into its
+	 * destination space, as a block moved by {@link #inverseX(int, int, int)} and
+	 * friends would be. The result is cached.
+	 * @param state Block state to rotate.
+	 * @return The rotated block state, or <code>state</code> if it doesn't have
+	 *         any direction-dependent properties.
+	 */
+	public BlockState inverseState(BlockState state) {
+		if (!rotates || state.getPropertyCount() == 0) return state;
+
+		BlockState rotated = stateCache.get(state);
+		if (rotated == null) {
+			rotated = rotateState(state);
+			stateCache.putIfAbsent(state, rotated);
+		}
+		return rotated;
+	}
+
+	private BlockState rotateState(BlockState state) {
+		CompoundTag properties = null;
+
+		int facing = indexOf(FACINGS, state.getProperty("facing"));
+		if (facing >= 0) {
+			int rotated = indexOf(FACING_VECTORS, inverseDirection(FACING_VECTORS[facing]));
+			// Some blocks can't face every direction, so only change what we have to.
+			if (rotated != facing) {
+				properties = state.toBlock().getProperties();
+				properties.putString("facing", FACINGS[rotated]);
+			}
+		}
+
+		int blockAxis = indexOf(AXES, state.getProperty("axis"));
+		if (blockAxis >= 0 && axis[blockAxis] != blockAxis) {
+			if (properties == null) properties = state.toBlock().getProperties();
+			properties.putString("axis", AXES[axis[blockAxis]]);
+		}
+
+		Tag<?> rotationTag = state.getProperty("rotation");
+		if (rotationTag instanceof StringTag && axis[1] == 1) {
+			try {
+				int rotation = Integer.parseInt(((StringTag) rotationTag).getValue());
+				int south = indexOf(QUARTER_VECTORS, inverseDirection(QUARTER_VECTORS[0]));
+				int west = indexOf(QUARTER_VECTORS, inverseDirection(QUARTER_VECTORS[1]));
+				// Mirroring reverses the direction of the rotation.
+				int rotated = west == ((south + 1) & 3) ? south * 4 + rotation : south * 4 - rotation;
+				if (properties == null) properties = state.toBlock().getProperties();
+				properties.putString("rotation", Integer.toString(rotated & 15));
+			} catch (NumberFormatException e) {
+				// Leave unknown rotation values as they are.
+			}
+		}
+
+		return properties == null ? state : BlockState.of(state.getName(), properties);
+	}
+}
@@ -6,10 +6,11 @@ import org.joml.Matrix4d;
 import org.joml.Matrix4dc;
 import org.joml.Vector3d;
 import org.joml.Vector3dc;
+import org.joml.Vector3i;
 import org.joml.Vector3ic;
 import org.scaffoldeditor.nbt.block.Block;
 import org.scaffoldeditor.nbt.block.BlockCollection;
-import org.scaffoldeditor.nbt.math.MathUtils;
+import org.scaffoldeditor.nbt.block.BlockVisitor;
 
 /**
  * A block collection that represents another block collection offset by a certian transform.
@@ -19,8 +20,17 @@ import org.scaffoldeditor.nbt.math.MathUtils;
  */
 public class TransformBlockCollection implements BlockCollection {
 	
+	private static final double EPSILON = 1e-6;
+	
 	private final BlockCollection base;
 	protected final Matrix4dc transformMatrix;
+	protected final Matrix4dc inverseMatrix;
+	
+	/**
+	 * The integer form of the transform matrix, or <code>null</code> if it isn't
+	 * axis-aligned.
+	 */
+	protected final AxisTransform axisTransform;
 	
 	/**
 	 * Create a transform block collection.
@@ -37,18 +47,74 @@ public class TransformBlockCollection implements BlockCollection {
 			this.base = base;
 			this.transformMatrix = transformMatrix;
 		}	
+		this.inverseMatrix = this.transformMatrix.invert(new Matrix4d());
+		this.axisTransform = AxisTransform.of(this.transformMatrix);
 	}
 
 	@Override
 	public Block blockAt(int x, int y, int z) {
-		Vector3d inVector = new Vector3d(x, y, z);
-		return getBase().blockAt(MathUtils.floorVector(transformVector(inVector)));
+		AxisTransform axis = axisTransform;
+		if (axis != null) {
+			Block block = getBase().blockAt(axis.transformX(x, y, z), axis.transformY(x, y, z), axis.transformZ(x, y, z));
+			return block != null && axis.rotates() ? axis.inverseState(block.getState()).toBlock() : block;
+		}
+		Vector3d pos = transformMatrix.transformPosition(x, y, z, new Vector3d());
+		return getBase().blockAt(floor(pos.x), floor(pos.y), floor(pos.z));
 	}
 	
 	@Override
 	public boolean hasBlock(int x, int y, int z) {
-		Vector3d inVector = new Vector3d(x, y, z);
-		return getBase().hasBlock(MathUtils.floorVector(transformVector(inVector)));
+		AxisTransform axis = axisTransform;
+		if (axis != null) {
+			return getBase().hasBlock(axis.transformX(x, y, z), axis.transformY(x, y, z), axis.transformZ(x, y, z));
+		}
+		Vector3d pos = transformMatrix.transformPosition(x, y, z, new Vector3d());
+		return getBase().hasBlock(floor(pos.x), floor(pos.y), floor(pos.z));
+	}
+	
+	/**
+	 * Call a function on every block in the base collection, with its
+	 * coordinates mapped into this collection's space.
+	 */
+	@Override
+	public void forEachBlock(BlockVisitor visitor) {
+		// blockAt maps our coordinates into the base's, so go the other way here.
+		AxisTransform axis = axisTransform;
+		if (axis != null) {
+			getBase().forEachBlock((x, y, z, state) -> {
+				visitor.visit(axis.inverseX(x, y, z), axis.inverseY(x, y, z), axis.inverseZ(x, y, z), axis.inverseState(state));
+			});
+			return;
+		}
+		
+		Vector3d pos = new Vector3d();
+		getBase().forEachBlock((x, y, z, state) -> {
+			inverseMatrix.transformPosition(x, y, z, pos);
+			visitor.visit(floor(pos.x), floor(pos.y), floor(pos.z), state);
+		});
+	}
+	
+	/**
+	 * Floor a transformed coordinate, allowing for rounding error in the matrix.
+	 */
+	protected static int floor(double value) {
+		return (int) Math.floor(value + EPSILON);
+	}
+	
+	/**
+	 * Map a position in the base collection into this collection's space.
+	 * @param x Base X coordinate.
+	 * @param y Base Y coordinate.
+	 * @param z Base Z coordinate.
+	 * @return Coordinates in relation to this block collection.
+	 */
+	protected Vector3i inverseTransform(int x, int y, int z) {
+		AxisTransform axis = axisTransform;
+		if (axis != null) {
+			return new Vector3i(axis.inverseX(x, y, z), axis.inverseY(x, y, z), axis.inverseZ(x, y, z));
+		}
+		Vector3d pos = inverseMatrix.transformPosition(x, y, z, new Vector3d());
+		return new Vector3i(floor(pos.x), floor(pos.y), floor(pos.z));
 	}
 	
 	/**
@@ -102,7 +168,8 @@ public class TransformBlockCollection implements BlockCollection {
 			
 			@Override
 			public Vector3ic next() {
-				return MathUtils.floorVector(transformVector(baseIterator.next()));
+				Vector3ic pos = baseIterator.next();
+				return inverseTransform(pos.x(), pos.y(), pos.z());
 			}
 			
 			@Override
@@ -4,7 +4,6 @@ import org.joml.Matrix4dc;
 import org.joml.Vector3i;
 import org.joml.Vector3ic;
 import org.scaffoldeditor.nbt.block.SizedBlockCollection;
-import org.scaffoldeditor.nbt.math.MathUtils;
 
 /**
  * Implements the {@link SizedBlockCollection} methods on {@link TransformBlockCollection}
@@ -19,7 +18,8 @@ public class TransformSizedBlockCollection extends TransformBlockCollection impl
 
 	public TransformSizedBlockCollection(SizedBlockCollection base, Matrix4dc transformMatrix) {
 		super(base, transformMatrix);
-		this.base = base;
+		// The superclass folds nested transforms into one matrix, so skip the nested collection here too.
+		this.base = base instanceof TransformSizedBlockCollection ? ((TransformSizedBlockCollection) base).base : base;
 	}
 	
 	@Override
@@ -29,25 +29,35 @@ public class TransformSizedBlockCollection extends TransformBlockCollection impl
 
 	@Override
 	public Vector3ic getMin() {
-		return getBaseMin().min(getBaseMax());
+		Vector3i[] corners = getCorners();
+		if (corners == null) return getEmptyPos();
+		return corners[0].min(corners[1]);
 	}
 
 	@Override
 	public Vector3i getMax() {
-		return getBaseMin().max(getBaseMax());
+		Vector3i[] corners = getCorners();
+		if (corners == null) return getEmptyPos();
+		return corners[0].max(corners[1]).add(1, 1, 1);
 	}
 	
 	/**
-	 * Get what the base determines to be the min point with the transform applied.
+	 * Get the first and last block positions of the base with the transform
+	 * applied.
+	 * @return The two corners, or <code>null</code> if the base is empty.
 	 */
-	private Vector3i getBaseMin() {
-		return MathUtils.floorVector(transformVector(getBase().getMin()));
+	private Vector3i[] getCorners() {
+		Vector3ic min = getBase().getMin();
+		Vector3ic max = getBase().getMax();
+		if (max.x() <= min.x() || max.y() <= min.y() || max.z() <= min.z()) {
+			return null;
+		}
+		return new Vector3i[] { inverseTransform(min.x(), min.y(), min.z()),
+				inverseTransform(max.x() - 1, max.y() - 1, max.z() - 1) };
 	}
 	
-	/**
-	 * Get what the base determines to be the max point with the transform applied.
-	 */
-	private Vector3i getBaseMax() {
-		return MathUtils.floorVector(transformVector(getBase().getMax()));
+	private Vector3i getEmptyPos() {
+		Vector3ic min = getBase().getMin();
+		return inverseTransform(min.x(), min.y(), min.z());
 	}
 }
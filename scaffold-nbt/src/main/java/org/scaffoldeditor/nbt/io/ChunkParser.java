@@ -1,20 +1,25 @@
 package org.scaffoldeditor.nbt.io;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
 
 import org.apache.logging.log4j.LogManager;
 import org.joml.Vector3d;
+import org.joml.Vector3dc;
 import org.joml.Vector3ic;
 import org.scaffoldeditor.nbt.block.Block;
+import org.scaffoldeditor.nbt.block.BlockState;
 import org.scaffoldeditor.nbt.block.Chunk;
 import org.scaffoldeditor.nbt.block.WorldMath.ChunkCoordinate;
 import org.scaffoldeditor.nbt.util.BlockEntityUtils;
 
 import net.querz.nbt.tag.CompoundTag;
 import net.querz.nbt.tag.DoubleTag;
+import net.querz.nbt.tag.EndTag;
 import net.querz.nbt.tag.ListTag;
 import net.querz.nbt.tag.LongArrayTag;
+import net.querz.nbt.tag.Tag;
 
 /**
  * This class is responsible for parsing (and writing)
@@ -27,11 +32,17 @@ public class ChunkParser {
 	 * <br>
 	 * Used for serialization/unserialization
 	 * @author Igrium
+	 * @deprecated Goes through an intermediate index array. Use {@link SectionCodec} instead.
 	 */
+	@Deprecated
 	protected static class Section {
 		
-		public List<Block> palette = new ArrayList<Block>();
-		int[][][] blockArray = new int[16][16][16]; // Sections are 16 x 16 x 16 blocks. Stored in YZX order.
+		/**
+		 * IDs of the block states in the palette.
+		 * @see BlockState#getId()
+		 */
+		public int[] palette = new int[0];
+		int[] blockArray = new int[org.scaffoldeditor.nbt.block.Section.VOLUME]; // Sections are 16 x 16 x 16 blocks. Stored in YZX order.
 		public byte y = 0;
 		
 		// Variable to keep track of if section creation failed.
@@ -41,40 +52,42 @@ public class ChunkParser {
 		 * Create a section from a chunk and a Y offset
 		 */
 		public Section(Chunk chunk, byte yOffset) {
+			this(chunk.getSection(yOffset), yOffset);
+		}
+		
+		/**
+		 * Create a section from a chunk section and its Y offset.
+		 */
+		public Section(org.scaffoldeditor.nbt.block.Section section, byte yOffset) {
 			this.y = yOffset;
-			palette.add(new Block("minecraft:air")); // Air must always be the first in the palette.
 			
-			for (int y = 0; y < 16; y++) {
-				for (int z = 0; z < 16; z++) {
-					for (int x = 0; x < 16; x++) {
-						setBlock(x, y, z, chunk.blockAt(x, this.y*16+y, z));
-					}
+			// Only write the palette entries that are used. Air must always be the first in the palette.
+			section.getPaletteIndices(blockArray);
+			int[] remap = new int[section.getPaletteSize()];
+			for (int i = 0; i < blockArray.length; i++) {
+				int index = blockArray[i];
+				if (index > 0 && remap[index] == 0) {
+					remap[index] = -1;
 				}
 			}
-			
-			valid = true;
-		};
-		
-		private void setBlock(int x, int y, int z, Block block) {
-			if (block == null) {
-				return;
-			}
-			
-			if (!palette.contains(block)) {
-				palette.add(block); // Make sure block is in palette
+			palette = new int[remap.length];
+			palette[0] = BlockState.AIR.getId();
+			int paletteSize = 1;
+			for (int i = 1; i < remap.length; i++) {
+				if (remap[i] == -1) {
+					remap[i] = paletteSize;
+					palette[paletteSize++] = section.getPaletteState(i).getId();
+				}
 			}
+			palette = Arrays.copyOf(palette, paletteSize);
 			
-			// Find block in palette
-			short paletteIndex = 0;
-			for (short i = 0; i < palette.size(); i++) {
-				if (palette.get(i).equals(block)) {
-					paletteIndex = i;
-					break;
-				}
+			for (int i = 0; i < blockArray.length; i++) {
+				int index = blockArray[i];
+				blockArray[i] = index > 0 ? remap[index] : 0;
 			}
 			
-			blockArray[y][z][x] = paletteIndex;
-		}
+			valid = true;
+		};
 		
 		/**
 		 * Create a Section from NBT data.
@@ -87,13 +100,14 @@ public class ChunkParser {
 			
 			// Load palette
 			ListTag<CompoundTag> palette = nbt.getListTag("Palette").asCompoundTagList();
-			for (CompoundTag t : palette) {
-				this.palette.add(Block.fromBlockPalleteEntry(t));
+			this.palette = new int[palette.size()];
+			for (int i = 0; i < this.palette.length; i++) {
+				this.palette[i] = BlockState.fromPaletteEntry(palette.get(i)).getId();
 			}
 			
 			// Load BlockStates
 			LongArrayTag blockstates = nbt.getLongArrayTag("BlockStates");
-			blockArray = readBlockStates(blockstates.getValue());
+			readBlockStates(blockstates.getValue(), blockArray);
 			valid = true;
 			
 		}
@@ -112,23 +126,12 @@ public class ChunkParser {
 			
 			// Insert palette.
 			ListTag<CompoundTag> palette = new ListTag<>(CompoundTag.class);
-			for (Block b : this.palette) {
-				palette.add(b.toPaletteEntry());
+			for (int id : this.palette) {
+				palette.add(BlockState.byId(id).toPaletteEntry());
 			}
 			nbt.put("Palette", palette);
 			
-			// Load blockstates from 3d array.
-			int[] blockStateArray = new int[4096];
-			int head = 0;
-			for (int y = 0; y < 16; y++) {
-				for (int z = 0; z < 16; z++) {
-					for (int x = 0; x < 16; x++) {
-						blockStateArray[head] = blockArray[y][z][x];
-						head++;
-					}
-				}
-			}
-			LongArrayTag blockstates = new LongArrayTag(writeBlockStates(palette.size(), blockStateArray));
+			LongArrayTag blockstates = new LongArrayTag(writeBlockStates(palette.size(), blockArray));
 			nbt.put("BlockStates", blockstates);
 			
 			return nbt;
@@ -141,11 +144,11 @@ public class ChunkParser {
 		public boolean isValid() {
 			return valid;
 		}
-
+		
 		public Block blockAt(int x, int y, int z) {
 			if (valid) {
 				try {
-					return palette.get(blockArray[y][z][x]);	
+					return BlockState.byId(palette[blockArray[org.scaffoldeditor.nbt.block.Section.index(x, y, z)]]).toBlock();	
 				} catch (IndexOutOfBoundsException e) {
 					return null;
 				}
@@ -154,7 +157,18 @@ public class ChunkParser {
 			}
 			
 		}
-
+		
+		/**
+		 * Convert this section into a chunk section.
+		 * @return The chunk section, or <code>null</code> if this section isn't valid.
+		 */
+		public org.scaffoldeditor.nbt.block.Section toChunkSection() {
+			if (!valid) {
+				return null;
+			}
+			return new org.scaffoldeditor.nbt.block.Section(palette, blockArray);
+		}
+		
 	}
 	
 	/**
@@ -171,35 +185,42 @@ public class ChunkParser {
 	}
 	
 	/**
-	 * Read a chunk from <a href="https://minecraft.gamepedia.com/Chunk_format">NBT data</a>
+	 * Read a chunk from <a href="https://minecraft.gamepedia.com/Chunk_format">NBT data</a>.
+	 * The block state layout is detected from the length of each section's block states.
 	 * @param nbt NBT to parse.
 	 * @return Parsed chunk.
 	 */
 	public static Chunk parseNBT(CompoundTag nbt) {
+		return parseNBT(nbt, SectionCodec.NON_SPANNING_VERSION);
+	}
+	
+	/**
+	 * Read a chunk from <a href="https://minecraft.gamepedia.com/Chunk_format">NBT data</a>
+	 * @param nbt NBT to parse.
+	 * @param dataVersion <a href="https://minecraft.gamepedia.com/Data_version">Data version</a> the chunk was saved with.
+	 * @return Parsed chunk.
+	 */
+	public static Chunk parseNBT(CompoundTag nbt, int dataVersion) {
 		Chunk chunk = new Chunk();
+		boolean spanning = SectionCodec.isSpanning(dataVersion);
 		
 		// Get sections from NBT.
 		ListTag<CompoundTag> sectionList = nbt.getListTag("Sections").asCompoundTagList();
 		
 		// Iterate through sections.
 		for (CompoundTag subchunk : sectionList) {
-			
-			Section section = new Section(subchunk);
-			int yOffset = section.y*16;
+			byte y = subchunk.getByte("Y");
+			if (y < 0 || y >= chunk.sections.length) {
+				continue;
+			}
 			
 			// Add section to chunk.
-			for (int y = 0; y < 16; y++) {
-				for (int z = 0; z < 16; z++) {
-					for (int x = 0; x < 16; x++) {
-						Block block = section.blockAt(x, y, z);
-						if (block != null) {
-							chunk.setBlock(x, y+yOffset, z, block);
-						}
-					}
-				}
+			org.scaffoldeditor.nbt.block.Section section = SectionCodec.decode(subchunk, spanning);
+			if (section != null) {
+				chunk.sections[y] = section;
 			}
 		}
-			
+		
 		return chunk;
 	}
 	
@@ -216,12 +237,13 @@ public class ChunkParser {
 		level.putInt("xPos", x);
 		level.putInt("zPos", z);
 		
-		// Write sections.
+		// Write sections. Empty sections are skipped.
+		boolean spanning = SectionCodec.isSpanning(dataVersion);
 		ListTag<CompoundTag> sections = new ListTag<>(CompoundTag.class);
 		for (byte y = 0; y < Chunk.HEIGHT/16; y++) {
-			if (sectionHasBlocks(chunk, y)) {
-				Section section = new Section(chunk, y);
-				sections.add(section.getNBT());
+			CompoundTag section = SectionCodec.encode(chunk.getSection(y), y, spanning);
+			if (section != null) {
+				sections.add(section);
 			}
 		}
 		level.put("Sections", sections);
@@ -263,6 +285,82 @@ public class ChunkParser {
 		return root;
 	}
 	
+	/**
+	 * Stream <a href="https://minecraft.gamepedia.com/Chunk_format">NBT data</a>
+	 * for a chunk, straight from the chunk's storage. Writes the same entries as
+	 * {@link #writeNBT(Chunk, int, int)} into the currently open root compound.
+	 * @param chunk Chunk to write data for.
+	 * @param x X coordinate of the chunk.
+	 * @param z Z coordinate of the chunk.
+	 * @param out Writer to write to.
+	 * @throws IOException If an IO exception occurs.
+	 */
+	public void writeNBT(Chunk chunk, int x, int z, NBTStreamWriter out) throws IOException {
+		out.beginCompound("Level");
+		out.writeInt("xPos", x);
+		out.writeInt("zPos", z);
+		
+		// Write sections. Empty sections are skipped.
+		boolean spanning = SectionCodec.isSpanning(dataVersion);
+		int sectionCount = 0;
+		for (byte y = 0; y < Chunk.HEIGHT/16; y++) {
+			if (chunk.getSection(y).hasBlocks()) sectionCount++;
+		}
+		out.beginList("Sections", CompoundTag.ID, sectionCount);
+		for (byte y = 0; y < Chunk.HEIGHT/16; y++) {
+			org.scaffoldeditor.nbt.block.Section section = chunk.getSection(y);
+			if (section.hasBlocks()) {
+				SectionCodec.encode(section, y, spanning, out);
+			}
+		}
+		
+		// Write tile entities, injecting their coordinates as we go.
+		int startX = x * Chunk.WIDTH;
+		int startZ = z * Chunk.LENGTH;
+		out.beginList("TileEntities", CompoundTag.ID, chunk.blockEntities.size());
+		for (Map.Entry<Vector3ic, CompoundTag> entry : chunk.blockEntities.entrySet()) {
+			for (Map.Entry<String, Tag<?>> tag : entry.getValue()) {
+				String key = tag.getKey();
+				if (key.equals("x") || key.equals("y") || key.equals("z") || key.equals("keepPacked")) continue;
+				out.writeTag(key, tag.getValue());
+			}
+			Vector3ic coord = entry.getKey();
+			out.writeInt("x", startX + coord.x());
+			out.writeInt("y", coord.y());
+			out.writeInt("z", startZ + coord.z());
+			out.writeByte("keepPacked", (byte) 0);
+			out.endCompound();
+		}
+		
+		// Write other shit that Minecraft needs to read the file.
+		out.beginCompound("Structures");
+		out.beginCompound("References");
+		out.endCompound();
+		out.beginCompound("Starts");
+		out.endCompound();
+		out.endCompound();
+		
+		out.beginList("PostProcessing", ListTag.ID, 16);
+		for (int i = 0; i < 16; i++) {
+			// Empty list element: element type, then size.
+			out.writeRawByte(EndTag.ID);
+			out.writeRawInt(0);
+		}
+		
+		out.beginList("LiquidTicks", EndTag.ID, 0);
+		out.beginList("TileTicks", EndTag.ID, 0);
+		out.writeLong("InhabitedTime", 0);
+		out.writeLong("LastUpdate", 0);
+		out.writeByte("IsLightOn", (byte) 0);
+		out.writeString("Status", "full");
+		out.beginCompound("Heightmaps");
+		out.endCompound();
+		out.endCompound();
+		
+		// Finalize with data version.
+		out.writeInt("DataVersion", dataVersion);
+	}
+	
 	public CompoundTag writeEntities(Chunk chunk, int x, int z) {
 		CompoundTag data = new CompoundTag();
 		ChunkCoordinate coord = new ChunkCoordinate(x, z);
@@ -280,6 +378,37 @@ public class ChunkParser {
 		return data;
 	}
 	
+	/**
+	 * Stream the entity NBT for a chunk. Writes the same entries as
+	 * {@link #writeEntities(Chunk, int, int)} into the currently open root
+	 * compound, without modifying the entities' NBT.
+	 * @param chunk Chunk to write data for.
+	 * @param x X coordinate of the chunk.
+	 * @param z Z coordinate of the chunk.
+	 * @param out Writer to write to.
+	 * @throws IOException If an IO exception occurs.
+	 */
+	public void writeEntities(Chunk chunk, int x, int z, NBTStreamWriter out) throws IOException {
+		double startX = x * Chunk.WIDTH;
+		double startZ = z * Chunk.LENGTH;
+		out.beginList("Entities", CompoundTag.ID, chunk.entities.size());
+		for (Map.Entry<CompoundTag, Vector3dc> entry : chunk.entities.entrySet()) {
+			for (Map.Entry<String, Tag<?>> tag : entry.getKey()) {
+				if (tag.getKey().equals("Pos")) continue;
+				out.writeTag(tag.getKey(), tag.getValue());
+			}
+			Vector3dc pos = entry.getValue();
+			out.beginList("Pos", DoubleTag.ID, 3);
+			out.writeRawDouble(startX + pos.x());
+			out.writeRawDouble(pos.y());
+			out.writeRawDouble(startZ + pos.z());
+			out.endCompound();
+		}
+		
+		out.writeInt("DataVersion", dataVersion);
+		out.writeIntArray("Position", new int[] { x, z });
+	}
+	
 	private static ListTag<DoubleTag> writeEntPos(Vector3d vec) {
 		ListTag<DoubleTag> list = new ListTag<>(DoubleTag.class);
 		list.addDouble(vec.x);
@@ -290,33 +419,30 @@ public class ChunkParser {
 	}
 	
 	/**
-	 * Check if a section has any non-air blocks in it.
-	 * @param chunk Chunk to look in.
-	 * @param section Section to check.
-	 * @return Were any blocks found?
+	 * Obtain a list of BlockState indices from the BlockState long array.
+	 * @param longArray Long array to parse.
+	 * @return Indices of BlockStates in the palette.
+	 * @deprecated Builds a 3D array. Use {@link #readBlockStates(long[], int[])} instead.
 	 */
-	private static boolean sectionHasBlocks(Chunk chunk, int section) {
-		int yOffset = section * 16;
-		
+	@Deprecated
+	public static int[][][] readBlockStates(long[] longArray) {
+		int[] flat = readBlockStates(longArray, new int[4096]);
+		int[][][] indices = new int[16][16][16];
 		for (int y = 0; y < 16; y++) {
 			for (int z = 0; z < 16; z++) {
-				for (int x = 0; x < 16; x++) {
-					if (chunk.blockExists(x, y+yOffset, z)) {
-						return true;
-					}
-				}
+				System.arraycopy(flat, y << 8 | z << 4, indices[y][z], 0, 16);
 			}
 		}
-		
-		return false;
+		return indices;
 	}
 	
 	/**
 	 * Obtain a list of BlockState indices from the BlockState long array.
 	 * @param longArray Long array to parse.
-	 * @return Indices of BlockStates in the palette.
+	 * @param dest Array to write the indices into, in YZX order. Must be at least 4096 long.
+	 * @return <code>dest</code>
 	 */
-	public static int[][][] readBlockStates(long[] longArray) {
+	public static int[] readBlockStates(long[] longArray, int[] dest) {
 		
 		/*
 		 * The size of an index in bits.
@@ -328,33 +454,21 @@ public class ChunkParser {
 		int indexSize = Math.max(4, longArray.length / 64);
 		long maxEntryValue = (1L << indexSize) - 1;
 		
-		// Convert into int array.
-		int[][][] indices = new int[16][16][16];
-
-		for (int y = 0; y < 16; y++) {
-			for (int z = 0; z < 16; z++) {
-				for (int x = 0; x < 16; x++) {
-					int arrayIndex = y << 8 | z << 4 | x;
-					int bitIndex = arrayIndex * indexSize;
-					int startIndex = bitIndex / 64;
-					int endIndex = ((arrayIndex + 1) * indexSize - 1) / 64;
-					int startBitSubIndex = bitIndex % 64;
-
-					int val;
-
-					if (startIndex == endIndex) {
-						val = (int) (longArray[startIndex] >>> startBitSubIndex & maxEntryValue);
-					} else {
-						int endBitSubIndex = 64 - startBitSubIndex;
-						val = (int) ((longArray[startIndex] >>> startBitSubIndex | longArray[endIndex] << endBitSubIndex) & maxEntryValue);
-					}
-
-					indices[y][z][x] = val;
-				}
+		for (int arrayIndex = 0; arrayIndex < 4096; arrayIndex++) {
+			int bitIndex = arrayIndex * indexSize;
+			int startIndex = bitIndex / 64;
+			int endIndex = ((arrayIndex + 1) * indexSize - 1) / 64;
+			int startBitSubIndex = bitIndex % 64;
+			
+			if (startIndex == endIndex) {
+				dest[arrayIndex] = (int) (longArray[startIndex] >>> startBitSubIndex & maxEntryValue);
+			} else {
+				int endBitSubIndex = 64 - startBitSubIndex;
+				dest[arrayIndex] = (int) ((longArray[startIndex] >>> startBitSubIndex | longArray[endIndex] << endBitSubIndex) & maxEntryValue);
 			}
 		}
-
-		return indices;
+		
+		return dest;
 	}
 	
 	/**
@@ -364,30 +478,30 @@ public class ChunkParser {
 	 */
 	public static long[] writeBlockStates(int paletteSize, int[] indices) {
 		int indexSize = 4;
-
+		
 		while (paletteSize > 1 << indexSize) {
 			indexSize += 1;
 		}
-
+		
 		long maxEntryValue = (1L << indexSize) - 1;
 		int length = (int) Math.ceil(indices.length * indexSize / 64.0);
 		long[] data = new long[length];
-
+		
 		for (int index = 0; index < indices.length; index++) {
 			int value = indices[index];
 			int bitIndex = index * indexSize;
 			int startIndex = bitIndex / 64;
 			int endIndex = ((index + 1) * indexSize - 1) / 64;
 			int startBitSubIndex = bitIndex % 64;
-
+			
 			data[startIndex] = data[startIndex] & ~(maxEntryValue << startBitSubIndex) | ((long) value & maxEntryValue) << startBitSubIndex;
-
+			
 			if (startIndex != endIndex) {
 				int endBitSubIndex = 64 - startBitSubIndex;
 				data[endIndex] = data[endIndex] >>> endBitSubIndex << endBitSubIndex | ((long) value & maxEntryValue) >> endBitSubIndex;
 			}
 		}
-
+		
 		return data;
 	}
 }
@@ -1,19 +1,33 @@
 package org.scaffoldeditor.nbt.io;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.charset.StandardCharsets;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
 
 import org.apache.commons.io.IOUtils;
 import org.joml.Vector3d;
 import org.joml.Vector3i;
 import org.scaffoldeditor.nbt.block.Block;
 import org.scaffoldeditor.nbt.block.BlockReader;
+import org.scaffoldeditor.nbt.block.BlockState;
 import org.scaffoldeditor.nbt.block.SizedBlockCollection;
 import org.scaffoldeditor.nbt.block.WorldMath.SectionCoordinate;
 import org.scaffoldeditor.nbt.schematic.Construction;
@@ -22,11 +36,11 @@ import org.scaffoldeditor.nbt.schematic.Construction.Section;
 import org.scaffoldeditor.nbt.schematic.Construction.SelectionBox;
 
 import net.querz.nbt.io.NBTDeserializer;
-import net.querz.nbt.tag.ArrayTag;
 import net.querz.nbt.tag.ByteArrayTag;
 import net.querz.nbt.tag.CompoundTag;
 import net.querz.nbt.tag.IntArrayTag;
 import net.querz.nbt.tag.LongArrayTag;
+import net.querz.nbt.tag.Tag;
 
 /**
  * Parses Amulet Editor's <a href="https://github.com/Amulet-Team/construction-specification">Construction format</a>
@@ -36,6 +50,8 @@ public class ConstructionFormat implements BlockReader<ConstructionSegment> {
 	
 	final NBTDeserializer parser = new NBTDeserializer(true);
 	
+	private static final int MAGIC_LENGTH = 8;
+	
 	/**
 	 * Parse a Construction file. Note: this caches the entire input stream into a byte array during parsing.
 	 * Make sure the input stream it's fed is capped.
@@ -45,80 +61,109 @@ public class ConstructionFormat implements BlockReader<ConstructionSegment> {
 	 */
 	public Construction parse(InputStream in) throws IOException {
 		// The construction format has a lot of back and forth, so it's better to load it all into memory at once.
-		byte[] bytes = IOUtils.toByteArray(in);
-		ByteArrayInputStream buffer = new ByteArrayInputStream(bytes);
-		DataInputStream data = new DataInputStream(buffer);
+		return parse(ByteBuffer.wrap(IOUtils.toByteArray(in)), false);
+	}
+	
+	/**
+	 * Parse a Construction file by memory-mapping it. Only the metadata and the
+	 * section index are read up front.
+	 * 
+	 * @param file File to parse.
+	 * @param lazy If true, each section is decoded the first time it's accessed,
+	 *             and the construction keeps the file mapped for as long as it's
+	 *             referenced. Otherwise, all sections are decoded in parallel
+	 *             before returning.
+	 * @return Loaded Construction.
+	 * @throws IOException If an IO Exception occurs for any reason.
+	 */
+	public Construction parse(File file, boolean lazy) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			// The mapping stays valid after the channel is closed.
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		return parse(buffer, lazy);
+	}
+	
+	private Construction parse(ByteBuffer buffer, boolean lazy) throws IOException {
+		if (buffer.limit() < MAGIC_LENGTH * 2 + 5) {
+			throw new IOException("It looks like this file is corrupt. It's too short to be a construction.");
+		}
 		
 		// Header
-		String magicNum = new String(readNBytes(buffer,8), StandardCharsets.UTF_8);
-		int version = data.readUnsignedByte();
+		byte[] magicNum = new byte[MAGIC_LENGTH];
+		buffer.get(0, magicNum);
+		int version = buffer.get(MAGIC_LENGTH) & 0xFF;
 		
 		// Verify magic number
-		data.skip(data.available() - 8);
-		String magicNum2 = new String(readNBytes(buffer,8), StandardCharsets.UTF_8);
-		if (!magicNum.equals(magicNum2)) {
+		byte[] magicNum2 = new byte[MAGIC_LENGTH];
+		buffer.get(buffer.limit() - MAGIC_LENGTH, magicNum2);
+		if (!Arrays.equals(magicNum, magicNum2)) {
 			throw new IOException("It looks like this file is corrupt. It probably wasn't saved properly");
 		}
 		
 		// Version-specific code.
 		if (version == 0) {
-			return readVersion0(bytes);
+			return readVersion0(buffer, lazy);
 		} else {
 			throw new IOException("This build doesn't support construction versions higher than 0.");
 		}	
 	}
 	
 	protected Construction readVersion0(byte[] bytes) throws IOException {
+		return readVersion0(ByteBuffer.wrap(bytes), false);
+	}
+	
+	/**
+	 * Read a version 0 construction.
+	 * @param buffer The whole file.
+	 * @param lazy   Whether to decode sections on first access.
+	 */
+	protected Construction readVersion0(ByteBuffer buffer, boolean lazy) throws IOException {
 		
 		// Load metadata
-		int meta_offset = (int) readInt(new ByteArrayInputStream(bytes, bytes.length - 12, 4));
-		CompoundTag meta = (CompoundTag) parser
-				.fromStream(new ByteArrayInputStream(bytes, meta_offset, bytes.length - 12 - meta_offset)).getTag();
-		Construction construction = new Construction();
+		int metaOffset = buffer.getInt(buffer.limit() - MAGIC_LENGTH - 4);
+		CompoundTag meta = readNBT(buffer, metaOffset, buffer.limit() - MAGIC_LENGTH - 4 - metaOffset);
 		
 		// Load palette
+		List<Block> palette = new ArrayList<>();
 		for (CompoundTag entry : meta.getListTag("block_palette").asCompoundTagList()) {
 			String namespace = entry.getString("namespace");
 			String blockname = entry.getString("blockname");
 			CompoundTag properties = entry.getCompoundTag("properties");
 			
-			construction.palette.add(new Block(namespace+":"+blockname, properties));
+			palette.add(BlockState.of(namespace+":"+blockname, properties).toBlock());
 		}
 		
-		// Load sections at the same time as their entry in the index table.
+		// Index the sections so they can be decoded independently.
 		byte sectionVersion = meta.getByte("section_version"); 
-		DataInputStream sectionIndex = new DataInputStream(
-				new ByteArrayInputStream(meta.getByteArray("section_index_table")));
-		
-		while (sectionIndex.available() > 0) {
-			
-			int x = readInt(sectionIndex, true);
-			int y = readInt(sectionIndex, true);
-			int z = readInt(sectionIndex, true);
-			
-			int width = sectionIndex.readUnsignedByte();
-			int height = sectionIndex.readUnsignedByte();
-			int length = sectionIndex.readUnsignedByte();
-			
-			int dataOffset = (int) readInt(sectionIndex, true);
-			int dataLength = (int) readInt(sectionIndex, true);
-
-			ByteArrayInputStream sectionReader = new ByteArrayInputStream(bytes, dataOffset, dataLength);
-			CompoundTag sectionNBT = (CompoundTag) parser.fromStream(sectionReader).getTag();
-			
-			SectionCoordinate coord = new SectionCoordinate(
-					Math.floorDiv(x, 16), Math.floorDiv(y, 16), Math.floorDiv(z, 16));
+		ByteBuffer sectionIndex = ByteBuffer.wrap(meta.getByteArray("section_index_table")).order(ByteOrder.LITTLE_ENDIAN);
+		Map<SectionCoordinate, SectionEntry> entries = new LinkedHashMap<>();
+		while (sectionIndex.remaining() >= SectionEntry.SIZE) {
+			SectionEntry entry = new SectionEntry(sectionIndex);
+			entries.put(entry.coord, entry);
+		}
+		if (!entries.isEmpty() && sectionVersion != 0) {
+			throw new IOException("Unknown section version: "+sectionVersion);
+		}
 			
-			Section section;
-			if (sectionVersion == 0) {
-				section = sectionVersion0(sectionNBT, width, height, length, x - coord.getStartX(),
-						y - coord.getStartY(), z - coord.getStartZ(), coord, construction.palette);
-			} else {
-				throw new IOException("Unknown section version: "+sectionVersion);
+		Construction construction;
+		if (lazy) {
+			construction = new Construction(palette, new LazySectionMap(buffer, entries, palette));
+		} else {
+			construction = new Construction(palette, new HashMap<>());
+			List<SectionEntry> entryList = new ArrayList<>(entries.values());
+			Section[] sections = new Section[entryList.size()];
+			try {
+				IntStream.range(0, sections.length).parallel().forEach(i -> {
+					sections[i] = readSectionUnchecked(buffer, entryList.get(i), palette);
+				});
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			for (int i = 0; i < sections.length; i++) {
+				construction.sections.put(entryList.get(i).coord, sections[i]);
 			}
-			
-
-			construction.sections.put(coord, section);
 		}
 		
 		int[] selectionBoxes = meta.getIntArray("selection_boxes");
@@ -133,24 +178,168 @@ public class ConstructionFormat implements BlockReader<ConstructionSegment> {
 			
 			construction.selectionBoxes.add(new SelectionBox(minX, minY, minZ, maxX, maxY, maxZ));
 		}
-
+		
 		return construction;
 	}
 	
-	protected Section sectionVersion0(CompoundTag sectionTag, int width, int height, int length, int startX, int startY, int startZ, SectionCoordinate sectionPos, List<Block> palette) throws IOException {
-		int[][][] blocks = new int[width][height][length];
-		byte blockArrayType = sectionTag.getByte("blocks_array_type");
-		BlockArrayWrapper<?> blockArray = new BlockArrayWrapper<ArrayTag<?>>(blockArrayType, (ArrayTag<?>) sectionTag.get("blocks"));
-		int index = 0;
-		for (int x = 0; x < width; x++) {
-			for (int y = 0; y < height; y++) {
-				for (int z = 0; z < length; z++) {
-					blocks[x][y][z] = blockArray.get(index);
-					index++;
-				}
+	/**
+	 * The location and bounds of a section, as stored in the section index table.
+	 */
+	private static class SectionEntry {
+		static final int SIZE = 23;
+		
+		final SectionCoordinate coord;
+		final int startX;
+		final int startY;
+		final int startZ;
+		final int width;
+		final int height;
+		final int length;
+		final int dataOffset;
+		final int dataLength;
+		
+		SectionEntry(ByteBuffer index) {
+			int x = index.getInt();
+			int y = index.getInt();
+			int z = index.getInt();
+			
+			width = index.get() & 0xFF;
+			height = index.get() & 0xFF;
+			length = index.get() & 0xFF;
+			
+			dataOffset = index.getInt();
+			dataLength = index.getInt();
+			
+			coord = new SectionCoordinate(Math.floorDiv(x, 16), Math.floorDiv(y, 16), Math.floorDiv(z, 16));
+			startX = x - coord.getStartX();
+			startY = y - coord.getStartY();
+			startZ = z - coord.getStartZ();
+		}
+	}
+	
+	private CompoundTag readNBT(ByteBuffer buffer, int offset, int length) throws IOException {
+		if (offset < 0 || length < 0 || offset + length > buffer.limit()) {
+			throw new IOException("It looks like this file is corrupt. Data at " + offset + " is out of bounds.");
+		}
+		return (CompoundTag) parser.fromStream(new ByteBufferInputStream(buffer.slice(offset, length))).getTag();
+	}
+	
+	private Section readSection(ByteBuffer buffer, SectionEntry entry, List<Block> palette) throws IOException {
+		CompoundTag sectionNBT = readNBT(buffer, entry.dataOffset, entry.dataLength);
+		return sectionVersion0(sectionNBT, entry.width, entry.height, entry.length, entry.startX, entry.startY,
+				entry.startZ, entry.coord, palette);
+	}
+	
+	private Section readSectionUnchecked(ByteBuffer buffer, SectionEntry entry, List<Block> palette) {
+		try {
+			return readSection(buffer, entry, palette);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to read section " + entry.coord, e);
+		}
+	}
+	
+	/**
+	 * A section map that decodes each section from the file the first time it's
+	 * requested. Thread-safe.
+	 */
+	private class LazySectionMap extends AbstractMap<SectionCoordinate, Section> {
+		private final ByteBuffer buffer;
+		private final List<Block> palette;
+		
+		/**
+		 * Each value is either a decoded {@link Section} or the
+		 * {@link SectionEntry} to decode it from.
+		 */
+		private final Map<SectionCoordinate, Object> slots = new ConcurrentHashMap<>();
+		
+		LazySectionMap(ByteBuffer buffer, Map<SectionCoordinate, SectionEntry> entries, List<Block> palette) {
+			this.buffer = buffer;
+			this.palette = palette;
+			slots.putAll(entries);
+		}
+		
+		@Override
+		public Section get(Object key) {
+			Object slot = slots.get(key);
+			if (slot instanceof SectionEntry) {
+				Section section = readSectionUnchecked(buffer, (SectionEntry) slot, palette);
+				// If another thread got here first, use its copy.
+				slots.replace((SectionCoordinate) key, slot, section);
+				slot = slots.get(key);
 			}
+			return slot instanceof Section ? (Section) slot : null;
+		}
+		
+		@Override
+		public boolean containsKey(Object key) {
+			return slots.containsKey(key);
+		}
+		
+		@Override
+		public Section put(SectionCoordinate key, Section value) {
+			Object old = slots.put(key, value);
+			return old instanceof Section ? (Section) old : null;
 		}
 		
+		@Override
+		public Section remove(Object key) {
+			Object old = slots.remove(key);
+			return old instanceof Section ? (Section) old : null;
+		}
+		
+		@Override
+		public int size() {
+			return slots.size();
+		}
+		
+		@Override
+		public void clear() {
+			slots.clear();
+		}
+		
+		@Override
+		public Set<SectionCoordinate> keySet() {
+			return slots.keySet();
+		}
+		
+		@Override
+		public Set<Entry<SectionCoordinate, Section>> entrySet() {
+			return new AbstractSet<Entry<SectionCoordinate, Section>>() {
+				
+				@Override
+				public Iterator<Entry<SectionCoordinate, Section>> iterator() {
+					Iterator<SectionCoordinate> keys = slots.keySet().iterator();
+					return new Iterator<Entry<SectionCoordinate, Section>>() {
+						
+						@Override
+						public boolean hasNext() {
+							return keys.hasNext();
+						}
+						
+						@Override
+						public Entry<SectionCoordinate, Section> next() {
+							SectionCoordinate key = keys.next();
+							return new SimpleImmutableEntry<>(key, get(key));
+						}
+						
+						@Override
+						public void remove() {
+							keys.remove();
+						}
+					};
+				}
+				
+				@Override
+				public int size() {
+					return slots.size();
+				}
+			};
+		}
+	}
+	
+	protected Section sectionVersion0(CompoundTag sectionTag, int width, int height, int length, int startX, int startY, int startZ, SectionCoordinate sectionPos, List<Block> palette) throws IOException {
+		int[][][] blocks = readBlocks(sectionTag.getByte("blocks_array_type"), sectionTag.get("blocks"), width, height, length);
+		
 		Section section = new Section(width, height, length, blocks, palette, new int[] { startX, startY, startZ });	
 		if (sectionTag.getListTag("entities").size() > 0) {
 			for (CompoundTag entity : sectionTag.getListTag("entities").asCompoundTagList()) {
@@ -175,44 +364,70 @@ public class ConstructionFormat implements BlockReader<ConstructionSegment> {
 	}
 	
 	
-	private static final int readInt(InputStream in) throws IOException {
-		return readInt(in, false);
-	}
-	
-	private static final int readInt(InputStream in, boolean littleEndian) throws IOException {
-		return readInt(ByteBuffer.wrap(readNBytes(in, 4)), littleEndian);
-	}
-	
-	private static final int readInt(ByteBuffer buffer, boolean littleEndian) throws IOException {
-		if (littleEndian) buffer.order(ByteOrder.LITTLE_ENDIAN);
-		int num = buffer.getInt();
-		return num;
-	}
-	
-	private static class BlockArrayWrapper<T extends ArrayTag<?>> {
-		public final T array;
-		public final byte type;
-		
-		public BlockArrayWrapper(byte type, T array) {
-			this.array = array;
-			this.type = type;
+	/**
+	 * Decode a section's block array in bulk, checking its type once rather than
+	 * for every block.
+	 * @param type  The array's type, from <code>blocks_array_type</code>.
+	 * @param array The array tag.
+	 * @return Palette indices in XYZ order. Sections without blocks are filled
+	 *         with -1.
+	 */
+	private static int[][][] readBlocks(byte type, Tag<?> array, int width, int height, int length) {
+		int[][][] blocks = new int[width][height][length];
+		int volume = width * height * length;
+		int index = 0;
+		switch (type) {
+		case ByteArrayTag.ID: {
+			byte[] values = ((ByteArrayTag) array).getValue();
+			checkLength(values.length, volume);
+			for (int[][] plane : blocks) {
+				for (int[] row : plane) {
+					for (int z = 0; z < length; z++) {
+						row[z] = values[index++];
+					}
+				}
+			}
+			break;
 		}
-		
-		public int get(int index) {
-			if (type == 7) {
-				ByteArrayTag tag = (ByteArrayTag) array;
-				return tag.getValue()[index];
-			} else if (type == 11) {
-				IntArrayTag tag = (IntArrayTag) array;
-				return tag.getValue()[index];
-			} else if (type == 12) {
-				LongArrayTag tag = (LongArrayTag) array;
-				return (int) tag.getValue()[index];
-			} else if (type == -1) {
-				return -1;
-			} else {
-				throw new IllegalArgumentException("Unknown array type: "+type);
+		case IntArrayTag.ID: {
+			int[] values = ((IntArrayTag) array).getValue();
+			checkLength(values.length, volume);
+			for (int[][] plane : blocks) {
+				for (int[] row : plane) {
+					System.arraycopy(values, index, row, 0, length);
+					index += length;
+				}
 			}
+			break;
+		}
+		case LongArrayTag.ID: {
+			long[] values = ((LongArrayTag) array).getValue();
+			checkLength(values.length, volume);
+			for (int[][] plane : blocks) {
+				for (int[] row : plane) {
+					for (int z = 0; z < length; z++) {
+						row[z] = (int) values[index++];
+					}
+				}
+			}
+			break;
+		}
+		case -1:
+			for (int[][] plane : blocks) {
+				for (int[] row : plane) {
+					Arrays.fill(row, -1);
+				}
+			}
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown array type: "+type);
+		}
+		return blocks;
+	}
+	
+	private static void checkLength(int length, int volume) {
+		if (length < volume) {
+			throw new IllegalArgumentException("Block array is too short for its section!");
 		}
 	}
 	
@@ -221,16 +436,22 @@ public class ConstructionFormat implements BlockReader<ConstructionSegment> {
 	 * Note: this caches the entire input stream into a byte array during parsing. Make sure the input stream it's fed is capped.
 	 */
 	public ConstructionSegment readBlockCollection(InputStream in) throws IOException {
-		Construction construction = parse(in);
+		return getFirstSegment(parse(in));
+	}
+	
+	/**
+	 * Memory-map a construction file and get its first selection box as a
+	 * {@link SizedBlockCollection}. All sections are decoded in parallel before
+	 * returning, so the mapping isn't kept after this returns.
+	 */
+	public ConstructionSegment readBlockCollection(File file) throws IOException {
+		return getFirstSegment(parse(file, false));
+	}
+	
+	private static ConstructionSegment getFirstSegment(Construction construction) throws IOException {
 		if (construction.selectionBoxes.size() == 0) {
 			throw new IOException("Can only read construction segment if there's a selection box in the construction.");
 		}
 		return construction.getSegment(construction.selectionBoxes.get(0));
 	}
-	
-	private static byte[] readNBytes(InputStream in, int length) throws IOException {
-		byte[] bytes = new byte[length];
-		in.read(bytes);
-		return bytes;
-	}
 }
@@ -0,0 +1,240 @@
+package org.scaffoldeditor.nbt.io;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+
+import net.querz.nbt.tag.ByteArrayTag;
+import net.querz.nbt.tag.ByteTag;
+import net.querz.nbt.tag.CompoundTag;
+import net.querz.nbt.tag.DoubleTag;
+import net.querz.nbt.tag.EndTag;
+import net.querz.nbt.tag.FloatTag;
+import net.querz.nbt.tag.IntArrayTag;
+import net.querz.nbt.tag.IntTag;
+import net.querz.nbt.tag.ListTag;
+import net.querz.nbt.tag.LongArrayTag;
+import net.querz.nbt.tag.LongTag;
+import net.querz.nbt.tag.ShortTag;
+import net.querz.nbt.tag.StringTag;
+import net.querz.nbt.tag.Tag;
+
+/**
+ * Writes binary NBT one tag at a time, without building a tag tree first.
+ * <br>
+ * Named tags are written with methods like {@link #writeInt(String, int)}.
+ * Compounds are opened with {@link #beginCompound(String)} and must be closed
+ * with {@link #endCompound()}. Lists are opened with
+ * {@link #beginList(String, byte, int)}, after which exactly <code>size</code>
+ * elements must be written with the <code>writeRaw</code> methods. Compound
+ * elements are written as their entries followed by {@link #endCompound()}.
+ * <br>
+ * The writer doesn't validate the structure it writes.
+ */
+public class NBTStreamWriter {
+
+	private final DataOutput out;
+
+	/**
+	 * Create a stream writer.
+	 * @param out Output to write to. Should be buffered.
+	 */
+	public NBTStreamWriter(DataOutput out) {
+		this.out = out;
+	}
+
+	private void writeHeader(byte id, String name) throws IOException {
+		out.writeByte(id);
+		out.writeUTF(name);
+	}
+
+	/**
+	 * Open a compound tag.
+	 * @param name Name of the tag.
+	 */
+	public void beginCompound(String name) throws IOException {
+		writeHeader(CompoundTag.ID, name);
+	}
+
+	/**
+	 * Close the current compound tag or compound list element.
+	 */
+	public void endCompound() throws IOException {
+		out.writeByte(EndTag.ID);
+	}
+
+	/**
+	 * Open a list tag.
+	 * @param name        Name of the tag.
+	 * @param elementType ID of the type of tag in the list. Empty lists may use
+	 *                    {@link EndTag#ID}.
+	 * @param size        Amount of elements that will be written.
+	 */
+	public void beginList(String name, byte elementType, int size) throws IOException {
+		writeHeader(ListTag.ID, name);
+		out.writeByte(elementType);
+		out.writeInt(size);
+	}
+
+	/**
+	 * Open a long array tag, after which exactly <code>length</code> values must
+	 * be written with {@link #writeRawLong(long)}.
+	 * @param name   Name of the tag.
+	 * @param length Amount of values that will be written.
+	 */
+	public void beginLongArray(String name, int length) throws IOException {
+		writeHeader(LongArrayTag.ID, name);
+		out.writeInt(length);
+	}
+
+	public void writeByte(String name, byte value) throws IOException {
+		writeHeader(ByteTag.ID, name);
+		out.writeByte(value);
+	}
+
+	public void writeInt(String name, int value) throws IOException {
+		writeHeader(IntTag.ID, name);
+		out.writeInt(value);
+	}
+
+	public void writeLong(String name, long value) throws IOException {
+		writeHeader(LongTag.ID, name);
+		out.writeLong(value);
+	}
+
+	public void writeDouble(String name, double value) throws IOException {
+		writeHeader(DoubleTag.ID, name);
+		out.writeDouble(value);
+	}
+
+	public void writeString(String name, String value) throws IOException {
+		writeHeader(StringTag.ID, name);
+		out.writeUTF(value);
+	}
+
+	public void writeIntArray(String name, int[] value) throws IOException {
+		writeHeader(IntArrayTag.ID, name);
+		out.writeInt(value.length);
+		for (int i : value) {
+			out.writeInt(i);
+		}
+	}
+
+	/**
+	 * Write an element in a list of bytes, such as a list's element type.
+	 */
+	public void writeRawByte(byte value) throws IOException {
+		out.writeByte(value);
+	}
+
+	/**
+	 * Write an element in a list of ints, such as a list's size.
+	 */
+	public void writeRawInt(int value) throws IOException {
+		out.writeInt(value);
+	}
+
+	/**
+	 * Write a value in a long array or a list of longs.
+	 */
+	public void writeRawLong(long value) throws IOException {
+		out.writeLong(value);
+	}
+
+	/**
+	 * Write an element in a list of doubles.
+	 */
+	public void writeRawDouble(double value) throws IOException {
+		out.writeDouble(value);
+	}
+
+	/**
+	 * Write an existing tag.
+	 * @param name Name of the tag.
+	 * @param tag  Tag to write.
+	 */
+	public void writeTag(String name, Tag<?> tag) throws IOException {
+		writeHeader(tag.getID(), name);
+		writeRawTag(tag);
+	}
+
+	/**
+	 * Write the payload of an existing tag without its header, such as for a list
+	 * element.
+	 * @param tag Tag to write.
+	 */
+	public void writeRawTag(Tag<?> tag) throws IOException {
+		writePayload(tag, 0);
+	}
+
+	private void writePayload(Tag<?> tag, int depth) throws IOException {
+		if (depth > Tag.DEFAULT_MAX_DEPTH) {
+			throw new IOException("Reached maximum depth of NBT structure.");
+		}
+
+		switch (tag.getID()) {
+		case ByteTag.ID:
+			out.writeByte(((Number) tag.getValue()).byteValue());
+			break;
+		case ShortTag.ID:
+			out.writeShort(((Number) tag.getValue()).shortValue());
+			break;
+		case IntTag.ID:
+			out.writeInt(((Number) tag.getValue()).intValue());
+			break;
+		case LongTag.ID:
+			out.writeLong(((Number) tag.getValue()).longValue());
+			break;
+		case FloatTag.ID:
+			out.writeFloat(((Number) tag.getValue()).floatValue());
+			break;
+		case DoubleTag.ID:
+			out.writeDouble(((Number) tag.getValue()).doubleValue());
+			break;
+		case ByteArrayTag.ID: {
+			byte[] value = ((ByteArrayTag) tag).getValue();
+			out.writeInt(value.length);
+			out.write(value);
+			break;
+		}
+		case StringTag.ID:
+			out.writeUTF(((StringTag) tag).getValue());
+			break;
+		case ListTag.ID: {
+			ListTag<?> list = (ListTag<?>) tag;
+			out.writeByte(list.size() > 0 ? list.get(0).getID() : EndTag.ID);
+			out.writeInt(list.size());
+			for (Tag<?> element : list) {
+				writePayload(element, depth + 1);
+			}
+			break;
+		}
+		case CompoundTag.ID:
+			for (Map.Entry<String, Tag<?>> entry : (CompoundTag) tag) {
+				Tag<?> value = entry.getValue();
+				writeHeader(value.getID(), entry.getKey());
+				writePayload(value, depth + 1);
+			}
+			out.writeByte(EndTag.ID);
+			break;
+		case IntArrayTag.ID: {
+			int[] value = ((IntArrayTag) tag).getValue();
+			out.writeInt(value.length);
+			for (int i : value) {
+				out.writeInt(i);
+			}
+			break;
+		}
+		case LongArrayTag.ID: {
+			long[] value = ((LongArrayTag) tag).getValue();
+			out.writeInt(value.length);
+			for (long l : value) {
+				out.writeLong(l);
+			}
+			break;
+		}
+		default:
+			throw new IOException("Unknown tag type: " + tag.getID());
+		}
+	}
+}
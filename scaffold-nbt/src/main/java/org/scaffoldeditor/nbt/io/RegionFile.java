@@ -0,0 +1,242 @@
+package org.scaffoldeditor.nbt.io;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import net.querz.nbt.io.NBTInputStream;
+import net.querz.nbt.tag.CompoundTag;
+import net.querz.nbt.tag.Tag;
+
+/**
+ * Provides random access to the chunks in a Minecraft region file
+ * (<code>.mca</code>). Only the header is read up front; chunks are only read
+ * and decompressed when requested.
+ * <br>
+ * Chunks are read with positional reads rather than a memory map, so closing
+ * the region file releases it right away and it can be replaced or deleted.
+ * Reading is thread-safe, so multiple chunks may be read from the same region
+ * file at once.
+ */
+public class RegionFile implements Closeable {
+
+	public static final int SECTOR_SIZE = 4096;
+
+	/**
+	 * The amount of chunks along each axis of a region.
+	 */
+	public static final int REGION_WIDTH = 32;
+
+	public static final int COMPRESSION_GZIP = 1;
+	public static final int COMPRESSION_ZLIB = 2;
+	public static final int COMPRESSION_NONE = 3;
+
+	/**
+	 * Set on the compression type if the chunk is stored in a separate
+	 * <code>.mcc</code> file.
+	 */
+	private static final int EXTERNAL_FLAG = 128;
+
+	private static final int CHUNK_COUNT = REGION_WIDTH * REGION_WIDTH;
+
+	private final File file;
+	private final FileChannel channel;
+	private final long size;
+
+	/**
+	 * The location entry of each chunk, as stored in the header. The top three
+	 * bytes are the offset in sectors and the bottom byte is the sector count.
+	 */
+	private final int[] locations = new int[CHUNK_COUNT];
+	private final int[] timestamps = new int[CHUNK_COUNT];
+
+	/**
+	 * Open a region file.
+	 * @param file File to open.
+	 * @throws IOException If the file can't be read or its header is incomplete.
+	 */
+	public RegionFile(File file) throws IOException {
+		this.file = file;
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		ByteBuffer header;
+		try {
+			size = channel.size();
+			if (size < SECTOR_SIZE * 2) {
+				throw new IOException("Region file " + file + " is missing its header!");
+			}
+			header = read(0, SECTOR_SIZE * 2);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+
+		for (int i = 0; i < CHUNK_COUNT; i++) {
+			locations[i] = header.getInt(i * 4);
+			timestamps[i] = header.getInt(SECTOR_SIZE + i * 4);
+		}
+	}
+
+	/**
+	 * Read a range of the file into a new heap buffer.
+	 */
+	private ByteBuffer read(long position, int length) throws IOException {
+		ByteBuffer data = ByteBuffer.allocate(length);
+		while (data.hasRemaining()) {
+			if (channel.read(data, position + data.position()) < 0) {
+				throw new EOFException("Unexpected end of region file " + file);
+			}
+		}
+		return data.flip();
+	}
+
+	/**
+	 * Get the index of a chunk in the header.
+	 * @param x Chunk X, either global or relative to the region.
+	 * @param z Chunk Z, either global or relative to the region.
+	 */
+	private static int index(int x, int z) {
+		return (x & (REGION_WIDTH - 1)) + (z & (REGION_WIDTH - 1)) * REGION_WIDTH;
+	}
+
+	/**
+	 * Get the file this region was loaded from.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Check whether the region file contains a chunk.
+	 * @param x Chunk X, either global or relative to the region.
+	 * @param z Chunk Z, either global or relative to the region.
+	 * @return Whether the chunk exists.
+	 */
+	public boolean hasChunk(int x, int z) {
+		int location = locations[index(x, z)];
+		if (location == 0) return false;
+		long end = (long) ((location >>> 8) + (location & 0xFF)) * SECTOR_SIZE;
+		return end <= size;
+	}
+
+	/**
+	 * Get the last time a chunk was saved.
+	 * @param x Chunk X, either global or relative to the region.
+	 * @param z Chunk Z, either global or relative to the region.
+	 * @return Epoch timestamp in seconds, or 0 if the chunk doesn't exist.
+	 */
+	public int getTimestamp(int x, int z) {
+		return timestamps[index(x, z)];
+	}
+
+	/**
+	 * Get the amount of sectors a chunk takes up in the file.
+	 * @param x Chunk X, either global or relative to the region.
+	 * @param z Chunk Z, either global or relative to the region.
+	 * @return Sector count, or 0 if the chunk doesn't exist.
+	 */
+	public int getSectorCount(int x, int z) {
+		return locations[index(x, z)] & 0xFF;
+	}
+
+	/**
+	 * Read the header of a chunk: its length field and compression type.
+	 * @return The header, or <code>null</code> if the chunk doesn't exist.
+	 */
+	private ByteBuffer chunkHeader(int x, int z) throws IOException {
+		if (!hasChunk(x, z)) return null;
+		long offset = chunkOffset(x, z);
+
+		ByteBuffer header = read(offset, 5);
+		int length = header.getInt(0);
+		if (length < 1 || offset + 4L + length > size) {
+			throw new IOException("Chunk [" + x + ", " + z + "] in " + file + " has an invalid length: " + length);
+		}
+		return header;
+	}
+
+	private long chunkOffset(int x, int z) {
+		return (long) (locations[index(x, z)] >>> 8) * SECTOR_SIZE;
+	}
+
+	/**
+	 * Get the compression type of a chunk.
+	 * @param x Chunk X, either global or relative to the region.
+	 * @param z Chunk Z, either global or relative to the region.
+	 * @return The compression type, or <code>-1</code> if the chunk doesn't
+	 *         exist.
+	 * @throws IOException If the chunk's header is corrupt.
+	 * @see #COMPRESSION_GZIP
+	 * @see #COMPRESSION_ZLIB
+	 * @see #COMPRESSION_NONE
+	 */
+	public int getCompressionType(int x, int z) throws IOException {
+		ByteBuffer header = chunkHeader(x, z);
+		if (header == null) return -1;
+		return header.get(4) & 0xFF;
+	}
+
+	/**
+	 * Get the compressed bytes of a chunk without decompressing them.
+	 * @param x Chunk X, either global or relative to the region.
+	 * @param z Chunk Z, either global or relative to the region.
+	 * @return A read-only buffer with the chunk's compressed data, or
+	 *         <code>null</code> if the chunk doesn't exist. It stays valid after
+	 *         the region file is closed.
+	 * @throws IOException If the chunk's header is corrupt.
+	 * @see #getCompressionType(int, int)
+	 */
+	public ByteBuffer getRawChunk(int x, int z) throws IOException {
+		ByteBuffer header = chunkHeader(x, z);
+		if (header == null) return null;
+		return read(chunkOffset(x, z) + 5, header.getInt(0) - 1).asReadOnlyBuffer();
+	}
+
+	/**
+	 * Read and decompress a chunk.
+	 * @param x Chunk X, either global or relative to the region.
+	 * @param z Chunk Z, either global or relative to the region.
+	 * @return The chunk's NBT, or <code>null</code> if the chunk doesn't exist.
+	 * @throws IOException If the chunk can't be read.
+	 */
+	public CompoundTag readChunk(int x, int z) throws IOException {
+		int compression = getCompressionType(x, z);
+		if (compression < 0) return null;
+		if ((compression & EXTERNAL_FLAG) != 0) {
+			throw new IOException("Chunk [" + x + ", " + z + "] in " + file + " is stored externally, which is not supported.");
+		}
+
+		InputStream in = new ByteBufferInputStream(getRawChunk(x, z));
+		switch (compression) {
+		case COMPRESSION_GZIP:
+			in = new GZIPInputStream(in);
+			break;
+		case COMPRESSION_ZLIB:
+			in = new InflaterInputStream(in);
+			break;
+		case COMPRESSION_NONE:
+			break;
+		default:
+			throw new IOException("Chunk [" + x + ", " + z + "] in " + file + " has unknown compression type " + compression);
+		}
+
+		try (NBTInputStream nbtIs = new NBTInputStream(in)) {
+			return (CompoundTag) nbtIs.readTag(Tag.DEFAULT_MAX_DEPTH).getTag();
+		}
+	}
+
+	/**
+	 * Close the region file. Nothing keeps the file open afterwards, so it may be
+	 * replaced or deleted right away.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,392 @@
+package org.scaffoldeditor.nbt.io;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import net.querz.nbt.tag.Tag;
+
+/**
+ * Writes Minecraft region files (<code>.mca</code>) without buffering the
+ * whole region in memory. Chunks are compressed in parallel and each chunk's
+ * sectors are written to the file as soon as it's been compressed. The
+ * location table is written when the writer is closed.
+ * <br>
+ * At most a fixed amount of chunks are in flight at once; {@link #write} blocks
+ * until a slot is free. Chunks may be written in any order, but each chunk may
+ * only be written once. Compression buffers are pooled and reused between
+ * chunks and between region files, up to one per processor.
+ * <br>
+ * Read more about Region files on the <a href="https://minecraft.gamepedia.com/Region_file_format">Minecraft Wiki.</a>
+ */
+public class RegionFileWriter implements Closeable {
+
+	/**
+	 * The largest amount of sectors a chunk can take up before it has to be
+	 * stored externally.
+	 */
+	private static final int MAX_SECTORS = 255;
+
+	private static final int CHUNK_COUNT = RegionFile.REGION_WIDTH * RegionFile.REGION_WIDTH;
+
+	private static final byte[] HEADER_PLACEHOLDER = new byte[5];
+
+	/**
+	 * Compressors whose buffer grew larger than this many bytes aren't pooled, so
+	 * one huge chunk doesn't keep its buffer alive.
+	 */
+	private static final int MAX_POOLED_BUFFER = RegionFile.SECTOR_SIZE * 64;
+
+	private static final Queue<Compressor> COMPRESSORS = new ArrayBlockingQueue<>(
+			Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * Streams the NBT of a chunk.
+	 */
+	public interface ChunkEmitter {
+		/**
+		 * Write the entries of the chunk's root compound.
+		 * @param out Writer to write to. The root compound is opened and closed by
+		 *            the region file writer.
+		 * @throws IOException If an IO exception occurs.
+		 */
+		void emit(NBTStreamWriter out) throws IOException;
+	}
+
+	/**
+	 * Writes a chunk's whole root tag.
+	 */
+	private interface RootWriter {
+		void write(NBTStreamWriter out) throws Exception;
+	}
+
+	private final File file;
+	private final FileChannel channel;
+	private final Executor executor;
+	private final int compressionLevel;
+
+	private final int maxInFlight;
+	private final Semaphore inFlight;
+
+	private final int[] locations = new int[CHUNK_COUNT];
+	private final int[] timestamps = new int[CHUNK_COUNT];
+	private final boolean[] submitted = new boolean[CHUNK_COUNT];
+
+	/** The next free sector in the file. Sectors 0 and 1 hold the header. */
+	private int nextSector = 2;
+	private volatile Throwable error;
+	private boolean closed = false;
+
+	/**
+	 * Create a region file writer that compresses on the common fork/join pool
+	 * with the default compression level.
+	 * @param file File to write to. Will replace if already exists.
+	 * @throws IOException If the file can't be opened.
+	 */
+	public RegionFileWriter(File file) throws IOException {
+		this(file, Deflater.DEFAULT_COMPRESSION, ForkJoinPool.commonPool(),
+				ForkJoinPool.getCommonPoolParallelism() * 2);
+	}
+
+	/**
+	 * Create a region file writer.
+	 *
+	 * @param file             File to write to. Will replace if already exists.
+	 * @param compressionLevel Zlib compression level, from 0 to 9, or
+	 *                         {@link Deflater#DEFAULT_COMPRESSION}.
+	 * @param executor         Executor to serialize and compress chunks on. Won't
+	 *                         be shut down when the writer is closed.
+	 * @param maxInFlight      The maximum amount of chunks that may be waiting to
+	 *                         be compressed and written at once.
+	 * @throws IOException If the file can't be opened.
+	 */
+	public RegionFileWriter(File file, int compressionLevel, Executor executor, int maxInFlight) throws IOException {
+		if ((compressionLevel < 0 || compressionLevel > 9) && compressionLevel != Deflater.DEFAULT_COMPRESSION) {
+			throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+		}
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("Max in flight must be at least 1!");
+		}
+		this.file = file;
+		this.compressionLevel = compressionLevel;
+		this.executor = executor;
+		this.maxInFlight = maxInFlight;
+		this.inFlight = new Semaphore(maxInFlight);
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	/**
+	 * Get the file this writer is writing to.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Write a chunk to the region file. The chunk is compressed and written
+	 * asynchronously.
+	 *
+	 * @param x     Chunk X, either global or relative to the region.
+	 * @param z     Chunk Z, either global or relative to the region.
+	 * @param chunk Chunk NBT to write. Must not be modified until the writer is
+	 *              closed.
+	 * @throws IOException If a previously written chunk failed to write.
+	 */
+	public void write(int x, int z, Tag<?> chunk) throws IOException {
+		submit(claim(x, z), out -> out.writeTag("root", chunk));
+	}
+
+	/**
+	 * Write a chunk to the region file. The chunk's NBT is generated, compressed
+	 * and written asynchronously, so only chunks that are in flight are held in
+	 * memory.
+	 *
+	 * @param x     Chunk X, either global or relative to the region.
+	 * @param z     Chunk Z, either global or relative to the region.
+	 * @param chunk Function that generates the chunk's NBT. Called on the
+	 *              writer's executor.
+	 * @throws IOException If a previously written chunk failed to write.
+	 */
+	public void write(int x, int z, Callable<? extends Tag<?>> chunk) throws IOException {
+		submit(claim(x, z), out -> out.writeTag("root", chunk.call()));
+	}
+
+	/**
+	 * Write a chunk to the region file by streaming its NBT. The NBT is emitted
+	 * straight into the compressor on the writer's executor, without building a
+	 * tag tree.
+	 *
+	 * @param x       Chunk X, either global or relative to the region.
+	 * @param z       Chunk Z, either global or relative to the region.
+	 * @param emitter Function that writes the chunk's NBT. Called on the writer's
+	 *                executor.
+	 * @throws IOException If a previously written chunk failed to write.
+	 */
+	public void write(int x, int z, ChunkEmitter emitter) throws IOException {
+		submit(claim(x, z), out -> {
+			out.beginCompound("root");
+			emitter.emit(out);
+			out.endCompound();
+		});
+	}
+
+	/**
+	 * Compress and write a chunk on the executor, once there's room for it.
+	 */
+	private void submit(int index, RootWriter chunk) throws IOException {
+		try {
+			inFlight.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting to write chunk.", e);
+		}
+
+		try {
+			executor.execute(() -> {
+				try {
+					compressAndWrite(index, chunk);
+				} catch (Throwable e) {
+					if (error == null) error = e;
+				} finally {
+					inFlight.release();
+				}
+			});
+		} catch (RuntimeException e) {
+			inFlight.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Write a chunk that has already been compressed, such as one copied from
+	 * another region file with {@link RegionFile#getRawChunk}. The chunk is
+	 * written synchronously.
+	 *
+	 * @param x               Chunk X, either global or relative to the region.
+	 * @param z               Chunk Z, either global or relative to the region.
+	 * @param data            Compressed chunk data.
+	 * @param compressionType The compression type of the data.
+	 * @throws IOException If the chunk can't be written, or if a previously
+	 *                     written chunk failed to write.
+	 * @see RegionFile#getCompressionType
+	 */
+	public void writeRaw(int x, int z, ByteBuffer data, int compressionType) throws IOException {
+		int index = claim(x, z);
+		ByteBuffer buffer = ByteBuffer.allocate(data.remaining() + 5);
+		buffer.position(5);
+		buffer.put(data.duplicate());
+		buffer.flip();
+		writeChunk(index, buffer, compressionType);
+	}
+
+	/**
+	 * Mark a chunk as written.
+	 * @return The chunk's index in the header.
+	 */
+	private int claim(int x, int z) throws IOException {
+		if (closed) {
+			throw new IOException("Region file writer is closed.");
+		}
+		int index = (x & (RegionFile.REGION_WIDTH - 1)) + (z & (RegionFile.REGION_WIDTH - 1)) * RegionFile.REGION_WIDTH;
+		if (submitted[index]) {
+			throw new IllegalArgumentException("Chunk [" + x + ", " + z + "] has already been written.");
+		}
+		checkError();
+		submitted[index] = true;
+		return index;
+	}
+
+	/**
+	 * Serialize and compress a chunk, then write it to the file.
+	 */
+	private void compressAndWrite(int index, RootWriter chunk) throws Exception {
+		Compressor compressor = COMPRESSORS.poll();
+		if (compressor == null) {
+			compressor = new Compressor();
+		}
+		compressor.deflater.setLevel(compressionLevel);
+		compressor.buffer.reset();
+		compressor.buffer.write(HEADER_PLACEHOLDER, 0, HEADER_PLACEHOLDER.length);
+
+		boolean success = false;
+		try {
+			chunk.write(compressor.out);
+			compressor.dataStream.flush();
+			compressor.deflaterStream.finish();
+			writeChunk(index, compressor.buffer.toByteBuffer(), RegionFile.COMPRESSION_ZLIB);
+			success = true;
+		} finally {
+			// If the chunk failed, the streams may have leftover data in them.
+			if (!success || !release(compressor)) {
+				compressor.deflater.end();
+			}
+		}
+	}
+
+	/**
+	 * Return a compressor to the pool.
+	 * @return Whether it was pooled. If not, its deflater should be ended.
+	 */
+	private static boolean release(Compressor compressor) {
+		if (compressor.buffer.capacity() > MAX_POOLED_BUFFER) return false;
+		compressor.deflater.reset();
+		return COMPRESSORS.offer(compressor);
+	}
+
+	/**
+	 * Allocate sectors for a compressed chunk and write it to the file.
+	 * @param buffer Compressed chunk, with 5 bytes reserved at the start for its
+	 *               length and compression type.
+	 */
+	private void writeChunk(int index, ByteBuffer buffer, int compressionType) throws IOException {
+		int length = buffer.remaining() - 4; // Length includes the compression type byte.
+		int sectors = (buffer.remaining() + RegionFile.SECTOR_SIZE - 1) / RegionFile.SECTOR_SIZE;
+		if (sectors > MAX_SECTORS) {
+			throw new IOException("Chunk at index " + index + " is too large to store in a region file (" + sectors + " sectors).");
+		}
+		buffer.putInt(0, length);
+		buffer.put(4, (byte) compressionType);
+
+		int sector;
+		synchronized (this) {
+			sector = nextSector;
+			nextSector += sectors;
+			locations[index] = sector << 8 | sectors;
+			timestamps[index] = (int) (System.currentTimeMillis() / 1000);
+		}
+
+		long position = (long) sector * RegionFile.SECTOR_SIZE;
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+
+	private void checkError() throws IOException {
+		Throwable e = error;
+		if (e == null) return;
+		if (e instanceof IOException) {
+			throw new IOException("Unable to write chunk to " + file, e);
+		}
+		throw new IOException("Unable to generate chunk for " + file, e);
+	}
+
+	/**
+	 * Wait for all in-flight chunks, then write the header and close the file.
+	 * @throws IOException If any chunk failed to write, or if the header can't be
+	 *                     written.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) return;
+		closed = true;
+
+		try {
+			inFlight.acquireUninterruptibly(maxInFlight);
+			checkError();
+
+			ByteBuffer header = ByteBuffer.allocate(RegionFile.SECTOR_SIZE * 2);
+			synchronized (this) {
+				header.asIntBuffer().put(locations).put(timestamps);
+			}
+			long position = 0;
+			while (header.hasRemaining()) {
+				position += channel.write(header, position);
+			}
+
+			// Pad the last chunk to a full sector.
+			long end;
+			synchronized (this) {
+				end = (long) nextSector * RegionFile.SECTOR_SIZE;
+			}
+			if (channel.size() < end) {
+				channel.write(ByteBuffer.wrap(new byte[1]), end - 1);
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * The deflater and streams used to compress a chunk, which can be reused once
+	 * the chunk is written.
+	 */
+	private static class Compressor {
+		final Deflater deflater = new Deflater();
+		final SectorBuffer buffer = new SectorBuffer();
+		final DeflaterOutputStream deflaterStream = new DeflaterOutputStream(buffer, deflater, RegionFile.SECTOR_SIZE);
+		final DataOutputStream dataStream = new DataOutputStream(new BufferedOutputStream(deflaterStream, RegionFile.SECTOR_SIZE));
+		final NBTStreamWriter out = new NBTStreamWriter(dataStream);
+	}
+
+	/**
+	 * A byte array output stream that can hand out its buffer without copying.
+	 */
+	private static class SectorBuffer extends ByteArrayOutputStream {
+		SectorBuffer() {
+			super(RegionFile.SECTOR_SIZE);
+		}
+
+		ByteBuffer toByteBuffer() {
+			return ByteBuffer.wrap(buf, 0, count);
+		}
+
+		int capacity() {
+			return buf.length;
+		}
+	}
+}
@@ -0,0 +1,275 @@
+package org.scaffoldeditor.nbt.io;
+
+import java.io.IOException;
+
+import org.scaffoldeditor.nbt.block.BlockState;
+import org.scaffoldeditor.nbt.block.Section;
+import org.scaffoldeditor.nbt.util.PackedIntArray;
+
+import net.querz.nbt.tag.CompoundTag;
+import net.querz.nbt.tag.ListTag;
+import net.querz.nbt.tag.LongArrayTag;
+
+/**
+ * Converts chunk sections to and from the <code>Palette</code> and
+ * <code>BlockStates</code> tags of the
+ * <a href="https://minecraft.gamepedia.com/Chunk_format">chunk format</a>.
+ * Block states are packed straight from the section's own storage, without
+ * going through {@link org.scaffoldeditor.nbt.block.Block} objects or an
+ * intermediate index array.
+ * <br>
+ * Before 1.16, block state indices were packed end to end and could span two
+ * longs. From 1.16 onward, indices never span longs, leaving unused bits at the
+ * end of each one.
+ */
+public final class SectionCodec {
+	private SectionCodec() {}
+
+	/**
+	 * The first <a href="https://minecraft.gamepedia.com/Data_version">data
+	 * version</a> (20w17a) that packs block states without spanning longs.
+	 */
+	public static final int NON_SPANNING_VERSION = 2529;
+
+	/**
+	 * The smallest amount of bits Minecraft will pack a block state index into.
+	 */
+	private static final int MIN_BITS = 4;
+
+	/**
+	 * Check whether a data version packs block states across long boundaries.
+	 * @param dataVersion <a href="https://minecraft.gamepedia.com/Data_version">Data version</a> to check.
+	 * @return Whether indices may span two longs.
+	 */
+	public static boolean isSpanning(int dataVersion) {
+		return dataVersion < NON_SPANNING_VERSION;
+	}
+
+	/**
+	 * Encode a section into NBT.
+	 *
+	 * @param section  Section to encode.
+	 * @param y        Y index of the section in its chunk.
+	 * @param spanning Whether to use the pre-1.16 spanning layout.
+	 * @return The section's NBT, or <code>null</code> if the section doesn't have
+	 *         any non-air blocks.
+	 * @see #isSpanning(int)
+	 */
+	public static CompoundTag encode(Section section, byte y, boolean spanning) {
+		if (!section.hasBlocks()) {
+			return null;
+		}
+
+		// Only write the palette entries that are used. Air must always be the first in the palette.
+		ListTag<CompoundTag> palette = new ListTag<>(CompoundTag.class);
+		palette.add(BlockState.AIR.toPaletteEntry());
+		int[] remap = new int[section.getPaletteSize()];
+		int paletteSize = 1;
+
+		PackedIntArray indices = new PackedIntArray(Section.VOLUME, MIN_BITS);
+		if (section.isUniform()) {
+			// Non-air uniform sections always use palette index 1.
+			palette.add(section.getPaletteState(section.paletteIndexAt(0)).toPaletteEntry());
+			paletteSize++;
+			indices.fill(1);
+		} else {
+			for (int i = 0; i < Section.VOLUME; i++) {
+				int index = section.paletteIndexAt(i);
+				if (index <= 0) continue; // Missing blocks and air are both written as air.
+
+				int mapped = remap[index];
+				if (mapped == 0) {
+					mapped = paletteSize++;
+					remap[index] = mapped;
+					palette.add(section.getPaletteState(index).toPaletteEntry());
+				}
+				indices.set(i, mapped);
+			}
+		}
+
+		// The array widens as needed, so it's already the right width for the palette.
+		long[] blockStates = indices.getRaw();
+		if (spanning && 64 % indices.getBits() != 0) {
+			blockStates = packSpanning(indices);
+		}
+
+		CompoundTag nbt = new CompoundTag();
+		nbt.putByte("Y", y);
+		nbt.put("Palette", palette);
+		nbt.put("BlockStates", new LongArrayTag(blockStates));
+		return nbt;
+	}
+
+	/**
+	 * Stream a section's NBT as an element of a compound list. Produces the same
+	 * NBT as {@link #encode(Section, byte, boolean)} without building it in memory;
+	 * block states are packed into longs as they're written.
+	 *
+	 * @param section  Section to encode. Must have non-air blocks.
+	 * @param y        Y index of the section in its chunk.
+	 * @param spanning Whether to use the pre-1.16 spanning layout.
+	 * @param out      Writer to write to.
+	 * @throws IOException If an IO exception occurs.
+	 */
+	public static void encode(Section section, byte y, boolean spanning, NBTStreamWriter out) throws IOException {
+		// Map the section's palette onto the used entries, with air first.
+		int[] remap = new int[section.getPaletteSize()];
+		int[] used = new int[remap.length + 1];
+		int paletteSize = 1;
+		if (section.isUniform()) {
+			used[paletteSize] = section.paletteIndexAt(0);
+			remap[used[paletteSize]] = paletteSize++;
+		} else {
+			for (int i = 0; i < Section.VOLUME; i++) {
+				int index = section.paletteIndexAt(i);
+				if (index > 0 && remap[index] == 0) {
+					used[paletteSize] = index;
+					remap[index] = paletteSize++;
+				}
+			}
+		}
+
+		out.writeByte("Y", y);
+
+		out.beginList("Palette", CompoundTag.ID, paletteSize);
+		writePaletteEntry(BlockState.AIR, out);
+		for (int mapped = 1; mapped < paletteSize; mapped++) {
+			writePaletteEntry(section.getPaletteState(used[mapped]), out);
+		}
+
+		int bits = Math.max(MIN_BITS, PackedIntArray.bitsFor(paletteSize - 1));
+		if (spanning && 64 % bits != 0) {
+			out.beginLongArray("BlockStates", Section.VOLUME * bits / 64);
+			long cell = 0;
+			int cellBits = 0;
+			for (int i = 0; i < Section.VOLUME; i++) {
+				long value = mappedIndex(section, remap, i);
+				cell |= value << cellBits;
+				cellBits += bits;
+				if (cellBits >= 64) {
+					out.writeRawLong(cell);
+					cellBits -= 64;
+					cell = cellBits > 0 ? value >>> (bits - cellBits) : 0;
+				}
+			}
+		} else {
+			int valuesPerLong = 64 / bits;
+			out.beginLongArray("BlockStates", PackedIntArray.longsFor(Section.VOLUME, bits));
+			for (int start = 0; start < Section.VOLUME; start += valuesPerLong) {
+				long cell = 0;
+				int end = Math.min(start + valuesPerLong, Section.VOLUME);
+				for (int i = start; i < end; i++) {
+					cell |= (long) mappedIndex(section, remap, i) << ((i - start) * bits);
+				}
+				out.writeRawLong(cell);
+			}
+		}
+
+		out.endCompound();
+	}
+
+	private static int mappedIndex(Section section, int[] remap, int index) {
+		int paletteIndex = section.paletteIndexAt(index);
+		return paletteIndex > 0 ? remap[paletteIndex] : 0;
+	}
+
+	private static void writePaletteEntry(BlockState state, NBTStreamWriter out) throws IOException {
+		CompoundTag properties = state.toBlock().getProperties();
+		if (properties.size() > 0) {
+			out.writeTag("Properties", properties);
+		}
+		out.writeString("Name", state.getName());
+		out.endCompound();
+	}
+
+	/**
+	 * Decode a section from NBT.
+	 *
+	 * @param nbt      Section NBT.
+	 * @param spanning Whether the block states are expected to use the pre-1.16
+	 *                 spanning layout. If the length of the block states doesn't
+	 *                 match that layout but matches the other one, the other one
+	 *                 is used.
+	 * @return The decoded section, or <code>null</code> if the NBT doesn't have
+	 *         any blocks.
+	 * @throws IllegalArgumentException If the block states don't match the
+	 *                                  palette.
+	 */
+	public static Section decode(CompoundTag nbt, boolean spanning) {
+		if (!nbt.containsKey("Palette") || !nbt.containsKey("BlockStates")) {
+			return null;
+		}
+
+		ListTag<CompoundTag> paletteTag = nbt.getListTag("Palette").asCompoundTagList();
+		int[] palette = new int[paletteTag.size()];
+		for (int i = 0; i < palette.length; i++) {
+			palette[i] = BlockState.fromPaletteEntry(paletteTag.get(i)).getId();
+		}
+		if (palette.length == 0) {
+			return null;
+		}
+
+		long[] blockStates = nbt.getLongArray("BlockStates");
+		int bits = Math.max(MIN_BITS, PackedIntArray.bitsFor(palette.length - 1));
+		int spanningLength = Section.VOLUME * bits / 64;
+		int nonSpanningLength = PackedIntArray.longsFor(Section.VOLUME, bits);
+
+		if (blockStates.length != (spanning ? spanningLength : nonSpanningLength)) {
+			if (blockStates.length == spanningLength) {
+				spanning = true;
+			} else if (blockStates.length == nonSpanningLength) {
+				spanning = false;
+			} else {
+				throw new IllegalArgumentException("Section has " + blockStates.length
+						+ " block state longs, which doesn't match a palette of size " + palette.length);
+			}
+		}
+
+		PackedIntArray indices;
+		if (spanning && spanningLength != nonSpanningLength) {
+			indices = unpackSpanning(blockStates, bits);
+		} else {
+			// The layouts are identical when indices divide evenly into longs.
+			indices = new PackedIntArray(Section.VOLUME, bits, blockStates.clone());
+		}
+		return new Section(palette, indices);
+	}
+
+	/**
+	 * Pack indices end to end, letting them span two longs.
+	 */
+	private static long[] packSpanning(PackedIntArray indices) {
+		int bits = indices.getBits();
+		long[] data = new long[Section.VOLUME * bits / 64];
+		for (int i = 0; i < Section.VOLUME; i++) {
+			long value = indices.get(i);
+			int bitIndex = i * bits;
+			int cell = bitIndex >> 6;
+			int shift = bitIndex & 63;
+			data[cell] |= value << shift;
+			if (shift + bits > 64) {
+				data[cell + 1] |= value >>> (64 - shift);
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * Unpack indices that were packed end to end.
+	 */
+	private static PackedIntArray unpackSpanning(long[] data, int bits) {
+		PackedIntArray indices = new PackedIntArray(Section.VOLUME, bits);
+		long mask = (1L << bits) - 1;
+		for (int i = 0; i < Section.VOLUME; i++) {
+			int bitIndex = i * bits;
+			int cell = bitIndex >> 6;
+			int shift = bitIndex & 63;
+			long value = data[cell] >>> shift;
+			if (shift + bits > 64) {
+				value |= data[cell + 1] << (64 - shift);
+			}
+			indices.set(i, (int) (value & mask));
+		}
+		return indices;
+	}
+}
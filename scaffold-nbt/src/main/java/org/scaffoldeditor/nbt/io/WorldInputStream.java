@@ -106,7 +106,7 @@ public class WorldInputStream implements Closeable {
 
 			if (entry != 0) {
 				int chunkOffset = entry >>> 8;
-				int chunkSize = entry & 15;
+				int chunkSize = entry & 0xFF;
 
                 ChunkLocation chunkLocation = new ChunkLocation(chunkOffset * SECTOR_SIZE, chunkSize * SECTOR_SIZE);
                 chunkLocations.add(chunkLocation);
@@ -122,8 +122,8 @@ public class WorldOutputStream implements Closeable {
 
 				if (chunks.containsKey(coord)) {
 					// Convert bytes to 4KiB sectors.
-					byte length = (byte) (Math.ceil((double) (chunks.get(coord).length + 5) / 4096));
-					int offsetLength = (head << 8) | length & 15;
+					int length = (int) (Math.ceil((double) (chunks.get(coord).length + 5) / 4096));
+					int offsetLength = (head << 8) | length & 0xFF;
 
 					os.writeInt(offsetLength);
 					
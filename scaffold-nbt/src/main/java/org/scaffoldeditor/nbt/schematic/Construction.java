@@ -7,12 +7,15 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.StreamSupport;
 
 import org.joml.Vector3d;
 import org.joml.Vector3dc;
 import org.joml.Vector3i;
 import org.joml.Vector3ic;
 import org.scaffoldeditor.nbt.block.Block;
+import org.scaffoldeditor.nbt.block.BlockState;
+import org.scaffoldeditor.nbt.block.BlockVisitor;
 import org.scaffoldeditor.nbt.block.ChunkedBlockCollection;
 import org.scaffoldeditor.nbt.block.SizedBlockCollection;
 import org.scaffoldeditor.nbt.block.WorldMath.SectionCoordinate;
@@ -46,7 +49,7 @@ public class Construction implements ChunkedBlockCollection {
 			if (width < 0 || height < 0 || length < 0) {
 				throw new IllegalArgumentException("Width, height, and length of section must be positive!");
 			}
-						
+			
 			this.width = width;
 			this.length = length;
 			this.height = height;
@@ -57,7 +60,7 @@ public class Construction implements ChunkedBlockCollection {
 		
 		public final Map<CompoundTag, Vector3dc> entities = new HashMap<>();
 		public final Map<Vector3ic, CompoundTag> blockEntities = new HashMap<>();
-
+		
 		@Override
 		public Block blockAt(int x, int y, int z) {
 			int startX = relativeStartCoords[0];
@@ -65,14 +68,42 @@ public class Construction implements ChunkedBlockCollection {
 			int startZ = relativeStartCoords[2];
 			if (x >= width + startX || y >= height + startY || z >= length + startZ || x < startX || y < startY || z < startZ) return null;
 			int index = blocks[x - startX][y - startY][z - startZ];
-			return palette.get(index);
+			return index >= 0 ? palette.get(index) : null;
 		}
-
+		
+		/**
+		 * Get the block state at a particular location.
+		 * @return The block state, or <code>null</code> if there's no block.
+		 * @see #blockAt(int, int, int)
+		 */
+		public BlockState stateAt(int x, int y, int z) {
+			Block block = blockAt(x, y, z);
+			return block != null ? block.getState() : null;
+		}
+		
+		@Override
+		public void forEachBlock(BlockVisitor visitor) {
+			int startX = relativeStartCoords[0];
+			int startY = relativeStartCoords[1];
+			int startZ = relativeStartCoords[2];
+			for (int x = 0; x < width; x++) {
+				for (int y = 0; y < height; y++) {
+					for (int z = 0; z < length; z++) {
+						int index = blocks[x][y][z];
+						Block block = index >= 0 ? palette.get(index) : null;
+						if (block != null) {
+							visitor.visit(x + startX, y + startY, z + startZ, block.getState());
+						}
+					}
+				}
+			}
+		}
+		
 		@Override
 		public Vector3i getMin() {
 			return new Vector3i(relativeStartCoords[0], relativeStartCoords[1], relativeStartCoords[2]);
 		}
-
+		
 		@Override
 		public Vector3i getMax() {
 			return new Vector3i(relativeStartCoords[0] + width, relativeStartCoords[1] + height, relativeStartCoords[2] + length);
@@ -165,17 +196,17 @@ public class Construction implements ChunkedBlockCollection {
 			height = box.maxY - box.minY;
 			length = box.maxZ - box.minZ;
 		}
-
+		
 		@Override
 		public Block blockAt(int x, int y, int z) {
 			return Construction.this.blockAt(x + rootX, y + rootY, z + rootZ);
 		}
-
+		
 		@Override
 		public Vector3i getMin() {
 			return new Vector3i(0, 0, 0);
 		}
-
+		
 		@Override
 		public Vector3i getMax() {
 			return new Vector3i(width, height, length);
@@ -235,10 +266,25 @@ public class Construction implements ChunkedBlockCollection {
 		}	
 	}
 	
-	public final List<Block> palette = new ArrayList<>();
-	public final Map<SectionCoordinate, Section> sections = new HashMap<>();
+	public final List<Block> palette;
+	public final Map<SectionCoordinate, Section> sections;
 	public final List<SelectionBox> selectionBoxes = new ArrayList<>();
-
+	
+	public Construction() {
+		this(new ArrayList<>(), new HashMap<>());
+	}
+	
+	/**
+	 * Create a Construction with existing storage.
+	 * @param palette  The block palette.
+	 * @param sections The section map. May be a custom map, such as one that
+	 *                 loads sections on demand.
+	 */
+	public Construction(List<Block> palette, Map<SectionCoordinate, Section> sections) {
+		this.palette = palette;
+		this.sections = sections;
+	}
+	
 	/**
 	 * Obtain a {@link ConstructionSegment} from this Construction.
 	 * @param box Selection box to create the segment from.
@@ -247,7 +293,7 @@ public class Construction implements ChunkedBlockCollection {
 	public ConstructionSegment getSegment(SelectionBox box) {
 		return new ConstructionSegment(box);
 	}
-
+	
 	/**
 	 * Get the block at a location within the Construction.
 	 * <br> Note: By default, Construction uses the global coordinates
@@ -267,22 +313,36 @@ public class Construction implements ChunkedBlockCollection {
 	public SectionCoordinate sectionCoordAt(int x, int y, int z) {
 		return new SectionCoordinate(Math.floorDiv(x, 16), Math.floorDiv(y, 16), Math.floorDiv(z, 16));
 	}
-
+	
 	@Override
 	public Iterator<Vector3ic> iterator() {
-		return null;
+		return sections.entrySet().stream().flatMap(entry -> {
+			SectionCoordinate coord = entry.getKey();
+			return StreamSupport.stream(entry.getValue().spliterator(), false).map(pos -> (Vector3ic) coord.resolve(pos));
+		}).iterator();
 	}
-
+	
+	@Override
+	public void forEachBlock(BlockVisitor visitor) {
+		for (Map.Entry<SectionCoordinate, Section> entry : sections.entrySet()) {
+			SectionCoordinate coord = entry.getKey();
+			int startX = coord.getStartX();
+			int startY = coord.getStartY();
+			int startZ = coord.getStartZ();
+			entry.getValue().forEachBlock((x, y, z, state) -> visitor.visit(x + startX, y + startY, z + startZ, state));
+		}
+	}
+	
 	@Override
 	public int getSectionWidth() {
 		return 16;
 	}
-
+	
 	@Override
 	public int getSectionLength() {
 		return 16;
 	}
-
+	
 	@Override
 	public int getSectionHeight() {
 		return 16;
@@ -310,26 +370,26 @@ public class Construction implements ChunkedBlockCollection {
 		if (section == null) return null;
 		return section.blockEntityAt(secCoord.relativize(vec));
 	}
-
+	
 	@Override
 	public Map<CompoundTag, Vector3dc> getEntities() {
 		Map<CompoundTag, Vector3dc> entities = new HashMap<>();
-
+		
 		for (SectionCoordinate secCoord : sections.keySet()) {
 			Map<CompoundTag, Vector3dc> ents = sections.get(secCoord).getEntities();
 			for (CompoundTag ent : ents.keySet()) {
 				entities.put(ent, new Vector3d(secCoord.getStartPos()).add(ents.get(ent)));
 			}
 		}
-
+		
 		return entities;
 	}
-
+	
 	@Override
 	public Section sectionAt(int x, int y, int z) {
 		return sections.get(new SectionCoordinate(x, y, z));
 	}
-
+	
 	@Override
 	public Set<Vector3ic> getSections() {
 		Set<Vector3ic> set = new HashSet<>();
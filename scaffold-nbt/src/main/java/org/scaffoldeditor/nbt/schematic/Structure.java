@@ -2,9 +2,8 @@ package org.scaffoldeditor.nbt.schematic;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -14,7 +13,10 @@ import org.joml.Vector3i;
 import org.joml.Vector3ic;
 import org.scaffoldeditor.nbt.block.Block;
 import org.scaffoldeditor.nbt.block.BlockReader;
+import org.scaffoldeditor.nbt.block.BlockState;
+import org.scaffoldeditor.nbt.block.BlockVisitor;
 import org.scaffoldeditor.nbt.block.SizedBlockCollection;
+import org.scaffoldeditor.nbt.util.LongObjectMap;
 
 import net.querz.nbt.io.NBTDeserializer;
 import net.querz.nbt.tag.CompoundTag;
@@ -28,15 +30,37 @@ import net.querz.nbt.tag.ListTag;
  */
 public class Structure implements SizedBlockCollection, BlockReader<Structure> {
 	
-	private CompoundTag[] palette;
-	private List<CompoundTag> blocks;
+	/**
+	 * Structures with fewer than one block per this many positions are indexed
+	 * sparsely.
+	 */
+	private static final int SPARSE_RATIO = 8;
+	
+	/**
+	 * The largest volume that will be indexed densely.
+	 */
+	private static final long MAX_DENSE_VOLUME = 1 << 26;
+	
+	private BlockState[] palette;
 	private Map<CompoundTag, Vector3dc> entities = new HashMap<>();
 	private Map<Vector3ic, CompoundTag> blockEntities = new HashMap<>();
 	
+	/**
+	 * The palette index at every position in YZX order, or -1 where the block is
+	 * void. <code>null</code> if the structure is indexed sparsely.
+	 */
+	private int[] states;
+	
+	/**
+	 * The block states in the structure, keyed by their YZX position index.
+	 * <code>null</code> if the structure is indexed densely.
+	 */
+	private LongObjectMap<BlockState> sparseStates;
+	
 	private int sizeX;
 	private int sizeY;
 	private int sizeZ;
-		
+	
 	/**
 	 * Get the name of the block at a particular location.
 	 * @param x X coordinate
@@ -46,54 +70,41 @@ public class Structure implements SizedBlockCollection, BlockReader<Structure> {
 	 */
 	@Override
 	public Block blockAt(int x, int y, int z) {
-
-		int state = getState(blockMapAt(x,y,z));
-
-		if (state == -1) {
-			return null;
-		}
-		
-		// Get block from palette
-		return Block.fromBlockPalleteEntry(palette[state]);
+		BlockState state = stateAt(x, y, z);
+		return state != null ? state.toBlock() : null;
 	}
-	
-	/**
-	 * Get the index in the pallete of a block map
-	 * @param block Block to check
-	 * @return Palette index (-1 if non existant)
-	 */
-	private int getState(CompoundTag block) {
-		if (block == null) {
-			return -1;
-		}
-
-		return (block.getIntTag("state")).asInt();
+		
+	@Override
+	public boolean hasBlock(int x, int y, int z) {
+		return stateAt(x, y, z) != null;
 	}
-
-	
+		
 	/**
-	 * Get the compound map of the block at a set of coordinates
+	 * Get the block state at a particular location.
 	 * @param x X coordinate
 	 * @param y Y coordinate
 	 * @param z Z coordinate
-	 * @return Block map (NULL IF BLOCK IS VOID)
+	 * @return Block state (NULL IF BLOCK IS VOID)
 	 */
-	private CompoundTag blockMapAt(int x, int y, int z) {
-		for (CompoundTag block : blocks) {
-			ListTag<IntTag> coordTag = block.getListTag("pos").asIntTagList();
-			List<Integer> coords = new ArrayList<>();
-			
-			for (IntTag t : coordTag) {
-				coords.add(t.asInt());
-			}
-			
-			if (coords.get(0) == x &&
-					coords.get(1) == y &&
-					coords.get(2) == z) {
-				return block;
-			}
+	public BlockState stateAt(int x, int y, int z) {
+		if (!isInBounds(x, y, z)) {
+			return null;
 		}
-		return null;
+		
+		long index = indexOf(x, y, z);
+		if (states != null) {
+			int state = states[(int) index];
+			return state >= 0 ? palette[state] : null;
+		}
+		return sparseStates.get(index);
+	}
+	
+	private boolean isInBounds(int x, int y, int z) {
+		return x >= 0 && y >= 0 && z >= 0 && x < sizeX && y < sizeY && z < sizeZ;
+	}
+		
+	private long indexOf(int x, int y, int z) {
+		return ((long) y * sizeZ + z) * sizeX + x;
 	}
 	
 	/**
@@ -104,31 +115,44 @@ public class Structure implements SizedBlockCollection, BlockReader<Structure> {
 	 * @param z Z coordinate
 	 * @param state Index in palette of new block (-1 for deleting block)
 	 */
-	@SuppressWarnings("unused")
 	private void setBlockAt(int x, int y, int z, int state) {
-		CompoundTag blockMap = blockMapAt(x,y,z);
+		if (!isInBounds(x, y, z)) {
+			throw new IllegalArgumentException("Block at " + x + ", " + y + ", " + z + " is outside the structure!");
+		}
+		if (state < -1 || state >= palette.length) {
+			throw new IllegalArgumentException("Block at " + x + ", " + y + ", " + z + " has invalid palette index " + state + "!");
+		}
+		
+		long index = indexOf(x, y, z);
+		if (states != null) {
+			states[(int) index] = state;
+		} else {
+			sparseStates.put(index, state >= 0 ? palette[state] : null);
+		}
+	}
+	
+	@Override
+	public void forEachBlock(BlockVisitor visitor) {
+		if (states == null) {
+			sparseStates.forEach((index, state) -> {
+				int x = (int) (index % sizeX);
+				int z = (int) (index / sizeX % sizeZ);
+				int y = (int) (index / sizeX / sizeZ);
+				visitor.visit(x, y, z, state);
+			});
+			return;
+		}
 		
-		// If block  doesn't already exist
-		if (blockMap == null) {
-			if (state == -1) {
-				return;
+		int index = 0;
+		for (int y = 0; y < sizeY; y++) {
+			for (int z = 0; z < sizeZ; z++) {
+				for (int x = 0; x < sizeX; x++) {
+					int state = states[index++];
+					if (state >= 0) {
+						visitor.visit(x, y, z, palette[state]);
+					}
+				}
 			}
-			// Create new block
-			blockMap = new CompoundTag();
-			
-			ListTag<IntTag> coords = new ListTag<>(IntTag.class);
-			coords.add(new IntTag(x));
-			coords.add(new IntTag(y));
-			coords.add(new IntTag(z));
-			blockMap.put("pos", coords);
-			
-			blockMap.put("state", new IntTag(state));
-			blocks.add(blockMap);
-			
-			
-		} else { // Block already exists
-			blockMap.remove("state");
-			blockMap.put("state", new IntTag(state));
 		}
 	}
 	
@@ -147,10 +171,31 @@ public class Structure implements SizedBlockCollection, BlockReader<Structure> {
 		return entities;
 	}
 	
-	private static Vector3i decodeLocation(ListTag<IntTag> tag) {
-		return new Vector3i(tag.get(0).asInt(), tag.get(1).asInt(), tag.get(2).asInt());
+	/**
+	 * Build the position index from a structure's block list. Structures that are
+	 * mostly void are indexed in a hash map rather than a full array.
+	 */
+	private void indexBlocks(ListTag<CompoundTag> blocksTag) {
+		long volume = (long) sizeX * sizeY * sizeZ;
+		if (volume <= MAX_DENSE_VOLUME && (long) blocksTag.size() * SPARSE_RATIO >= volume) {
+			states = new int[(int) volume];
+			Arrays.fill(states, -1);
+		} else {
+			sparseStates = new LongObjectMap<>(blocksTag.size());
+		}
+	
+		for (CompoundTag block : blocksTag) {
+			ListTag<IntTag> pos = block.getListTag("pos").asIntTagList();
+			int x = pos.get(0).asInt();
+			int y = pos.get(1).asInt();
+			int z = pos.get(2).asInt();
+			setBlockAt(x, y, z, block.getInt("state"));
+			
+			if (block.containsKey("nbt")) {
+				blockEntities.put(new Vector3i(x, y, z), block.getCompoundTag("nbt"));
+			}
+		}
 	}
-		
 	
 	public String toString() {
 		return "Structure with size: "+sizeX+", "+sizeY+", "+sizeZ;
@@ -171,28 +216,31 @@ public class Structure implements SizedBlockCollection, BlockReader<Structure> {
 		}
 		
 		
-		if (sizeList.get(0) == null || sizeList.get(1) == null || sizeList.get(2) == null) {
+		if (sizeList.get(0) == null || sizeList.get(1) == null || sizeList.get(2) == null
+				|| sizeList.get(0).asInt() < 0 || sizeList.get(1).asInt() < 0 || sizeList.get(2).asInt() < 0) {
 			throw new IllegalArgumentException("Structure has improperly formatted size tag!");
 		}
 		
 		structure.sizeX = sizeList.get(0).asInt();
 		structure.sizeY = sizeList.get(1).asInt();
 		structure.sizeZ = sizeList.get(2).asInt();
-				
+		
 		// Load palette
 		ListTag<CompoundTag> paletteTag = map.getListTag("palette").asCompoundTagList();
 		if (paletteTag == null) {
 			throw new IllegalArgumentException("Structure missing palette tag!");
 		}
-		List<CompoundTag> palleteList = getCompoundMaps(paletteTag);
-		structure.palette = palleteList.toArray(new CompoundTag[palleteList.size()]);
-				
+		structure.palette = new BlockState[paletteTag.size()];
+		for (int i = 0; i < structure.palette.length; i++) {
+			structure.palette[i] = BlockState.fromPaletteEntry(paletteTag.get(i));
+		}
+		
 		// Load blocks
 		ListTag<CompoundTag> blocksTag = map.getListTag("blocks").asCompoundTagList();
 		if (blocksTag == null) {
 			throw new IllegalArgumentException("Structure missing blocks tag!");
 		}
-		structure.blocks = getCompoundMaps(blocksTag);
+		structure.indexBlocks(blocksTag);
 		
 		// Load entities
 		ListTag<CompoundTag> entitiesTag = map.getListTag("entities").asCompoundTagList();
@@ -202,13 +250,6 @@ public class Structure implements SizedBlockCollection, BlockReader<Structure> {
 			}
 		}
 		
-		// Load block entities
-		for (CompoundTag block : structure.blocks) {
-			if (block.containsKey("nbt")) {
-				structure.blockEntities.put(decodeLocation(block.getListTag("pos").asIntTagList()), block.getCompoundTag("nbt"));
-			}
-		}
-		
 		return structure;
 	}
 	
@@ -216,17 +257,6 @@ public class Structure implements SizedBlockCollection, BlockReader<Structure> {
 		return new Vector3d(tag.get(0).asDouble(), tag.get(1).asDouble(), tag.get(2).asDouble());
 	}
 	
-	/*
-	 * Convert a ListTag of CompoundTags to a List of CompoundMaps
-	 */
-	private static List<CompoundTag> getCompoundMaps(ListTag<CompoundTag> listTag) {
-		List<CompoundTag> mapList = new ArrayList<>();
-		for (CompoundTag t : listTag) {
-			mapList.add(t);
-		}
-		return mapList;
-	}
-
 	@Override
 	public Structure readBlockCollection(InputStream in) throws IOException {
 		CompoundTag map = (CompoundTag) new NBTDeserializer(true).fromStream(in).getTag();
@@ -237,12 +267,12 @@ public class Structure implements SizedBlockCollection, BlockReader<Structure> {
 		
 		return fromCompoundMap(map);
 	}
-
+	
 	@Override
 	public Vector3i getMin() {
 		return new Vector3i(0, 0, 0);
 	}
-
+	
 	@Override
 	public Vector3i getMax() {
 		return new Vector3i(sizeX, sizeY, sizeZ);
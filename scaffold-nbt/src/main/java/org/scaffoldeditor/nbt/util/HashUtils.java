@@ -0,0 +1,81 @@
+package org.scaffoldeditor.nbt.util;
+
+import net.querz.nbt.tag.Tag;
+
+/**
+ * Utility functions for calculating 64-bit content hashes. Unlike
+ * {@link Object#hashCode()}, these hashes only depend on content, so they're
+ * stable between runs and can be persisted.
+ */
+public final class HashUtils {
+	private HashUtils() {}
+
+	/**
+	 * The value to start a hash with.
+	 */
+	public static final long SEED = 0xcbf29ce484222325L;
+
+	private static final long PRIME = 0x100000001b3L;
+
+	/**
+	 * Mix a value into a hash.
+	 * @param hash  Hash to mix into.
+	 * @param value Value to mix in.
+	 * @return The new hash.
+	 */
+	public static long mix(long hash, long value) {
+		hash = (hash ^ value) * PRIME;
+		return hash ^ hash >>> 29;
+	}
+
+	/**
+	 * Mix a string into a hash.
+	 * @param hash  Hash to mix into.
+	 * @param value String to mix in. May be <code>null</code>.
+	 * @return The new hash.
+	 */
+	public static long mix(long hash, String value) {
+		if (value == null) return mix(hash, 0);
+		for (int i = 0; i < value.length(); i++) {
+			hash = (hash ^ value.charAt(i)) * PRIME;
+		}
+		return mix(hash, value.length());
+	}
+
+	/**
+	 * Mix an array of bytes into a hash.
+	 * @param hash  Hash to mix into.
+	 * @param value Bytes to mix in.
+	 * @return The new hash.
+	 */
+	public static long mix(long hash, byte[] value) {
+		return mix(mixBytes(hash, value, 0, value.length), value.length);
+	}
+
+	/**
+	 * Mix part of an array of bytes into a hash without its length. Mixing
+	 * consecutive ranges this way and then mixing in the total length gives the
+	 * same hash as {@link #mix(long, byte[])}, so streamed data can be hashed.
+	 * @param hash  Hash to mix into.
+	 * @param value Bytes to mix in.
+	 * @param off   Index of the first byte to mix in.
+	 * @param len   Number of bytes to mix in.
+	 * @return The new hash.
+	 */
+	public static long mixBytes(long hash, byte[] value, int off, int len) {
+		for (int i = off; i < off + len; i++) {
+			hash = (hash ^ (value[i] & 0xFF)) * PRIME;
+		}
+		return hash;
+	}
+
+	/**
+	 * Mix an NBT tag into a hash, using its SNBT representation.
+	 * @param hash  Hash to mix into.
+	 * @param value Tag to mix in. May be <code>null</code>.
+	 * @return The new hash.
+	 */
+	public static long mix(long hash, Tag<?> value) {
+		return mix(hash, value == null ? null : value.valueToString());
+	}
+}
@@ -0,0 +1,276 @@
+package org.scaffoldeditor.nbt.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An open-addressing hash map with primitive <code>long</code> keys. Lookups
+ * don't box their keys or allocate, which makes this suitable for maps that
+ * are queried once per block.
+ * <br>
+ * <code>null</code> values are not supported; putting <code>null</code>
+ * removes the key instead. Not thread-safe.
+ *
+ * @param <V> Value type.
+ */
+public class LongObjectMap<V> {
+
+	/**
+	 * A callback for {@link LongObjectMap#forEach}.
+	 */
+	public interface EntryConsumer<V> {
+		void accept(long key, V value);
+	}
+
+	/**
+	 * Marks a slot whose entry has been removed, so probing continues past it.
+	 */
+	private static final Object REMOVED = new Object();
+
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	private Object[] values;
+	private int mask;
+	private int size;
+	/** Amount of slots that are either occupied or removed. */
+	private int used;
+
+	public LongObjectMap() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * Create a map with room for a certain amount of entries.
+	 * @param expectedSize Amount of entries expected in the map.
+	 */
+	public LongObjectMap(int expectedSize) {
+		allocate(capacityFor(expectedSize));
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+		used = size;
+	}
+
+	private static int capacityFor(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity * 3 / 4 < expectedSize) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ h >>> 32);
+	}
+
+	/**
+	 * Find the slot a key is stored in.
+	 * @return The slot index, or <code>-1</code> if the key isn't in the map.
+	 */
+	private int find(long key) {
+		int i = hash(key) & mask;
+		Object value;
+		while ((value = values[i]) != null) {
+			if (value != REMOVED && keys[i] == key) return i;
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the value assigned to a key.
+	 * @param key Key to look up.
+	 * @return The value, or <code>null</code> if the key isn't in the map.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int i = hash(key) & mask;
+		Object value;
+		while ((value = values[i]) != null) {
+			if (value != REMOVED && keys[i] == key) return (V) value;
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Check if a key is in the map.
+	 * @param key Key to check.
+	 * @return Whether it has a value.
+	 */
+	public boolean containsKey(long key) {
+		return find(key) >= 0;
+	}
+
+	/**
+	 * Assign a value to a key.
+	 * @param key   Key to assign.
+	 * @param value Value to assign. <code>null</code> removes the key.
+	 * @return The value that was previously assigned, or <code>null</code> if
+	 *         there was none.
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (value == null) return remove(key);
+
+		int i = hash(key) & mask;
+		int free = -1;
+		Object current;
+		while ((current = values[i]) != null) {
+			if (current == REMOVED) {
+				if (free < 0) free = i;
+			} else if (keys[i] == key) {
+				values[i] = value;
+				return (V) current;
+			}
+			i = (i + 1) & mask;
+		}
+
+		if (free < 0) {
+			free = i;
+			used++;
+		}
+		keys[free] = key;
+		values[free] = value;
+		size++;
+
+		if (used > (mask + 1) * 3 / 4) {
+			rehash(capacityFor(size + 1));
+		}
+		return null;
+	}
+
+	/**
+	 * Remove a key from the map.
+	 * @param key Key to remove.
+	 * @return The value that was assigned to it, or <code>null</code> if there
+	 *         was none.
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int i = find(key);
+		if (i < 0) return null;
+		V old = (V) values[i];
+		values[i] = REMOVED;
+		size--;
+		return old;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(capacity);
+
+		for (int i = 0; i < oldValues.length; i++) {
+			Object value = oldValues[i];
+			if (value == null || value == REMOVED) continue;
+			int slot = hash(oldKeys[i]) & mask;
+			while (values[slot] != null) {
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = oldKeys[i];
+			values[slot] = value;
+		}
+	}
+
+	/**
+	 * Get the amount of entries in the map.
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Remove all entries from the map.
+	 */
+	public void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+		used = 0;
+	}
+
+	/**
+	 * Call a function on every entry in the map.
+	 * @param consumer Function to call.
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(EntryConsumer<? super V> consumer) {
+		for (int i = 0; i < values.length; i++) {
+			Object value = values[i];
+			if (value != null && value != REMOVED) {
+				consumer.accept(keys[i], (V) value);
+			}
+		}
+	}
+
+	/**
+	 * Create a cursor that iterates over every entry in the map. Entries may be
+	 * removed with {@link Cursor#remove()} during iteration, but any other
+	 * modification invalidates the cursor.
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	/**
+	 * Iterates over the entries of a {@link LongObjectMap} without allocating
+	 * an entry object per element.
+	 */
+	public class Cursor implements Iterator<V> {
+		private int next = -1;
+		private int current = -1;
+
+		private Cursor() {
+			advance();
+		}
+
+		private void advance() {
+			do {
+				next++;
+			} while (next < values.length && (values[next] == null || values[next] == REMOVED));
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next < values.length;
+		}
+
+		/**
+		 * Move to the next entry.
+		 * @return The entry's value.
+		 */
+		@Override
+		@SuppressWarnings("unchecked")
+		public V next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			current = next;
+			advance();
+			return (V) values[current];
+		}
+
+		/**
+		 * Get the key of the entry last returned by {@link #next()}.
+		 */
+		public long key() {
+			if (current < 0) throw new IllegalStateException();
+			return keys[current];
+		}
+
+		@Override
+		public void remove() {
+			if (current < 0 || values[current] == REMOVED) throw new IllegalStateException();
+			values[current] = REMOVED;
+			size--;
+		}
+	}
+}
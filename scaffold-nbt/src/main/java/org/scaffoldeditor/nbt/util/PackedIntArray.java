@@ -0,0 +1,211 @@
+package org.scaffoldeditor.nbt.util;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-length array of unsigned integers, bit-packed into a
+ * <code>long[]</code>. Values never span two longs (the same layout Minecraft
+ * uses for block states from 1.16 onward), and the bit width is widened
+ * automatically when a value is set that doesn't fit.
+ */
+public class PackedIntArray {
+
+	private final int size;
+	private int bits;
+	private int valuesPerLong;
+	private long mask;
+	private long[] data;
+
+	/**
+	 * Create a packed int array filled with zeros.
+	 * @param size Amount of values in the array.
+	 * @param bits Initial amount of bits per value.
+	 */
+	public PackedIntArray(int size, int bits) {
+		this(size, bits, null);
+	}
+
+	/**
+	 * Wrap an existing long array that's already packed in this class's layout.
+	 * The array is not copied.
+	 * @param size Amount of values in the array.
+	 * @param bits Amount of bits per value.
+	 * @param data Packed values, or <code>null</code> to start with zeros.
+	 * @throws IllegalArgumentException If <code>data</code> is the wrong length
+	 *                                  for the size and bit width.
+	 */
+	public PackedIntArray(int size, int bits, long[] data) {
+		if (size < 0) {
+			throw new IllegalArgumentException("Array size must be positive!");
+		}
+		if (bits < 1 || bits > 32) {
+			throw new IllegalArgumentException("Bits per value must be between 1 and 32!");
+		}
+		this.size = size;
+		setBits(bits);
+
+		int length = longsFor(size, bits);
+		if (data == null) {
+			data = new long[length];
+		} else if (data.length != length) {
+			throw new IllegalArgumentException("Expected " + length + " longs to pack " + size + " values into "
+					+ bits + " bits, but got " + data.length + "!");
+		}
+		this.data = data;
+	}
+
+	/**
+	 * Get the amount of longs needed to pack values without spanning.
+	 * @param size Amount of values.
+	 * @param bits Amount of bits per value.
+	 * @return Amount of longs.
+	 */
+	public static int longsFor(int size, int bits) {
+		int valuesPerLong = 64 / bits;
+		return (size + valuesPerLong - 1) / valuesPerLong;
+	}
+
+	private PackedIntArray(PackedIntArray other) {
+		this.size = other.size;
+		setBits(other.bits);
+		this.data = other.data.clone();
+	}
+
+	private void setBits(int bits) {
+		this.bits = bits;
+		this.valuesPerLong = 64 / bits;
+		this.mask = (1L << bits) - 1;
+	}
+
+	/**
+	 * Get a value from the array.
+	 * @param index Index to get.
+	 * @return The value.
+	 */
+	public int get(int index) {
+		int cell = index / valuesPerLong;
+		int shift = (index - cell * valuesPerLong) * bits;
+		return (int) (data[cell] >>> shift & mask);
+	}
+
+	/**
+	 * Set a value in the array, widening the array if it doesn't fit in the
+	 * current bit width.
+	 * @param index Index to set.
+	 * @param value Value to set. Must not be negative.
+	 */
+	public void set(int index, int value) {
+		if (value < 0) {
+			throw new IllegalArgumentException("Packed int arrays can only hold positive values!");
+		}
+		if (value > mask) {
+			resize(bitsFor(value));
+		}
+		int cell = index / valuesPerLong;
+		int shift = (index - cell * valuesPerLong) * bits;
+		data[cell] = data[cell] & ~(mask << shift) | ((long) value & mask) << shift;
+	}
+
+	/**
+	 * Set every value in the array.
+	 * @param value Value to set. Must not be negative.
+	 */
+	public void fill(int value) {
+		if (value < 0) {
+			throw new IllegalArgumentException("Packed int arrays can only hold positive values!");
+		}
+		if (value > mask) {
+			resize(bitsFor(value));
+		}
+		long cell = 0;
+		for (int i = 0; i < valuesPerLong; i++) {
+			cell |= ((long) value & mask) << (i * bits);
+		}
+		Arrays.fill(data, cell);
+	}
+
+	/**
+	 * Re-pack the array with a different bit width.
+	 * @param newBits New amount of bits per value. Must be able to hold every
+	 *                value currently in the array.
+	 */
+	public void resize(int newBits) {
+		if (newBits == bits) return;
+		if (newBits < 1 || newBits > 32) {
+			throw new IllegalArgumentException("Bits per value must be between 1 and 32!");
+		}
+		int oldBits = bits;
+		int oldValuesPerLong = valuesPerLong;
+		long oldMask = mask;
+		long[] oldData = data;
+
+		setBits(newBits);
+		data = new long[longsFor(size, newBits)];
+
+		for (int i = 0; i < size; i++) {
+			int oldCell = i / oldValuesPerLong;
+			int value = (int) (oldData[oldCell] >>> ((i - oldCell * oldValuesPerLong) * oldBits) & oldMask);
+			if (value > mask) {
+				throw new IllegalArgumentException("Value " + value + " does not fit in " + newBits + " bits!");
+			}
+			int cell = i / valuesPerLong;
+			data[cell] |= (long) value << ((i - cell * valuesPerLong) * bits);
+		}
+	}
+
+	/**
+	 * Copy all the values from this array into an int array.
+	 * @param dest Array to copy into. Must be at least {@link #size()} long.
+	 * @return <code>dest</code>
+	 */
+	public int[] toArray(int[] dest) {
+		int index = 0;
+		for (int cell = 0; cell < data.length; cell++) {
+			long value = data[cell];
+			for (int i = 0; i < valuesPerLong && index < size; i++) {
+				dest[index] = (int) (value & mask);
+				value >>>= bits;
+				index++;
+			}
+		}
+		return dest;
+	}
+
+	/**
+	 * Get the amount of values in the array.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the amount of bits used to store each value.
+	 */
+	public int getBits() {
+		return bits;
+	}
+
+	/**
+	 * Get the long array backing this packed array. Changes to it will be
+	 * reflected in this array until it is resized.
+	 */
+	public long[] getRaw() {
+		return data;
+	}
+
+	/**
+	 * Create an independent copy of this array.
+	 */
+	public PackedIntArray copy() {
+		return new PackedIntArray(this);
+	}
+
+	/**
+	 * Get the minimum amount of bits needed to store a value.
+	 * @param maxValue Largest value that needs to be stored.
+	 * @return Bit count (at least 1).
+	 */
+	public static int bitsFor(int maxValue) {
+		return Math.max(1, 32 - Integer.numberOfLeadingZeros(maxValue));
+	}
+}
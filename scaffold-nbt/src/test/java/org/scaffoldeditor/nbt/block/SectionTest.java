@@ -0,0 +1,134 @@
+package org.scaffoldeditor.nbt.block;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SectionTest {
+	private static final BlockState STONE = BlockState.of("minecraft:stone", null);
+	private static final BlockState DIRT = BlockState.of("minecraft:dirt", null);
+
+	private static BlockState state(int i) {
+		return BlockState.of("test:block_" + i, null);
+	}
+
+	@Test
+	public void testEmpty() {
+		Section section = new Section();
+		assertTrue(section.isUniform());
+		assertFalse(section.hasBlocks());
+		assertNull(section.stateAt(3, 4, 5));
+		assertFalse(section.hasBlock(3, 4, 5));
+	}
+
+	@Test
+	public void testSetBlock() {
+		Section section = new Section();
+		for (int i = 0; i < Section.VOLUME; i++) {
+			int x = i & 15, y = i >> 8, z = i >> 4 & 15;
+			section.setBlock(x, y, z, state(i % 300), null);
+		}
+		assertFalse(section.isUniform());
+		assertEquals(Section.VOLUME, section.getNonAirCount());
+		for (int i = 0; i < Section.VOLUME; i++) {
+			int x = i & 15, y = i >> 8, z = i >> 4 & 15;
+			assertEquals(i, Section.index(x, y, z));
+			assertSame(state(i % 300), section.stateAt(x, y, z));
+		}
+	}
+
+	@Test
+	public void testUniform() {
+		Section section = new Section(STONE, null);
+		assertTrue(section.isUniform());
+		assertEquals(Section.VOLUME, section.getNonAirCount());
+		assertSame(STONE, section.stateAt(15, 15, 15));
+
+		section.setBlock(1, 2, 3, DIRT, null);
+		assertFalse(section.isUniform());
+		assertEquals(Section.VOLUME, section.getNonAirCount());
+		assertSame(DIRT, section.stateAt(1, 2, 3));
+		assertSame(STONE, section.stateAt(0, 0, 0));
+
+		section.setBlock(1, 2, 3, BlockState.AIR, null);
+		assertEquals(Section.VOLUME - 1, section.getNonAirCount());
+		assertTrue(section.hasBlock(1, 2, 3));
+		assertFalse(section.blockExists(1, 2, 3));
+
+		section.setBlock(1, 2, 3, (BlockState) null, null);
+		assertFalse(section.hasBlock(1, 2, 3));
+	}
+
+	@Test
+	public void testOwners() {
+		Object first = new Object();
+		Object second = new Object();
+		Section section = new Section(STONE, first);
+		section.setBlock(0, 0, 0, DIRT, second);
+		section.setBlock(1, 0, 0, DIRT, null);
+
+		assertSame(second, section.getOwner(0, 0, 0));
+		assertSame(first, section.getOwner(1, 0, 0));
+		assertSame(first, section.getOwner(15, 15, 15));
+	}
+
+	@Test
+	public void testCopyFrom() {
+		Object owner = new Object();
+		Section source = new Section();
+		source.setBlock(0, 0, 0, STONE, null);
+		source.setBlock(1, 0, 0, BlockState.AIR, null);
+
+		Section target = new Section(DIRT, null);
+		target.copyFrom(source, false, false, owner);
+		assertSame(DIRT, target.stateAt(0, 0, 0));
+
+		target.copyFrom(source, true, false, owner);
+		assertSame(STONE, target.stateAt(0, 0, 0));
+		assertSame(owner, target.getOwner(0, 0, 0));
+		assertSame(DIRT, target.stateAt(1, 0, 0));
+		assertNull(target.getOwner(1, 0, 0));
+
+		target.copyFrom(source, true, true, owner);
+		assertSame(BlockState.AIR, target.stateAt(1, 0, 0));
+		assertSame(DIRT, target.stateAt(2, 0, 0));
+	}
+
+	@Test
+	public void testMergeFrom() {
+		Object owner = new Object();
+		Section source = new Section();
+		source.setBlock(0, 0, 0, STONE, owner);
+		source.setBlock(1, 0, 0, BlockState.AIR, null);
+
+		Object oldOwner = new Object();
+		Section target = new Section(DIRT, oldOwner);
+		target.mergeFrom(source);
+		assertSame(STONE, target.stateAt(0, 0, 0));
+		assertSame(owner, target.getOwner(0, 0, 0));
+		assertSame(BlockState.AIR, target.stateAt(1, 0, 0));
+		assertSame(oldOwner, target.getOwner(1, 0, 0));
+		assertSame(DIRT, target.stateAt(2, 0, 0));
+	}
+
+	@Test
+	public void testContentHash() {
+		Section uniform = new Section(STONE, null);
+		Section packed = new Section();
+		for (int i = 0; i < Section.VOLUME; i++) {
+			packed.setBlock(i & 15, i >> 8, i >> 4 & 15, STONE, null);
+		}
+		packed.setBlock(0, 0, 0, DIRT, null);
+		assertFalse(uniform.contentHash() == packed.contentHash());
+
+		packed.setBlock(0, 0, 0, STONE, null);
+		assertEquals(uniform.contentHash(), packed.contentHash());
+
+		// Missing blocks hash the same as air.
+		assertEquals(new Section().contentHash(), new Section(BlockState.AIR, null).contentHash());
+	}
+}
@@ -0,0 +1,211 @@
+package org.scaffoldeditor.nbt.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.querz.nbt.tag.CompoundTag;
+import net.querz.nbt.tag.LongArrayTag;
+
+public class RegionFileTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Create chunk NBT with a payload of random (incompressible) longs.
+	 */
+	private static CompoundTag createChunk(int x, int z, int longs) {
+		Random random = new Random(x * 31 + z);
+		long[] data = new long[longs];
+		for (int i = 0; i < longs; i++) {
+			data[i] = random.nextLong();
+		}
+
+		CompoundTag chunk = new CompoundTag();
+		chunk.putInt("xPos", x);
+		chunk.putInt("zPos", z);
+		chunk.putString("Status", "full");
+		chunk.put("Data", new LongArrayTag(data));
+		return chunk;
+	}
+
+	private static int payloadSize(int x, int z) {
+		// Mix chunks that fit in one sector with ones that need several.
+		return (x + z) % 3 == 0 ? 16 : 600 * (x % 5 + 1);
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		File file = folder.newFile("r.0.0.mca");
+		try (RegionFileWriter writer = new RegionFileWriter(file)) {
+			for (int z = 0; z < RegionFile.REGION_WIDTH; z += 2) {
+				for (int x = 0; x < RegionFile.REGION_WIDTH; x++) {
+					writer.write(x, z, createChunk(x, z, payloadSize(x, z)));
+				}
+			}
+		}
+		assertEquals(0, file.length() % RegionFile.SECTOR_SIZE);
+
+		try (RegionFile region = new RegionFile(file)) {
+			for (int z = 0; z < RegionFile.REGION_WIDTH; z++) {
+				for (int x = 0; x < RegionFile.REGION_WIDTH; x++) {
+					if (z % 2 != 0) {
+						assertFalse(region.hasChunk(x, z));
+						assertNull(region.readChunk(x, z));
+						assertNull(region.getRawChunk(x, z));
+						assertEquals(-1, region.getCompressionType(x, z));
+						continue;
+					}
+					assertTrue(region.hasChunk(x, z));
+					assertEquals(RegionFile.COMPRESSION_ZLIB, region.getCompressionType(x, z));
+					assertTrue(region.getTimestamp(x, z) > 0);
+					assertEquals(createChunk(x, z, payloadSize(x, z)), region.readChunk(x, z));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testGlobalCoordinates() throws IOException {
+		File file = folder.newFile("r.-1.-1.mca");
+		try (RegionFileWriter writer = new RegionFileWriter(file)) {
+			writer.write(-1, -1, createChunk(-1, -1, 16));
+			writer.write(-32, -31, createChunk(-32, -31, 16));
+		}
+
+		try (RegionFile region = new RegionFile(file)) {
+			assertEquals(createChunk(-1, -1, 16), region.readChunk(31, 31));
+			assertEquals(createChunk(-32, -31, 16), region.readChunk(-32, -31));
+			assertEquals(createChunk(-32, -31, 16), region.readChunk(0, 1));
+		}
+	}
+
+	@Test
+	public void testStreamedChunks() throws IOException {
+		File file = folder.newFile("r.0.0.mca");
+		try (RegionFileWriter writer = new RegionFileWriter(file, Deflater.BEST_SPEED, Runnable::run, 1)) {
+			writer.write(0, 0, () -> createChunk(0, 0, 600));
+			writer.write(1, 0, out -> {
+				out.writeInt("xPos", 1);
+				out.writeInt("zPos", 0);
+				out.writeString("Status", "full");
+				out.writeTag("Data", createChunk(1, 0, 600).get("Data"));
+			});
+		}
+
+		try (RegionFile region = new RegionFile(file)) {
+			assertEquals(createChunk(0, 0, 600), region.readChunk(0, 0));
+			assertEquals(createChunk(1, 0, 600), region.readChunk(1, 0));
+		}
+	}
+
+	@Test
+	public void testCopyRaw() throws IOException {
+		File source = folder.newFile("source.mca");
+		try (RegionFileWriter writer = new RegionFileWriter(source)) {
+			writer.write(3, 4, createChunk(3, 4, 2000));
+		}
+
+		File target = folder.newFile("target.mca");
+		try (RegionFile region = new RegionFile(source);
+				RegionFileWriter writer = new RegionFileWriter(target)) {
+			writer.writeRaw(5, 6, region.getRawChunk(3, 4), region.getCompressionType(3, 4));
+		}
+
+		try (RegionFile region = new RegionFile(target)) {
+			assertEquals(createChunk(3, 4, 2000), region.readChunk(5, 6));
+		}
+	}
+
+	@Test
+	public void testRawCompressionTypes() throws IOException {
+		CompoundTag chunk = createChunk(0, 0, 100);
+		ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+		new NBTStreamWriter(new DataOutputStream(uncompressed)).writeTag("root", chunk);
+
+		ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(gzip)) {
+			out.write(uncompressed.toByteArray());
+		}
+
+		File file = folder.newFile("r.0.0.mca");
+		try (RegionFileWriter writer = new RegionFileWriter(file)) {
+			writer.writeRaw(0, 0, ByteBuffer.wrap(uncompressed.toByteArray()), RegionFile.COMPRESSION_NONE);
+			writer.writeRaw(1, 0, ByteBuffer.wrap(gzip.toByteArray()), RegionFile.COMPRESSION_GZIP);
+		}
+
+		try (RegionFile region = new RegionFile(file)) {
+			assertEquals(RegionFile.COMPRESSION_NONE, region.getCompressionType(0, 0));
+			assertEquals(chunk, region.readChunk(0, 0));
+			assertEquals(RegionFile.COMPRESSION_GZIP, region.getCompressionType(1, 0));
+			assertEquals(chunk, region.readChunk(1, 0));
+		}
+	}
+
+	@Test
+	public void testRawChunkOutlivesRegion() throws IOException {
+		File file = folder.newFile("r.0.0.mca");
+		try (RegionFileWriter writer = new RegionFileWriter(file)) {
+			writer.write(0, 0, createChunk(0, 0, 600));
+		}
+
+		ByteBuffer raw;
+		try (RegionFile region = new RegionFile(file)) {
+			raw = region.getRawChunk(0, 0);
+		}
+		// Closing the region releases the file, so it can be deleted right away.
+		Files.delete(file.toPath());
+
+		File copy = folder.newFile("copy.mca");
+		try (RegionFileWriter writer = new RegionFileWriter(copy)) {
+			writer.writeRaw(0, 0, raw, RegionFile.COMPRESSION_ZLIB);
+		}
+		try (RegionFile region = new RegionFile(copy)) {
+			assertEquals(createChunk(0, 0, 600), region.readChunk(0, 0));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDuplicateChunk() throws IOException {
+		try (RegionFileWriter writer = new RegionFileWriter(folder.newFile("r.0.0.mca"))) {
+			writer.write(0, 0, createChunk(0, 0, 16));
+			writer.write(32, 32, createChunk(32, 32, 16));
+		}
+	}
+
+	@Test
+	public void testChunkTooLarge() throws IOException {
+		RegionFileWriter writer = new RegionFileWriter(folder.newFile("r.0.0.mca"));
+		// Random data doesn't compress, so this takes more than 255 sectors.
+		writer.write(0, 0, createChunk(0, 0, 140000));
+		try {
+			writer.close();
+			fail("Expected chunk to be too large.");
+		} catch (IOException e) {
+			// Expected.
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncatedHeader() throws IOException {
+		File file = folder.newFile("r.0.0.mca");
+		Files.write(file.toPath(), new byte[RegionFile.SECTOR_SIZE]);
+		new RegionFile(file).close();
+	}
+}
@@ -0,0 +1,192 @@
+package org.scaffoldeditor.nbt.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+import org.scaffoldeditor.nbt.block.BlockState;
+import org.scaffoldeditor.nbt.block.Section;
+import org.scaffoldeditor.nbt.util.PackedIntArray;
+
+import net.querz.nbt.io.NBTDeserializer;
+import net.querz.nbt.tag.CompoundTag;
+import net.querz.nbt.tag.ListTag;
+import net.querz.nbt.tag.LongArrayTag;
+
+public class SectionCodecTest {
+
+	private static BlockState state(int i) {
+		return BlockState.of("test:block_" + i, null);
+	}
+
+	/**
+	 * Create a section using a certain amount of distinct non-air states, plus
+	 * some air and missing blocks.
+	 */
+	private static Section createSection(int stateCount, long seed) {
+		Random random = new Random(seed);
+		Section section = new Section();
+		for (int i = 0; i < Section.VOLUME; i++) {
+			// Make sure every state is used at least once.
+			int value = i < stateCount ? i : random.nextInt(stateCount + 2) - 2;
+			BlockState state = value >= 0 ? state(value) : value == -1 ? BlockState.AIR : null;
+			section.setBlock(i & 15, i >> 8, i >> 4 & 15, state, null);
+		}
+		return section;
+	}
+
+	private static void assertSameBlocks(Section expected, Section actual) {
+		for (int y = 0; y < Section.HEIGHT; y++) {
+			for (int z = 0; z < 16; z++) {
+				for (int x = 0; x < 16; x++) {
+					// Missing blocks are written as air.
+					BlockState state = expected.stateAt(x, y, z);
+					assertSame(x + " " + y + " " + z, state != null ? state : BlockState.AIR, actual.stateAt(x, y, z));
+				}
+			}
+		}
+	}
+
+	private static CompoundTag encodeStreamed(Section section, boolean spanning) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		NBTStreamWriter out = new NBTStreamWriter(new DataOutputStream(bytes));
+		out.beginCompound("");
+		SectionCodec.encode(section, (byte) 3, spanning, out);
+		return (CompoundTag) new NBTDeserializer(false).fromBytes(bytes.toByteArray()).getTag();
+	}
+
+	/**
+	 * Round trip a section with a palette of the given size (including air) and
+	 * check the encoded bit width.
+	 */
+	private static void testRoundTrip(int paletteSize, int expectedBits) throws IOException {
+		Section section = createSection(paletteSize - 1, paletteSize);
+		for (boolean spanning : new boolean[] { true, false }) {
+			String message = "palette=" + paletteSize + " spanning=" + spanning;
+			CompoundTag nbt = SectionCodec.encode(section, (byte) 3, spanning);
+			assertNotNull(message, nbt);
+			assertEquals(message, 3, nbt.getByte("Y"));
+			assertEquals(message, paletteSize, nbt.getListTag("Palette").size());
+
+			int length = spanning ? Section.VOLUME * expectedBits / 64 : PackedIntArray.longsFor(Section.VOLUME, expectedBits);
+			assertEquals(message, length, nbt.getLongArray("BlockStates").length);
+
+			assertSameBlocks(section, SectionCodec.decode(nbt, spanning));
+			assertEquals(message, nbt, encodeStreamed(section, spanning));
+		}
+	}
+
+	@Test
+	public void testOneBitPalette() throws IOException {
+		// Only needs one bit, but Minecraft never packs into fewer than four.
+		testRoundTrip(2, 4);
+	}
+
+	@Test
+	public void testFourBitPalette() throws IOException {
+		testRoundTrip(16, 4);
+	}
+
+	@Test
+	public void testFiveBitPalette() throws IOException {
+		testRoundTrip(17, 5);
+	}
+
+	@Test
+	public void testLargestPalette() throws IOException {
+		// Every block is different, which is as large as a section's palette gets.
+		testRoundTrip(Section.VOLUME + 1, 13);
+	}
+
+	@Test
+	public void testSixteenBitPalette() {
+		// A section can't use this many states, so build the NBT by hand.
+		int paletteSize = (1 << 15) + 1;
+		ListTag<CompoundTag> palette = new ListTag<>(CompoundTag.class);
+		palette.add(BlockState.AIR.toPaletteEntry());
+		for (int i = 1; i < paletteSize; i++) {
+			palette.add(state(i).toPaletteEntry());
+		}
+
+		PackedIntArray indices = new PackedIntArray(Section.VOLUME, 16);
+		for (int i = 0; i < Section.VOLUME; i++) {
+			indices.set(i, (i * 8 + 1) % paletteSize);
+		}
+
+		// Both layouts are the same when indices divide evenly into longs.
+		for (boolean spanning : new boolean[] { true, false }) {
+			CompoundTag nbt = new CompoundTag();
+			nbt.put("Palette", palette);
+			nbt.put("BlockStates", new LongArrayTag(indices.getRaw().clone()));
+			Section section = SectionCodec.decode(nbt, spanning);
+			for (int i = 0; i < Section.VOLUME; i++) {
+				assertSame(state((i * 8 + 1) % paletteSize), section.stateAt(i & 15, i >> 8, i >> 4 & 15));
+			}
+		}
+	}
+
+	@Test
+	public void testSpanningLayout() {
+		Section section = createSection(16, 0);
+		long[] spanning = SectionCodec.encode(section, (byte) 0, true).getLongArray("BlockStates");
+		long[] nonSpanning = SectionCodec.encode(section, (byte) 0, false).getLongArray("BlockStates");
+
+		// Index 12 is split between the first two longs in the spanning layout,
+		// and is the first index of the second long in the non-spanning one.
+		int spanned = (int) ((spanning[0] >>> 60 | spanning[1] << 4) & 31);
+		int unspanned = (int) (nonSpanning[1] & 31);
+		assertEquals(unspanned, spanned);
+		assertEquals(12 + 1, spanned);
+	}
+
+	@Test
+	public void testDetectLayout() {
+		// Sections are sometimes saved with the other layout, which is detected from the array length.
+		Section section = createSection(16, 1);
+		assertSameBlocks(section, SectionCodec.decode(SectionCodec.encode(section, (byte) 0, true), false));
+		assertSameBlocks(section, SectionCodec.decode(SectionCodec.encode(section, (byte) 0, false), true));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testWrongLength() {
+		CompoundTag nbt = SectionCodec.encode(createSection(16, 2), (byte) 0, false);
+		nbt.put("BlockStates", new LongArrayTag(new long[100]));
+		SectionCodec.decode(nbt, false);
+	}
+
+	@Test
+	public void testUniform() throws IOException {
+		Section section = new Section(state(0), null);
+		for (boolean spanning : new boolean[] { true, false }) {
+			CompoundTag nbt = SectionCodec.encode(section, (byte) 3, spanning);
+			assertEquals(2, nbt.getListTag("Palette").size());
+			assertEquals(256, nbt.getLongArray("BlockStates").length);
+
+			Section decoded = SectionCodec.decode(nbt, spanning);
+			assertTrue(decoded.isUniform());
+			assertSameBlocks(section, decoded);
+			assertEquals(nbt, encodeStreamed(section, spanning));
+		}
+	}
+
+	@Test
+	public void testEmpty() {
+		assertNull(SectionCodec.encode(new Section(), (byte) 0, false));
+		assertNull(SectionCodec.encode(new Section(BlockState.AIR, null), (byte) 0, false));
+	}
+
+	@Test
+	public void testIsSpanning() {
+		assertTrue(SectionCodec.isSpanning(SectionCodec.NON_SPANNING_VERSION - 1));
+		assertFalse(SectionCodec.isSpanning(SectionCodec.NON_SPANNING_VERSION));
+	}
+}
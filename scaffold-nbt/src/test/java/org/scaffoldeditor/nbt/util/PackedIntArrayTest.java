@@ -0,0 +1,140 @@
+package org.scaffoldeditor.nbt.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PackedIntArrayTest {
+	private static final int SIZE = 4096;
+
+	private static int[] randomValues(int bits, long seed) {
+		Random random = new Random(seed);
+		int[] values = new int[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			values[i] = random.nextInt(1 << bits);
+		}
+		return values;
+	}
+
+	@Test
+	public void testSetGet() {
+		for (int bits : new int[] { 1, 4, 5, 16 }) {
+			int[] values = randomValues(bits, bits);
+			PackedIntArray array = new PackedIntArray(SIZE, bits);
+			for (int i = 0; i < SIZE; i++) {
+				array.set(i, values[i]);
+			}
+			assertEquals(bits, array.getBits());
+			assertEquals(PackedIntArray.longsFor(SIZE, bits), array.getRaw().length);
+			for (int i = 0; i < SIZE; i++) {
+				assertEquals("bits=" + bits + " index=" + i, values[i], array.get(i));
+			}
+			assertArrayEquals(values, array.toArray(new int[SIZE]));
+		}
+	}
+
+	@Test
+	public void testLongsFor() {
+		assertEquals(64, PackedIntArray.longsFor(SIZE, 1));
+		assertEquals(256, PackedIntArray.longsFor(SIZE, 4));
+		assertEquals(342, PackedIntArray.longsFor(SIZE, 5));
+		assertEquals(1024, PackedIntArray.longsFor(SIZE, 16));
+	}
+
+	@Test
+	public void testBitsFor() {
+		assertEquals(1, PackedIntArray.bitsFor(0));
+		assertEquals(1, PackedIntArray.bitsFor(1));
+		assertEquals(4, PackedIntArray.bitsFor(15));
+		assertEquals(5, PackedIntArray.bitsFor(16));
+		assertEquals(16, PackedIntArray.bitsFor(65535));
+		assertEquals(17, PackedIntArray.bitsFor(65536));
+	}
+
+	@Test
+	public void testWidenOnSet() {
+		int[] values = randomValues(1, 0);
+		PackedIntArray array = new PackedIntArray(SIZE, 1);
+		for (int i = 0; i < SIZE; i++) {
+			array.set(i, values[i]);
+		}
+
+		// Crossing each boundary should re-pack without losing earlier values.
+		int[] widened = { 15, 16, 65535 };
+		int[] expectedBits = { 4, 5, 16 };
+		for (int i = 0; i < widened.length; i++) {
+			array.set(i, widened[i]);
+			values[i] = widened[i];
+			assertEquals(expectedBits[i], array.getBits());
+			assertArrayEquals(values, array.toArray(new int[SIZE]));
+		}
+	}
+
+	@Test
+	public void testResize() {
+		int[] values = randomValues(4, 4);
+		PackedIntArray array = new PackedIntArray(SIZE, 4);
+		for (int i = 0; i < SIZE; i++) {
+			array.set(i, values[i]);
+		}
+
+		for (int bits : new int[] { 5, 16, 4 }) {
+			array.resize(bits);
+			assertEquals(bits, array.getBits());
+			assertEquals(PackedIntArray.longsFor(SIZE, bits), array.getRaw().length);
+			assertArrayEquals(values, array.toArray(new int[SIZE]));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testResizeTooNarrow() {
+		PackedIntArray array = new PackedIntArray(SIZE, 5);
+		array.set(0, 16);
+		array.resize(4);
+	}
+
+	@Test
+	public void testFill() {
+		PackedIntArray array = new PackedIntArray(SIZE, 1);
+		array.fill(17);
+		assertEquals(5, array.getBits());
+		for (int i = 0; i < SIZE; i++) {
+			assertEquals(17, array.get(i));
+		}
+	}
+
+	@Test
+	public void testWrapRaw() {
+		for (int bits : new int[] { 1, 4, 5, 16 }) {
+			int[] values = randomValues(bits, bits);
+			PackedIntArray array = new PackedIntArray(SIZE, bits);
+			for (int i = 0; i < SIZE; i++) {
+				array.set(i, values[i]);
+			}
+			PackedIntArray wrapped = new PackedIntArray(SIZE, bits, array.getRaw().clone());
+			assertArrayEquals(values, wrapped.toArray(new int[SIZE]));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testWrapWrongLength() {
+		new PackedIntArray(SIZE, 5, new long[SIZE * 5 / 64]);
+	}
+
+	@Test
+	public void testCopy() {
+		PackedIntArray array = new PackedIntArray(SIZE, 4);
+		array.set(0, 3);
+		PackedIntArray copy = array.copy();
+		copy.set(0, 7);
+		copy.set(1, 100);
+		assertEquals(3, array.get(0));
+		assertEquals(0, array.get(1));
+		assertEquals(4, array.getBits());
+		assertEquals(7, copy.get(0));
+		assertEquals(100, copy.get(1));
+	}
+}